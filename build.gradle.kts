@@ -44,6 +44,8 @@ dependencies {
   implementation(localGroovy())
   implementation(gradleApi())
   api("com.google.cloud.tools:appengine-plugins-core:0.10.0")
+  implementation("com.google.code.gson:gson:2.8.9")
+  implementation("org.apache.commons:commons-compress:1.21")
 
   testImplementation("commons-io:commons-io:2.11.0")
   testImplementation("junit:junit:4.13.2")
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.io.FileUtils;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Staged output is restored from the build cache when the same project is checked out twice. */
+public class BuildCacheIntegrationTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private File buildCache;
+
+  @Before
+  public void setUp() throws IOException {
+    buildCache = tmpDir.newFolder("build-cache");
+  }
+
+  @Test
+  public void testStandardStage_fromCache() throws IOException {
+    File checkout1 = checkout("src/integTest/resources/projects/standard-project-java8", "one");
+    File checkout2 = checkout("src/integTest/resources/projects/standard-project-java8", "two");
+
+    Assert.assertEquals(TaskOutcome.SUCCESS, stage(checkout1));
+    Assert.assertEquals(TaskOutcome.FROM_CACHE, stage(checkout2));
+    Assert.assertTrue(new File(checkout2, "build/staged-app/app.yaml").exists());
+  }
+
+  @Test
+  public void testAppYamlStage_fromCache() throws IOException {
+    File checkout1 = checkout("src/integTest/resources/projects/appyaml-project", "one");
+    File checkout2 = checkout("src/integTest/resources/projects/appyaml-project", "two");
+
+    Assert.assertEquals(TaskOutcome.SUCCESS, stage(checkout1));
+    Assert.assertEquals(TaskOutcome.FROM_CACHE, stage(checkout2));
+    Assert.assertTrue(new File(checkout2, "build/staged-app/app.yaml").exists());
+    Assert.assertTrue(new File(checkout2, "build/staged-app/cache-project.war").exists());
+  }
+
+  private TaskOutcome stage(File projectDir) {
+    BuildResult buildResult =
+        GradleRunner.create()
+            .withProjectDir(projectDir)
+            .withPluginClasspath()
+            .withArguments("appengineStage", "--build-cache")
+            .build();
+    return buildResult.task(":appengineStage").getOutcome();
+  }
+
+  /** Copy a test project to a new directory that shares the build cache with other checkouts. */
+  private File checkout(String project, String name) throws IOException {
+    File checkout = tmpDir.newFolder(name);
+    FileUtils.copyDirectory(new File(project), checkout);
+
+    // the project name must not depend on the checkout directory, it names the archives
+    String settings =
+        "rootProject.name = 'cache-project'\n"
+            + "buildCache {\n"
+            + "  local {\n"
+            + "    directory = '"
+            + buildCache.getAbsolutePath().replace('\\', '/')
+            + "'\n"
+            + "  }\n"
+            + "}\n";
+    Files.write(
+        new File(checkout, "settings.gradle").toPath(), settings.getBytes(StandardCharsets.UTF_8));
+
+    // app.yaml projects stage the archive, which must be reproducible to be a stable input
+    String reproducibleArchives =
+        "\ntasks.withType(AbstractArchiveTask) {\n"
+            + "  preserveFileTimestamps = false\n"
+            + "  reproducibleFileOrder = true\n"
+            + "}\n";
+    Files.write(
+        new File(checkout, "build.gradle").toPath(),
+        reproducibleArchives.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    return checkout;
+  }
+}
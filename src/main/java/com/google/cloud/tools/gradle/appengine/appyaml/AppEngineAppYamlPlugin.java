@@ -100,6 +100,16 @@ public class AppEngineAppYamlPlugin implements Plugin<Project> {
             }
           }
 
+          // layered staging defaults to the dependencies the jar is run with
+          if (Boolean.TRUE.equals(stageExtension.getLayered())
+              && stageExtension.getDependencies() == null
+              && project.getPlugins().hasPlugin(JavaPlugin.class)) {
+            stageExtension.setDependencies(
+                project
+                    .getConfigurations()
+                    .getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME));
+          }
+
           // obtain deploy extension set defaults
           DeployExtension deploy = appengineExtension.getDeploy();
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.appyaml;
+
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Applies artifact and extra files changes to an already staged app.yaml based app.
+ *
+ * <p>Extra files directories are staged on top of each other in order, so a changed path is staged
+ * from the last directory that has it. Changes to app.yaml or the docker directory, and artifacts
+ * whose manifest has a Class-Path (staging copies the referenced jars too), are left to a full
+ * staging.
+ */
+public class IncrementalAppYamlStaging {
+
+  private final Path artifact;
+  private final List<Path> extraFilesDirectories;
+  private final Path stagingDirectory;
+  private final boolean hardLinks;
+
+  private int copied;
+  private int deleted;
+
+  /**
+   * Create a new incremental staging.
+   *
+   * @param artifact the artifact to stage
+   * @param extraFilesDirectories the extra files directories, in the order they are staged
+   * @param stagingDirectory the previous staging
+   * @param hardLinks hard link changed extra files instead of copying them, the artifact is always
+   *     copied
+   */
+  public IncrementalAppYamlStaging(
+      Path artifact, List<Path> extraFilesDirectories, Path stagingDirectory, boolean hardLinks) {
+    this.artifact = artifact;
+    this.extraFilesDirectories = extraFilesDirectories;
+    this.stagingDirectory = stagingDirectory;
+    this.hardLinks = hardLinks;
+  }
+
+  /**
+   * Apply changes to the staging directory.
+   *
+   * @param artifactChanges names of the changed artifacts, mapped to true if the artifact was added
+   *     or modified and false if it was removed
+   * @param extraFileChanges changed paths relative to their extra files directory, using '/' as
+   *     separator
+   * @return false, without touching the staging directory, if the changes require a full staging
+   */
+  public boolean stage(Map<String, Boolean> artifactChanges, Collection<String> extraFileChanges)
+      throws IOException {
+    copied = 0;
+    deleted = 0;
+    String artifactName = artifact.getFileName().toString();
+    if (!Files.isDirectory(stagingDirectory)
+        || (!artifactChanges.isEmpty() && hasClassPath(artifact))
+        || extraFileChanges.contains("app.yaml")
+        || extraFileChanges.contains(artifactName)
+        || artifactChanges.containsKey("app.yaml")) {
+      return false;
+    }
+
+    for (Map.Entry<String, Boolean> change : artifactChanges.entrySet()) {
+      if (change.getValue() && change.getKey().equals(artifactName)) {
+        // the jar task rewrites its archive in place, a link would change the staged artifact
+        copy(artifact, stagingDirectory.resolve(artifactName), false);
+      } else if (!change.getKey().equals(artifactName)) {
+        // the previous artifact, unless an extra file now takes its place
+        stageExtraFile(change.getKey());
+      }
+    }
+    for (String change : extraFileChanges) {
+      stageExtraFile(change);
+    }
+    return true;
+  }
+
+  private void stageExtraFile(String relativePath) throws IOException {
+    Path target = stagingDirectory.resolve(relativePath);
+    for (int i = extraFilesDirectories.size() - 1; i >= 0; i--) {
+      Path source = extraFilesDirectories.get(i).resolve(relativePath);
+      if (Files.isRegularFile(source)) {
+        if (Files.isDirectory(target)) {
+          deleteRecursively(target);
+        }
+        Files.createDirectories(target.getParent());
+        copy(source, target, hardLinks);
+        return;
+      }
+      if (Files.isDirectory(source)) {
+        if (Files.isRegularFile(target)) {
+          Files.delete(target);
+        }
+        Files.createDirectories(target);
+        return;
+      }
+    }
+    if (Files.exists(target)) {
+      deleteRecursively(target);
+      deleted++;
+    }
+  }
+
+  private void copy(Path source, Path target, boolean link) throws IOException {
+    if (link) {
+      FileLinks.linkOrCopy(source, target);
+    } else {
+      Files.copy(
+          source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    copied++;
+  }
+
+  private static boolean hasClassPath(Path artifact) throws IOException {
+    if (!artifact.getFileName().toString().endsWith(".jar") || !Files.isRegularFile(artifact)) {
+      return false;
+    }
+    try (JarFile jar = new JarFile(artifact.toFile())) {
+      Manifest manifest = jar.getManifest();
+      return manifest != null
+          && manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) != null;
+    }
+  }
+
+  /** The number of files copied by the last staging. */
+  public int getCopiedCount() {
+    return copied;
+  }
+
+  /** The number of files deleted by the last staging. */
+  public int getDeletedCount() {
+    return deleted;
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    Files.walkFileTree(
+        path,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.appyaml;
+
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import org.gradle.api.GradleException;
+
+/**
+ * Stages a jar app as a thin application jar plus its dependency jars in {@code lib/}, instead of
+ * a single fat jar. Dependencies that did not change are byte for byte identical between
+ * stagings, so deployments only upload the application jar and the dependencies that changed.
+ *
+ * <p>The application jar's manifest gets a {@code Class-Path} listing the staged dependencies, and
+ * app.yaml gets an entrypoint running the jar if it does not declare one. Wars and fat jars, which
+ * bundle their dependencies, are rejected.
+ */
+public class LayeredStaging {
+
+  static final String LIB_DIRECTORY = "lib";
+
+  private static final Pattern ENTRYPOINT = Pattern.compile("(?m)^entrypoint\\s*:");
+
+  // reproducible jar entries, same as gradle's reproducible archives
+  private static final long CONSTANT_ENTRY_TIME = 315532800000L;
+
+  private final Path artifact;
+  private final List<Path> dependencies;
+  private final Path stagingDirectory;
+  private final boolean hardLinks;
+
+  /**
+   * Create a new layered staging.
+   *
+   * @param artifact the application jar, without its dependencies
+   * @param dependencies the runtime dependencies, non jar files are ignored
+   * @param stagingDirectory the staging directory, already holding the staged artifact and app.yaml
+   * @param hardLinks hard link the dependency jars instead of copying them
+   */
+  public LayeredStaging(
+      Path artifact, List<Path> dependencies, Path stagingDirectory, boolean hardLinks) {
+    this.artifact = artifact;
+    this.dependencies = dependencies;
+    this.stagingDirectory = stagingDirectory;
+    this.hardLinks = hardLinks;
+  }
+
+  /**
+   * Check that the artifact is a thin jar, before staging.
+   *
+   * @throws GradleException if the artifact is a war, or a fat jar with nested jars or a Spring
+   *     Boot layout
+   */
+  public void checkArtifact() throws IOException {
+    String artifactName = artifact.getFileName().toString();
+    if (!artifactName.endsWith(".jar")) {
+      throw new GradleException(
+          "Layered staging requires a jar artifact, but the artifact is " + artifact);
+    }
+    try (JarFile jar = new JarFile(artifact.toFile())) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.startsWith("BOOT-INF/") || name.endsWith(".jar")) {
+          throw new GradleException(
+              "Layered staging requires a thin jar, but "
+                  + artifactName
+                  + " bundles its dependencies ("
+                  + name
+                  + "), use the output of the jar task as the artifact");
+        }
+      }
+    }
+  }
+
+  /** Stage the dependencies, and point the staged artifact and app.yaml at them. */
+  public void stage() throws IOException {
+    checkArtifact();
+    Path appYaml = stagingDirectory.resolve("app.yaml");
+    boolean addEntrypoint = needsEntrypoint(appYaml);
+    if (addEntrypoint) {
+      checkMainClass();
+    }
+    Path lib = stagingDirectory.resolve(LIB_DIRECTORY);
+    Files.createDirectories(lib);
+    List<String> classPath = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (Path dependency : dependencies) {
+      String fileName = dependency.getFileName().toString();
+      if (!Files.isRegularFile(dependency) || !fileName.endsWith(".jar")) {
+        continue;
+      }
+      // different artifacts can have the same file name, e.g. core-1.0.jar
+      String name = fileName;
+      for (int i = 1; !names.add(name); i++) {
+        name = fileName.substring(0, fileName.length() - 4) + "-" + i + ".jar";
+      }
+      Path target = lib.resolve(name);
+      if (hardLinks) {
+        FileLinks.linkOrCopy(dependency, target);
+      } else {
+        Files.copy(
+            dependency,
+            target,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.COPY_ATTRIBUTES);
+      }
+      classPath.add(LIB_DIRECTORY + "/" + name);
+    }
+
+    String artifactName = artifact.getFileName().toString();
+    writeThinJar(stagingDirectory.resolve(artifactName), classPath);
+    if (addEntrypoint) {
+      addEntrypoint(appYaml, artifactName);
+    }
+  }
+
+  /** Check that {@code java -jar} can run the artifact, for the entrypoint added to app.yaml. */
+  private void checkMainClass() throws IOException {
+    try (JarFile jar = new JarFile(artifact.toFile())) {
+      Manifest manifest = jar.getManifest();
+      if (manifest == null
+          || manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS) == null) {
+        throw new GradleException(
+            "Layered staging adds 'entrypoint: java -jar "
+                + artifact.getFileName()
+                + "' to app.yaml, but the jar manifest has no Main-Class, set it with"
+                + " jar.manifest.attributes or add an entrypoint to app.yaml");
+      }
+    }
+  }
+
+  /** Write the artifact with a Class-Path, the staged file is replaced as it may be a hard link. */
+  private void writeThinJar(Path target, List<String> classPath) throws IOException {
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (JarFile jar = new JarFile(artifact.toFile())) {
+      Manifest manifest = jar.getManifest() == null ? new Manifest() : jar.getManifest();
+      Attributes attributes = manifest.getMainAttributes();
+      if (attributes.getValue(Attributes.Name.MANIFEST_VERSION) == null) {
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+      }
+      if (classPath.isEmpty()) {
+        attributes.remove(Attributes.Name.CLASS_PATH);
+      } else {
+        attributes.put(Attributes.Name.CLASS_PATH, String.join(" ", classPath));
+      }
+
+      try (OutputStream out = Files.newOutputStream(temp);
+          JarOutputStream jarOut = new JarOutputStream(out)) {
+        // written by hand, JarOutputStream would stamp the manifest with the current time
+        JarEntry manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+        manifestEntry.setTime(CONSTANT_ENTRY_TIME);
+        jarOut.putNextEntry(manifestEntry);
+        manifest.write(jarOut);
+        jarOut.closeEntry();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+          JarEntry entry = entries.nextElement();
+          if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+            continue;
+          }
+          JarEntry copy = new JarEntry(entry.getName());
+          copy.setTime(entry.getTime());
+          jarOut.putNextEntry(copy);
+          try (InputStream in = jar.getInputStream(entry)) {
+            ByteStreams.copy(in, jarOut);
+          }
+          jarOut.closeEntry();
+        }
+      }
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Check if the staged app.yaml exists and has no entrypoint. */
+  private static boolean needsEntrypoint(Path appYaml) throws IOException {
+    return Files.isRegularFile(appYaml)
+        && !ENTRYPOINT
+            .matcher(new String(Files.readAllBytes(appYaml), StandardCharsets.UTF_8))
+            .find();
+  }
+
+  private static void addEntrypoint(Path appYaml, String artifactName) throws IOException {
+    String content = new String(Files.readAllBytes(appYaml), StandardCharsets.UTF_8);
+    if (!content.isEmpty() && !content.endsWith("\n")) {
+      content += "\n";
+    }
+    content += "entrypoint: java -jar " + artifactName + "\n";
+    Path temp = appYaml.resolveSibling("app.yaml.tmp");
+    Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, appYaml, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
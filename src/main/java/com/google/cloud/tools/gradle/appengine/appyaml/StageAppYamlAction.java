@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.appyaml;
+
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.appengine.configuration.AppYamlProjectStageConfiguration;
+import com.google.cloud.tools.appengine.operations.AppYamlProjectStaging;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/** Stages an app.yaml based application in a Gradle worker. */
+public abstract class StageAppYamlAction implements WorkAction<StageAppYamlAction.Parameters> {
+
+  private static final Logger LOGGER = Logging.getLogger(StageAppYamlAction.class);
+
+  /** Parameters of a staging, mirrors {@link StageAppYamlExtension}. */
+  public interface Parameters extends WorkParameters {
+    DirectoryProperty getAppEngineDirectory();
+
+    DirectoryProperty getDockerDirectory();
+
+    RegularFileProperty getArtifact();
+
+    DirectoryProperty getStagingDirectory();
+
+    /** The extra files directories, in the order they are copied. */
+    ConfigurableFileCollection getExtraFilesDirectories();
+
+    Property<Boolean> getEnableHardLinks();
+
+    /** True to try applying the changes to the previous staging first. */
+    Property<Boolean> getIncremental();
+
+    /** See {@link IncrementalAppYamlStaging#stage}. */
+    MapProperty<String, Boolean> getArtifactChanges();
+
+    /** See {@link IncrementalAppYamlStaging#stage}. */
+    ListProperty<String> getExtraFileChanges();
+
+    /** True to stage the artifact as a thin jar with its dependencies in lib/. */
+    Property<Boolean> getLayered();
+
+    ConfigurableFileCollection getDependencies();
+
+    /** Where to write the phase timings of the staging. */
+    RegularFileProperty getReportFile();
+
+    /** The path of the staging task, for the timings report. */
+    Property<String> getTaskPath();
+  }
+
+  @Override
+  public void execute() {
+    Parameters parameters = getParameters();
+    PhaseTimings timings = new PhaseTimings();
+    boolean success = false;
+    try (PhaseTimings.Phase ignored = timings.start("staging")) {
+      timings.setAttribute("stagingMode", stage(parameters));
+      success = true;
+    } finally {
+      RegularFile reportFile = parameters.getReportFile().getOrNull();
+      if (reportFile != null) {
+        try {
+          timings.writeReport(reportFile.getAsFile(), parameters.getTaskPath().get(), success);
+        } catch (IOException ex) {
+          LOGGER.warn("Failed to write the timings report", ex);
+        }
+      }
+    }
+  }
+
+  /** Stage the app, returns the staging mode used. */
+  private static String stage(Parameters parameters) {
+    Path stagingDirectory = parameters.getStagingDirectory().get().getAsFile().toPath();
+    Path artifact = parameters.getArtifact().get().getAsFile().toPath();
+    Directory dockerDirectory = parameters.getDockerDirectory().getOrNull();
+    List<Path> extraFilesDirectories = new ArrayList<>();
+    for (File extraFilesDirectory : parameters.getExtraFilesDirectories()) {
+      extraFilesDirectories.add(extraFilesDirectory.toPath());
+    }
+
+    boolean hardLinks = parameters.getEnableHardLinks().get();
+    boolean layered = parameters.getLayered().get();
+    try {
+      // a layered artifact is rewritten on staging, so its changes are not applied incrementally
+      if (parameters.getIncremental().get()
+          && !(layered && !parameters.getArtifactChanges().get().isEmpty())) {
+        IncrementalAppYamlStaging staging =
+            new IncrementalAppYamlStaging(
+                artifact, extraFilesDirectories, stagingDirectory, hardLinks);
+        if (staging.stage(
+            parameters.getArtifactChanges().get(), parameters.getExtraFileChanges().get())) {
+          LOGGER.info(
+              "Incrementally staged: {} files copied, {} files deleted",
+              staging.getCopiedCount(),
+              staging.getDeletedCount());
+          return "incremental";
+        }
+        LOGGER.info("Changes require a full staging of {}", stagingDirectory);
+      }
+
+      LayeredStaging layeredStaging = null;
+      if (layered) {
+        List<Path> dependencies = new ArrayList<>();
+        for (File dependency : parameters.getDependencies()) {
+          dependencies.add(dependency.toPath());
+        }
+        layeredStaging = new LayeredStaging(artifact, dependencies, stagingDirectory, hardLinks);
+        // fail before replacing the previous staging
+        layeredStaging.checkArtifact();
+      }
+
+      deleteRecursively(stagingDirectory);
+      Files.createDirectories(stagingDirectory);
+
+      new AppYamlProjectStaging()
+          .stageArchive(
+              AppYamlProjectStageConfiguration.builder()
+                  .appEngineDirectory(
+                      parameters.getAppEngineDirectory().get().getAsFile().toPath())
+                  .artifact(artifact)
+                  .stagingDirectory(stagingDirectory)
+                  .dockerDirectory(
+                      dockerDirectory == null ? null : dockerDirectory.getAsFile().toPath())
+                  .extraFilesDirectories(
+                      extraFilesDirectories.isEmpty() ? null : extraFilesDirectories)
+                  .build());
+
+      if (hardLinks) {
+        // replace the staged copies of the extra files with hard links, but not the artifact as
+        // the jar task rewrites its archive in place
+        int linked = 0;
+        for (Path extraFilesDirectory : extraFilesDirectories) {
+          linked += FileLinks.linkIdenticalFiles(extraFilesDirectory, stagingDirectory);
+        }
+        LOGGER.info("Hard linked {} staged files", linked);
+      }
+
+      if (layeredStaging != null) {
+        layeredStaging.stage();
+        LOGGER.info("Staged {} with its dependencies in lib/", artifact);
+        return "layered";
+      }
+      return "full";
+    } catch (AppEngineException | IOException ex) {
+      throw new GradleException("Failed to stage the application", ex);
+    }
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+}
@@ -24,9 +24,8 @@ import java.util.ArrayList;
 import java.util.List;
 import org.gradle.api.Project;
 import org.gradle.api.file.FileCollection;
-import org.gradle.api.tasks.InputDirectory;
-import org.gradle.api.tasks.InputFile;
-import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
@@ -41,12 +40,17 @@ public class StageAppYamlExtension {
   private File artifact;
   private File stagingDirectory;
   private List<File> extraFilesDirectories;
+  private FileCollection extraFilesDirectoriesAsInputFiles;
+  private Boolean enableHardLinks;
+  private Boolean incremental;
+  private Boolean layered;
+  private FileCollection dependencies;
 
   public StageAppYamlExtension(Project project) {
     this.project = project;
   }
 
-  @InputDirectory
+  @Internal("tracked by StageAppYamlTask.getConfigFiles")
   public File getAppEngineDirectory() {
     return appEngineDirectory;
   }
@@ -55,8 +59,7 @@ public class StageAppYamlExtension {
     this.appEngineDirectory = project.file(appEngineDirectory);
   }
 
-  @Optional
-  @InputDirectory
+  @Internal("tracked by StageAppYamlTask.getConfigFiles")
   public File getDockerDirectory() {
     return dockerDirectory;
   }
@@ -65,7 +68,7 @@ public class StageAppYamlExtension {
     this.dockerDirectory = project.file(dockerDirectory);
   }
 
-  @InputFile
+  @Internal("tracked by StageAppYamlTask.getArtifactFile")
   public File getArtifact() {
     return artifact;
   }
@@ -83,27 +86,65 @@ public class StageAppYamlExtension {
     this.stagingDirectory = project.file(stagingDirectory);
   }
 
-  /** This method is purely for incremental build calculations. */
-  @Optional
-  @InputFiles
+  /**
+   * This method is purely for incremental build calculations. The directories are the roots of a
+   * single flat collection, so Gradle snapshots each directory tree as a whole instead of resolving
+   * a union of one file tree per directory.
+   */
+  @Internal("tracked by StageAppYamlTask.getExtraFiles")
   public FileCollection getExtraFilesDirectoriesAsInputFiles() {
-    if (extraFilesDirectories == null) {
-      return null;
-    }
-    FileCollection files = project.files();
-    for (File directory : extraFilesDirectories) {
-      files = files.plus(project.fileTree(directory));
-    }
-    return files;
+    return extraFilesDirectoriesAsInputFiles;
   }
 
-  @Internal("covered by getExtraFilesDirectoriesAsInputFiles")
+  @Internal("tracked by StageAppYamlTask.getExtraFiles")
   public List<File> getExtraFilesDirectories() {
     return extraFilesDirectories;
   }
 
   public void setExtraFilesDirectories(Object extraFilesDirectories) {
     this.extraFilesDirectories = new ArrayList<>(project.files(extraFilesDirectories).getFiles());
+    this.extraFilesDirectoriesAsInputFiles = project.files(this.extraFilesDirectories);
+  }
+
+  @Input
+  @Optional
+  public Boolean getEnableHardLinks() {
+    return enableHardLinks;
+  }
+
+  public void setEnableHardLinks(Boolean enableHardLinks) {
+    this.enableHardLinks = enableHardLinks;
+  }
+
+  @Input
+  @Optional
+  public Boolean getIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(Boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  @Input
+  @Optional
+  public Boolean getLayered() {
+    return layered;
+  }
+
+  public void setLayered(Boolean layered) {
+    this.layered = layered;
+  }
+
+  /** The dependency jars staged in lib/ by a layered staging. */
+  @Classpath
+  @Optional
+  public FileCollection getDependencies() {
+    return dependencies;
+  }
+
+  public void setDependencies(Object dependencies) {
+    this.dependencies = project.files(dependencies);
   }
 
   AppYamlProjectStageConfiguration toAppYamlProjectStageConfiguration() {
@@ -17,16 +17,68 @@
 
 package com.google.cloud.tools.gradle.appengine.appyaml;
 
-import com.google.cloud.tools.appengine.AppEngineException;
-import com.google.cloud.tools.appengine.operations.AppYamlProjectStaging;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
 
 /** Stage App Engine app.yaml based applications for deployment. */
+@CacheableTask
 public class StageAppYamlTask extends DefaultTask {
 
   private StageAppYamlExtension appYamlExtension;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  // the same instances must be returned on every call for InputChanges to find them
+  private final FileCollection configFiles =
+      getProject()
+          .files(
+              (Callable<List<File>>)
+                  () -> {
+                    List<File> directories = new ArrayList<>();
+                    if (appYamlExtension != null) {
+                      directories.add(appYamlExtension.getAppEngineDirectory());
+                      if (appYamlExtension.getDockerDirectory() != null) {
+                        directories.add(appYamlExtension.getDockerDirectory());
+                      }
+                    }
+                    return directories;
+                  });
+
+  private final FileCollection artifactFile =
+      getProject()
+          .files(
+              (Callable<File>)
+                  () -> appYamlExtension == null ? null : appYamlExtension.getArtifact());
+
+  private final FileCollection extraFiles =
+      getProject()
+          .files(
+              (Callable<FileCollection>)
+                  () ->
+                      appYamlExtension == null
+                          ? null
+                          : appYamlExtension.getExtraFilesDirectoriesAsInputFiles());
 
   @Nested
   public StageAppYamlExtension getStagingExtension() {
@@ -37,13 +89,86 @@ public class StageAppYamlTask extends DefaultTask {
     this.appYamlExtension = stagingConfig;
   }
 
-  /** Task entrypoint : Stage the app.yaml based application. */
+  /** The appEngineDirectory and dockerDirectory, any change to them restages everything. */
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getConfigFiles() {
+    return configFiles;
+  }
+
+  /** The artifact, staged under its own name. */
+  @Incremental
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  @InputFiles
+  public FileCollection getArtifactFile() {
+    return artifactFile;
+  }
+
+  /** The content of the extra files directories. */
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getExtraFiles() {
+    return extraFiles;
+  }
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
+
+  @Inject
+  public WorkerExecutor getWorkerExecutor() {
+    // injected by Gradle
+    throw new UnsupportedOperationException();
+  }
+
+  /** Task entrypoint : Stage the app.yaml based application in a worker. */
   @TaskAction
-  public void stageAction() throws AppEngineException {
-    getProject().delete(appYamlExtension.getStagingDirectory());
-    getProject().mkdir(appYamlExtension.getStagingDirectory().getAbsolutePath());
+  public void stageAction(InputChanges inputChanges) {
+    StageAppYamlExtension ext = appYamlExtension;
+    boolean incremental =
+        Boolean.TRUE.equals(ext.getIncremental())
+            && inputChanges.isIncremental()
+            && !inputChanges.getFileChanges(configFiles).iterator().hasNext();
+    Map<String, Boolean> artifactChanges = new LinkedHashMap<>();
+    List<String> extraFileChanges = new ArrayList<>();
+    if (incremental) {
+      for (FileChange change : inputChanges.getFileChanges(artifactFile)) {
+        artifactChanges.put(
+            change.getNormalizedPath(), change.getChangeType() != ChangeType.REMOVED);
+      }
+      for (FileChange change : inputChanges.getFileChanges(extraFiles)) {
+        extraFileChanges.add(change.getNormalizedPath().replace('\\', '/'));
+      }
+    }
 
-    AppYamlProjectStaging staging = new AppYamlProjectStaging();
-    staging.stageArchive(appYamlExtension.toAppYamlProjectStageConfiguration());
+    getWorkerExecutor()
+        .noIsolation()
+        .submit(
+            StageAppYamlAction.class,
+            parameters -> {
+              parameters.getAppEngineDirectory().set(ext.getAppEngineDirectory());
+              if (ext.getDockerDirectory() != null) {
+                parameters.getDockerDirectory().set(ext.getDockerDirectory());
+              }
+              parameters.getArtifact().set(ext.getArtifact());
+              parameters.getStagingDirectory().set(ext.getStagingDirectory());
+              if (ext.getExtraFilesDirectories() != null) {
+                parameters.getExtraFilesDirectories().from(ext.getExtraFilesDirectories());
+              }
+              parameters.getEnableHardLinks().set(Boolean.TRUE.equals(ext.getEnableHardLinks()));
+              parameters.getIncremental().set(incremental);
+              parameters.getLayered().set(Boolean.TRUE.equals(ext.getLayered()));
+              if (ext.getDependencies() != null) {
+                parameters.getDependencies().from(ext.getDependencies());
+              }
+              parameters.getArtifactChanges().set(artifactChanges);
+              parameters.getExtraFileChanges().set(extraFileChanges);
+              parameters.getReportFile().set(reportFile);
+              parameters.getTaskPath().set(getPath());
+            });
   }
 }
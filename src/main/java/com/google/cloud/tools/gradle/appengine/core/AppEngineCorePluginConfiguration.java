@@ -23,6 +23,7 @@ import com.google.cloud.tools.managedcloudsdk.BadCloudSdkVersionException;
 import com.google.cloud.tools.managedcloudsdk.ManagedCloudSdk;
 import com.google.cloud.tools.managedcloudsdk.UnsupportedOsException;
 import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
+import java.util.concurrent.TimeUnit;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.util.GradleVersion;
@@ -41,6 +42,7 @@ public class AppEngineCorePluginConfiguration {
   public static final String DEPLOY_INDEX_TASK_NAME = "appengineDeployIndex";
   public static final String DEPLOY_QUEUE_TASK_NAME = "appengineDeployQueue";
   public static final String DEPLOY_ALL_TASK_NAME = "appengineDeployAll";
+  public static final String DEPLOY_SERVICES_TASK_NAME = "appengineDeployServices";
   public static final String SHOW_CONFIG_TASK_NAME = "appengineShowConfiguration";
   public static final String DOWNLOAD_CLOUD_SDK_TASK_NAME = "downloadCloudSdk";
   public static final String CHECK_CLOUD_SDK_TASK_NAME = "checkCloudSdk";
@@ -138,10 +140,19 @@ public class AppEngineCorePluginConfiguration {
                   p -> {
                     if (managedCloudSdk != null) {
                       downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
-                      if (p.getGradle().getStartParameter().isOffline()) {
+                      downloadCloudSdkTask.setVerifiedTtlMillis(getCloudSdkCheckTtlMillis(p));
+                      CloudSdkMirror mirror = CloudSdkMirror.fromExtension(toolsExtension);
+                      downloadCloudSdkTask.setCloudSdkMirror(mirror);
+                      boolean componentsRequired = !downloadCloudSdkTask.getComponents().isEmpty();
+                      if (p.getGradle().getStartParameter().isOffline()
+                          && (mirror == null || !mirror.isLocal(componentsRequired))) {
                         p.getLogger().debug("Skipping DownloadCloudSdk in --offline mode.");
                         return;
                       }
+                      if (Boolean.TRUE.equals(toolsExtension.getDownloadCloudSdkInBackground())) {
+                        provisionInBackground(p, downloadCloudSdkTask);
+                        return;
+                      }
                       p.getTasks()
                           .matching(task -> task.getName().startsWith("appengine"))
                           .forEach(task -> task.dependsOn(downloadCloudSdkTask));
@@ -150,6 +161,47 @@ public class AppEngineCorePluginConfiguration {
             });
   }
 
+  /**
+   * Start provisioning the managed sdk as soon as the task graph is known, instead of in series
+   * before the first appengine task. The download task then only waits for it, tasks that need the
+   * sdk still depend on it, and the provisioning is stopped if the build ends without waiting.
+   *
+   * <p>A shared build service would own the provisioning on Gradle 6.1 and later, but the minimum
+   * supported Gradle version predates them, so the task owns its thread and the build's listeners
+   * start and stop it.
+   */
+  private void provisionInBackground(Project project, DownloadCloudSdkTask downloadCloudSdkTask) {
+    project
+        .getTasks()
+        .matching(task -> task.getName().startsWith("appengine"))
+        .forEach(task -> task.dependsOn(downloadCloudSdkTask));
+    project
+        .getGradle()
+        .getTaskGraph()
+        .whenReady(
+            graph -> {
+              if (graph.hasTask(downloadCloudSdkTask)) {
+                downloadCloudSdkTask.startInBackground();
+              }
+            });
+    project.getGradle().buildFinished(result -> downloadCloudSdkTask.stopBackground());
+  }
+
+  /** How long a verified managed sdk is trusted, an hour by default. */
+  private long getCloudSdkCheckTtlMillis(Project project) {
+    if (project.getGradle().getStartParameter().isRefreshDependencies()) {
+      return 0;
+    }
+    Integer ttlSeconds = toolsExtension.getCloudSdkCheckTtlSeconds();
+    if (ttlSeconds == null) {
+      return TimeUnit.HOURS.toMillis(1);
+    }
+    if (ttlSeconds < 0) {
+      throw new GradleException("cloudSdkCheckTtlSeconds must not be negative");
+    }
+    return TimeUnit.SECONDS.toMillis(ttlSeconds);
+  }
+
   private void createCheckCloudSdkTask() {
     project
         .getTasks()
@@ -165,6 +217,7 @@ public class AppEngineCorePluginConfiguration {
                     if (managedCloudSdk == null && toolsExtension.getCloudSdkVersion() != null) {
                       checkCloudSdkTask.setVersion(toolsExtension.getCloudSdkVersion());
                       checkCloudSdkTask.setCloudSdk(cloudSdkOperations.getCloudSdk());
+                      checkCloudSdkTask.setCloudSdkHome(toolsExtension.getCloudSdkHome());
                       checkCloudSdkTask.requiresAppEngineJava(requiresAppEngineJava);
                       p.getTasks()
                           .matching(task -> task.getName().startsWith("appengine"))
@@ -351,6 +404,15 @@ public class AppEngineCorePluginConfiguration {
         .withType(gcloudTask)
         .whenTaskAdded(
             task ->
-                project.afterEvaluate(project -> task.setGcloud(cloudSdkOperations.getGcloud())));
+                project.afterEvaluate(
+                    project -> {
+                      boolean structuredOutput =
+                          Boolean.TRUE.equals(toolsExtension.getStructuredOutput());
+                      task.setGcloud(
+                          structuredOutput
+                              ? cloudSdkOperations.getJsonGcloud()
+                              : cloudSdkOperations.getGcloud());
+                      task.setStructuredOutput(structuredOutput);
+                    }));
   }
 }
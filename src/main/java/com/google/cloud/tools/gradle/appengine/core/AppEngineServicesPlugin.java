@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static com.google.cloud.tools.gradle.appengine.core.AppEngineCorePluginConfiguration.APPENGINE_EXTENSION;
+import static com.google.cloud.tools.gradle.appengine.core.AppEngineCorePluginConfiguration.DEPLOY_SERVICES_TASK_NAME;
+import static com.google.cloud.tools.gradle.appengine.core.AppEngineCorePluginConfiguration.DEPLOY_TASK_NAME;
+import static com.google.cloud.tools.gradle.appengine.core.AppEngineCorePluginConfiguration.DOWNLOAD_CLOUD_SDK_TASK_NAME;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+/**
+ * Plugin for the root project of a multi-project build, adds the appengineDeployServices task to
+ * deploy the services of the project and its subprojects that apply an App Engine plugin.
+ */
+public class AppEngineServicesPlugin implements Plugin<Project> {
+
+  public static final String APP_ENGINE_SERVICES_TASK_GROUP = "App Engine services";
+
+  @Override
+  public void apply(Project project) {
+    DeployServicesTask deployServicesTask =
+        project
+            .getTasks()
+            .create(
+                DEPLOY_SERVICES_TASK_NAME,
+                DeployServicesTask.class,
+                task -> {
+                  task.setGroup(APP_ENGINE_SERVICES_TASK_GROUP);
+                  task.setDescription("Deploy the App Engine services of all projects");
+                });
+
+    // projects that load the App Engine plugin with their own classloader are not collected
+    project.allprojects(
+        service ->
+            service
+                .getTasks()
+                .withType(DeployTask.class)
+                .matching(task -> task.getName().equals(DEPLOY_TASK_NAME))
+                .all(deployTask -> addService(deployServicesTask, service, deployTask)));
+  }
+
+  private static void addService(
+      DeployServicesTask deployServicesTask, Project service, DeployTask deployTask) {
+    AppEngineCoreExtensionProperties appengine =
+        (AppEngineCoreExtensionProperties) service.getExtensions().getByName(APPENGINE_EXTENSION);
+    deployServicesTask.addService(deployTask, appengine.getTools());
+    // with downloadCloudSdkInBackground, the sdk may still be provisioning
+    deployServicesTask.addCloudSdkTask(
+        (DownloadCloudSdkTask) service.getTasks().getByName(DOWNLOAD_CLOUD_SDK_TASK_NAME));
+    // staging and Cloud SDK tasks, added to the deploy task later on
+    deployServicesTask.dependsOn((Callable<Set<Object>>) deployTask::getDependsOn);
+  }
+}
@@ -22,29 +22,97 @@ import com.google.cloud.tools.appengine.operations.cloudsdk.AppEngineJavaCompone
 import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkNotFoundException;
 import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkOutOfDateException;
 import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkVersionFileException;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
 import com.google.common.base.Strings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
+/**
+ * Validates a Cloud SDK configured with both a home and a version. The SDK VERSION file and the
+ * component manifests are the inputs of the task, so it is up-to-date until the SDK changes.
+ */
 public class CheckCloudSdkTask extends DefaultTask {
 
   private CloudSdk cloudSdk;
+  private File cloudSdkHome;
   private String version;
   private boolean requiresAppEngineJava;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
 
   public void setVersion(String version) {
     this.version = version;
   }
 
+  @Input
+  @Optional
+  public String getVersion() {
+    return version;
+  }
+
   public void setCloudSdk(CloudSdk cloudSdk) {
     this.cloudSdk = cloudSdk;
   }
 
+  public void setCloudSdkHome(File cloudSdkHome) {
+    this.cloudSdkHome = cloudSdkHome;
+  }
+
+  @Input
+  @Optional
+  public String getCloudSdkHomePath() {
+    return cloudSdkHome == null ? null : cloudSdkHome.getAbsolutePath();
+  }
+
   public void requiresAppEngineJava(boolean requiresAppEngineJava) {
     this.requiresAppEngineJava = requiresAppEngineJava;
   }
 
+  @Input
+  public boolean isRequiresAppEngineJava() {
+    return requiresAppEngineJava;
+  }
+
+  /** The VERSION file and component manifests of the SDK, which change with any sdk update. */
+  @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public FileCollection getCloudSdkFiles() {
+    if (cloudSdkHome == null) {
+      return getProject().files();
+    }
+    return getProject()
+        .files(
+            new File(cloudSdkHome, "VERSION"),
+            getProject()
+                .fileTree(new File(cloudSdkHome, ".install"), tree -> tree.include("*.manifest")));
+  }
+
+  /** Written after a successful validation, so the task is up-to-date until its inputs change. */
+  @OutputFile
+  public File getMarkerFile() {
+    return new File(getTemporaryDir(), "validated");
+  }
+
   /** Task entrypoint : Verify Cloud SDK installation. */
   @TaskAction
   public void checkCloudSdkAction()
@@ -57,6 +125,28 @@ public class CheckCloudSdkTask extends DefaultTask {
           "Cloud SDK home path and version must be configured in order to run this task.");
     }
 
+    PhaseTimings timings = new PhaseTimings();
+    boolean success = false;
+    try (PhaseTimings.Phase ignored = timings.start("sdkCheck")) {
+      checkCloudSdk();
+      writeMarker();
+      success = true;
+    } finally {
+      writeReport(timings, success);
+    }
+  }
+
+  private void writeMarker() {
+    try {
+      Files.write(getMarkerFile().toPath(), version.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      throw new GradleException("Failed to write " + getMarkerFile(), ex);
+    }
+  }
+
+  private void checkCloudSdk()
+      throws CloudSdkNotFoundException, CloudSdkVersionFileException, CloudSdkOutOfDateException,
+          AppEngineJavaComponentsNotInstalledException {
     if (!version.equals(cloudSdk.getVersion().toString())) {
       throw new GradleException(
           "Specified Cloud SDK version ("
@@ -71,4 +161,12 @@ public class CheckCloudSdkTask extends DefaultTask {
       cloudSdk.validateAppEngineJavaComponents();
     }
   }
+
+  private void writeReport(PhaseTimings timings, boolean success) {
+    try {
+      timings.writeReport(reportFile.get().getAsFile(), getPath(), success);
+    } catch (IOException ex) {
+      getLogger().warn("Failed to write the timings report", ex);
+    }
+  }
 }
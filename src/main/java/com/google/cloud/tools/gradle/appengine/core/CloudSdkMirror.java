@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.ConsoleListener;
+import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.gradle.api.GradleException;
+
+/**
+ * Provisions a managed Cloud SDK without Google's download servers, for build machines without
+ * internet access: the SDK is extracted from a local archive or a mirror of it, and components
+ * are installed from a mirror of the gcloud component snapshot. The archive is streamed once,
+ * verifying its checksum while it is extracted, and only moved in place once verified.
+ */
+class CloudSdkMirror {
+
+  private final URI archive;
+  private final String archiveSha256;
+  private final String componentsSnapshotUrl;
+
+  CloudSdkMirror(URI archive, String archiveSha256, String componentsSnapshotUrl) {
+    if (!"file".equals(archive.getScheme()) && Strings.isNullOrEmpty(archiveSha256)) {
+      throw new GradleException(
+          "cloudSdkArchiveSha256 must be configured to download the Cloud SDK from " + archive);
+    }
+    this.archive = archive;
+    this.archiveSha256 = archiveSha256;
+    this.componentsSnapshotUrl = componentsSnapshotUrl;
+  }
+
+  /** The mirror configured in a tools extension, null to download from Google. */
+  static CloudSdkMirror fromExtension(ToolsExtension toolsExtension) {
+    if (toolsExtension.getCloudSdkArchive() == null) {
+      return null;
+    }
+    return new CloudSdkMirror(
+        toolsExtension.getCloudSdkArchive(),
+        toolsExtension.getCloudSdkArchiveSha256(),
+        toolsExtension.getCloudSdkComponentsSnapshotUrl());
+  }
+
+  /**
+   * Check if the SDK and its components are provisioned from this machine only. Without a
+   * components snapshot, required components would be installed from Google.
+   */
+  boolean isLocal(boolean componentsRequired) {
+    if (!"file".equals(archive.getScheme())) {
+      return false;
+    }
+    return componentsSnapshotUrl == null
+        ? !componentsRequired
+        : componentsSnapshotUrl.startsWith("file:");
+  }
+
+  /** Check if components are installed from the mirror, rather than from Google. */
+  boolean hasComponentsSnapshot() {
+    return componentsSnapshotUrl != null;
+  }
+
+  /** Check if an SDK home holds an SDK extracted from this archive. */
+  boolean isInstalled(Path sdkHome) {
+    Path archiveMarker = getArchiveMarker(sdkHome);
+    try {
+      return Files.isRegularFile(sdkHome.resolve("VERSION"))
+          && Files.isRegularFile(archiveMarker)
+          && getArchiveId()
+              .equals(new String(Files.readAllBytes(archiveMarker), StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  /** Extract the SDK archive into an SDK home, replacing anything left there. */
+  void installSdk(Path sdkHome, ConsoleListener consoleListener) throws IOException {
+    consoleListener.console("Extracting the Cloud SDK from " + archive + "\n");
+    Path extractDir = sdkHome.resolveSibling(sdkHome.getFileName() + ".extracting");
+    ManagedCloudSdkLock.deleteRecursively(extractDir);
+    Files.createDirectories(extractDir);
+    try {
+      MessageDigest digest = newSha256();
+      try (DigestInputStream in =
+          new DigestInputStream(
+              new BufferedInputStream(archive.toURL().openStream()), digest)) {
+        if (archive.getPath().toLowerCase(Locale.US).endsWith(".zip")) {
+          extractZip(new ZipInputStream(in), extractDir);
+        } else {
+          extractTarGz(new TarArchiveInputStream(new GZIPInputStream(in)), extractDir);
+        }
+        // the checksum covers the whole archive, trailing bytes included
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+          // discard
+        }
+      }
+      String sha256 = BaseEncoding.base16().lowerCase().encode(digest.digest());
+      if (!Strings.isNullOrEmpty(archiveSha256) && !archiveSha256.equalsIgnoreCase(sha256)) {
+        throw new GradleException(
+            "Checksum of "
+                + archive
+                + " does not match cloudSdkArchiveSha256, expected "
+                + archiveSha256
+                + " but was "
+                + sha256);
+      }
+
+      ManagedCloudSdkLock.deleteRecursively(sdkHome);
+      Files.move(getArchiveRoot(extractDir), sdkHome, StandardCopyOption.ATOMIC_MOVE);
+      Files.write(getArchiveMarker(sdkHome), getArchiveId().getBytes(StandardCharsets.UTF_8));
+    } finally {
+      ManagedCloudSdkLock.deleteRecursively(extractDir);
+    }
+  }
+
+  /** Install a component with gcloud, from the components snapshot of the mirror. */
+  void installComponent(Path sdkHome, SdkComponent component, ConsoleListener consoleListener)
+      throws IOException, InterruptedException {
+    runGcloud(sdkHome, consoleListener, "components", "install", component.toString());
+  }
+
+  private void runGcloud(Path sdkHome, ConsoleListener consoleListener, String... args)
+      throws IOException, InterruptedException {
+    String gcloudName =
+        System.getProperty("os.name").startsWith("Windows") ? "gcloud.cmd" : "gcloud";
+    List<String> command = new ArrayList<>();
+    command.add(sdkHome.resolve("bin").resolve(gcloudName).toString());
+    command.addAll(Arrays.asList(args));
+    command.add("--quiet");
+    ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true);
+    processBuilder
+        .environment()
+        .put("CLOUDSDK_COMPONENT_MANAGER_SNAPSHOT_URL", componentsSnapshotUrl);
+    processBuilder.environment().put("CLOUDSDK_CORE_DISABLE_PROMPTS", "1");
+    Process process = processBuilder.start();
+    try (BufferedReader output =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = output.readLine()) != null) {
+        consoleListener.console(line + "\n");
+      }
+    }
+    int exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new GradleException(
+          "Failed to run gcloud " + String.join(" ", args) + ", exit code " + exitCode);
+    }
+  }
+
+  /** Identifies the archive, a different archive or checksum installs the SDK again. */
+  private String getArchiveId() {
+    return archive + "#" + Strings.nullToEmpty(archiveSha256).toLowerCase(Locale.US);
+  }
+
+  private static Path getArchiveMarker(Path sdkHome) {
+    return sdkHome.resolveSibling(sdkHome.getFileName() + ".archive");
+  }
+
+  private static void extractTarGz(TarArchiveInputStream tar, Path extractDir) throws IOException {
+    Path realRoot = extractDir.toRealPath();
+    TarArchiveEntry entry;
+    while ((entry = tar.getNextTarEntry()) != null) {
+      Path target = resolveEntry(extractDir, realRoot, entry.getName());
+      if (entry.isDirectory()) {
+        Files.createDirectories(target);
+      } else if (entry.isSymbolicLink()) {
+        // the checksum is only known at the end, a link must not let later entries escape
+        Path link = Paths.get(entry.getLinkName());
+        if (link.isAbsolute()
+            || !target.getParent().toRealPath().resolve(link).normalize().startsWith(realRoot)) {
+          throw new IOException(
+              "Archive link outside of the archive root: "
+                  + entry.getName()
+                  + " -> "
+                  + entry.getLinkName());
+        }
+        Files.createSymbolicLink(target, link);
+      } else if (entry.isLink()) {
+        // hard links name an earlier entry of the archive, copy it
+        Path source = extractDir.resolve(entry.getLinkName()).normalize();
+        if (!source.startsWith(extractDir)
+            || !Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)
+            || !source.toRealPath().startsWith(realRoot)) {
+          throw new IOException(
+              "Archive hard link to a missing or outside entry: "
+                  + entry.getName()
+                  + " -> "
+                  + entry.getLinkName());
+        }
+        Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+      } else {
+        Files.copy(tar, target);
+        // executable by its owner
+        if ((entry.getMode() & 0100) != 0) {
+          target.toFile().setExecutable(true, true);
+        }
+      }
+    }
+  }
+
+  private static void extractZip(ZipInputStream zip, Path extractDir) throws IOException {
+    Path realRoot = extractDir.toRealPath();
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      Path target = resolveEntry(extractDir, realRoot, entry.getName());
+      if (entry.isDirectory()) {
+        Files.createDirectories(target);
+      } else {
+        Files.copy(zip, target);
+      }
+    }
+  }
+
+  /**
+   * Resolve an archive entry and create its parent directory, rejecting entries that would be
+   * written outside the directory, by their name or through a link extracted before them.
+   */
+  private static Path resolveEntry(Path extractDir, Path realRoot, String name)
+      throws IOException {
+    Path target = extractDir.resolve(name).normalize();
+    if (!target.startsWith(extractDir) || target.equals(extractDir)) {
+      throw new IOException("Archive entry outside of the archive root: " + name);
+    }
+    Files.createDirectories(target.getParent());
+    if (!target.getParent().toRealPath().startsWith(realRoot)
+        || (Files.exists(target, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(target))) {
+      throw new IOException("Archive entry outside of the archive root: " + name);
+    }
+    return target;
+  }
+
+  /** The google-cloud-sdk directory at the root of the SDK archives. */
+  private static Path getArchiveRoot(Path extractDir) throws IOException {
+    File[] roots = extractDir.toFile().listFiles(File::isDirectory);
+    if (roots == null || roots.length != 1) {
+      throw new IOException(
+          "Cloud SDK archive must contain a single google-cloud-sdk directory at its root");
+    }
+    return roots[0].toPath();
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -25,8 +25,10 @@ import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkNotFoundExce
 import com.google.cloud.tools.appengine.operations.cloudsdk.process.LegacyProcessHandler;
 import com.google.cloud.tools.appengine.operations.cloudsdk.process.NonZeroExceptionExitListener;
 import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
 import com.google.cloud.tools.gradle.appengine.util.NullSafe;
 import java.io.File;
+import java.util.function.Consumer;
 import org.gradle.api.logging.Logger;
 
 /** Cloud Sdk Operations with all common configuration. */
@@ -34,6 +36,7 @@ public class CloudSdkOperations {
 
   private final CloudSdk cloudSdk;
   private final Gcloud gcloud;
+  private final Gcloud jsonGcloud;
 
   /**
    * Operations factory for Cloud Sdk based actions.
@@ -46,14 +49,17 @@ public class CloudSdkOperations {
   public CloudSdkOperations(File cloudSdkHome, File credentialFile, String verbosity)
       throws CloudSdkNotFoundException {
     cloudSdk = new CloudSdk.Builder().sdkPath(cloudSdkHome.toPath()).build();
-    gcloud =
-        Gcloud.builder(cloudSdk)
-            .setCredentialFile(NullSafe.convert(credentialFile, File::toPath))
-            .setMetricsEnvironment(
-                getClass().getPackage().getImplementationTitle(),
-                getClass().getPackage().getImplementationVersion())
-            .setVerbosity(verbosity)
-            .build();
+    gcloud = newGcloudBuilder(credentialFile, verbosity).build();
+    jsonGcloud = newGcloudBuilder(credentialFile, verbosity).setOutputFormat("json").build();
+  }
+
+  private Gcloud.Builder newGcloudBuilder(File credentialFile, String verbosity) {
+    return Gcloud.builder(cloudSdk)
+        .setCredentialFile(NullSafe.convert(credentialFile, File::toPath))
+        .setMetricsEnvironment(
+            getClass().getPackage().getImplementationTitle(),
+            getClass().getPackage().getImplementationVersion())
+        .setVerbosity(verbosity);
   }
 
   public CloudSdk getCloudSdk() {
@@ -64,6 +70,11 @@ public class CloudSdkOperations {
     return gcloud;
   }
 
+  /** Gcloud run with {@code --format=json}, its output is handled by {@link #getJsonHandler}. */
+  public Gcloud getJsonGcloud() {
+    return jsonGcloud;
+  }
+
   /**
    * DevServers isn't initialized at construction time, because we optionally download the appengine
    * component for appengine-web.xml based applications
@@ -88,4 +99,31 @@ public class CloudSdkOperations {
         .setExitListener(new NonZeroExceptionExitListener())
         .build();
   }
+
+  /**
+   * The default handler, with each line prefixed to tell apart processes running in parallel, and
+   * also passed to an extra listener.
+   */
+  public static ProcessHandler getDefaultHandler(
+      Logger logger, String prefix, ProcessOutputLineListener outputListener) {
+    return LegacyProcessHandler.builder()
+        .addStdErrLineListener(line -> logger.lifecycle(prefix + line))
+        .addStdErrLineListener(outputListener)
+        .addStdOutLineListener(line -> logger.lifecycle(prefix + line))
+        .addStdOutLineListener(outputListener)
+        .setExitListener(new NonZeroExceptionExitListener())
+        .build();
+  }
+
+  /**
+   * A handler for deployments run with {@code --format=json}, logging stderr like the default
+   * handler and parsing the deployment result from stdout.
+   */
+  public static ProcessHandler getJsonHandler(
+      Logger logger,
+      String prefix,
+      ProcessOutputLineListener outputListener,
+      Consumer<GcloudDeployResult> resultConsumer) {
+    return new JsonOutputProcessHandler(logger, prefix, outputListener, resultConsumer);
+  }
 }
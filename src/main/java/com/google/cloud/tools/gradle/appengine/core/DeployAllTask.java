@@ -68,10 +68,18 @@ public class DeployAllTask extends GcloudTask {
     }
 
     // Deploy
-    Deployment deploy = gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()));
-
     DeployConfiguration deployConfig = deployExtension.toDeployConfiguration(deployables);
-    deploy.deploy(deployConfig);
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          Deployment deploy = gcloud.newDeployment(newProcessHandler(timings, retry));
+          deployIfChanged(
+              deployConfig,
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              deploy::deploy);
+        });
   }
 
   private void addDeployable(List<Path> deployables, Path yaml) {
@@ -38,8 +38,16 @@ public class DeployCronTask extends GcloudTask {
   /** Task Entrypoint : deploy cron.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud
-        .newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .deployCron(deployExtension.toDeployProjectConfigurationConfiguration());
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          deployConfigIfChanged(
+              deployExtension.toDeployProjectConfigurationConfiguration(),
+              "cron.yaml",
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deployCron);
+        });
   }
 }
@@ -39,8 +39,16 @@ public class DeployDispatchTask extends GcloudTask {
   /** Task entrypoint : deploy dispatch.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud
-        .newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .deployDispatch(deployExtension.toDeployProjectConfigurationConfiguration());
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          deployConfigIfChanged(
+              deployExtension.toDeployProjectConfigurationConfiguration(),
+              "dispatch.yaml",
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deployDispatch);
+        });
   }
 }
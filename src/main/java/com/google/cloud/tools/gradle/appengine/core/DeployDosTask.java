@@ -38,8 +38,16 @@ public class DeployDosTask extends GcloudTask {
   /** Task entrypoint : deploy dos.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud
-        .newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .deployDos(deployExtension.toDeployProjectConfigurationConfiguration());
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          deployConfigIfChanged(
+              deployExtension.toDeployProjectConfigurationConfiguration(),
+              "dos.yaml",
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deployDos);
+        });
   }
 }
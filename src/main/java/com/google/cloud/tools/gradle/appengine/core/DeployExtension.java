@@ -43,6 +43,10 @@ public class DeployExtension {
   private Boolean stopPreviousVersion;
   private String version;
   private File appEngineDirectory;
+  private Boolean skipUnchanged;
+  private Integer deployAttempts;
+  private Integer deployRetryBackoffMillis;
+  private List<String> retryableDeployErrors;
 
   public DeployExtension(Project gradleProject) {
     this.gradleProject = gradleProject;
@@ -148,6 +152,38 @@ public class DeployExtension {
     return appEngineDirectory;
   }
 
+  public Boolean getSkipUnchanged() {
+    return skipUnchanged;
+  }
+
+  public void setSkipUnchanged(Boolean skipUnchanged) {
+    this.skipUnchanged = skipUnchanged;
+  }
+
+  public Integer getDeployAttempts() {
+    return deployAttempts;
+  }
+
+  public void setDeployAttempts(Integer deployAttempts) {
+    this.deployAttempts = deployAttempts;
+  }
+
+  public Integer getDeployRetryBackoffMillis() {
+    return deployRetryBackoffMillis;
+  }
+
+  public void setDeployRetryBackoffMillis(Integer deployRetryBackoffMillis) {
+    this.deployRetryBackoffMillis = deployRetryBackoffMillis;
+  }
+
+  public List<String> getRetryableDeployErrors() {
+    return retryableDeployErrors;
+  }
+
+  public void setRetryableDeployErrors(List<String> retryableDeployErrors) {
+    this.retryableDeployErrors = retryableDeployErrors;
+  }
+
   public String getProject() {
     throw new GradleException(
         "Use of appengine.deploy.project is deprecated, use appengine.deploy.projectId");
@@ -38,8 +38,16 @@ public class DeployIndexTask extends GcloudTask {
   /** Task entrypoint : deploy index.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud
-        .newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .deployIndex(deployExtension.toDeployProjectConfigurationConfiguration());
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          deployConfigIfChanged(
+              deployExtension.toDeployProjectConfigurationConfiguration(),
+              "index.yaml",
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deployIndex);
+        });
   }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.configuration.DeployConfiguration;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The content of an app deployment: the resolved deploy configuration and a hash of every deployed
+ * file. An app.yaml deploys the whole directory it is in, so all files in that directory are
+ * included. Config yamls deployed alongside are tracked by {@link DeployedConfigs} instead. Written
+ * after a successful deployment, so the next deployment of identical content to the same project
+ * and version can be skipped.
+ */
+class DeployManifest {
+
+  private final Map<String, String> entries;
+
+  private DeployManifest(Map<String, String> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Create the manifest of a deployment.
+   *
+   * @return the manifest, or null if the deployment does not target an explicit project and
+   *     version, gcloud creates a new version on every deployment then
+   */
+  static DeployManifest create(DeployConfiguration config) throws IOException {
+    if (config.getProjectId() == null || config.getVersion() == null) {
+      return null;
+    }
+    Map<String, String> entries = new TreeMap<>();
+    entries.put("bucket", Objects.toString(config.getBucket()));
+    entries.put("gcloudMode", Objects.toString(config.getGcloudMode()));
+    entries.put("imageUrl", Objects.toString(config.getImageUrl()));
+    entries.put("projectId", config.getProjectId());
+    entries.put("promote", Objects.toString(config.getPromote()));
+    entries.put("server", Objects.toString(config.getServer()));
+    entries.put("stopPreviousVersion", Objects.toString(config.getStopPreviousVersion()));
+    entries.put("version", config.getVersion());
+
+    List<Path> deployables = config.getDeployables();
+    for (int i = 0; i < deployables.size(); i++) {
+      Path deployable = deployables.get(i);
+      if (isAppYaml(deployable)) {
+        String prefix = "deployable." + i + ":";
+        Path appDirectory = deployable.toAbsolutePath().getParent();
+        for (Path file : listFiles(appDirectory)) {
+          entries.put(
+              prefix + appDirectory.relativize(file).toString().replace('\\', '/'), hash(file));
+        }
+      }
+    }
+    return new DeployManifest(entries);
+  }
+
+  /** Check if a deployable is an app, anything else is a config yaml. */
+  static boolean isAppYaml(Path deployable) {
+    return deployable.getFileName().toString().equals("app.yaml");
+  }
+
+  /** Check if the manifest file describes the same deployment as this manifest. */
+  boolean matches(Path manifestFile) throws IOException {
+    return Files.isRegularFile(manifestFile)
+        && new String(Files.readAllBytes(manifestFile), StandardCharsets.UTF_8)
+            .equals(toString());
+  }
+
+  /** Write the manifest file, replacing it atomically. */
+  void write(Path manifestFile) throws IOException {
+    Files.createDirectories(manifestFile.getParent());
+    Path temp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+    Files.write(temp, toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder manifest = new StringBuilder();
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      manifest.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+    }
+    return manifest.toString();
+  }
+
+  private static List<Path> listFiles(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> walk = Files.walk(directory)) {
+      return walk.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  static String hash(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return "missing";
+    }
+    return com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256()).toString();
+  }
+}
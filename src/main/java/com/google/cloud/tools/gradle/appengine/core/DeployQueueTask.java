@@ -38,8 +38,16 @@ public class DeployQueueTask extends GcloudTask {
   /** Task entrypoint : deploy queue.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud
-        .newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .deployQueue(deployExtension.toDeployProjectConfigurationConfiguration());
+    runTimed(
+        timings -> {
+          DeployRetry retry = DeployRetry.fromExtension(deployExtension, getLogger());
+          deployConfigIfChanged(
+              deployExtension.toDeployProjectConfigurationConfiguration(),
+              "queue.yaml",
+              Boolean.TRUE.equals(deployExtension.getSkipUnchanged()),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deployQueue);
+        });
   }
 }
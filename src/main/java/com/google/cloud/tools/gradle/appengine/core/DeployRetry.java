@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Retries a gcloud deployment that failed with a transient error, like an upload timeout, a 409
+ * conflict with an operation in progress, or a quota blip. A failure is transient if the output of
+ * the failed attempt, or the failure message, matches one of the retryable errors. Attempts wait
+ * for an exponential backoff in between, and only rerun gcloud on what is already staged.
+ */
+class DeployRetry implements ProcessOutputLineListener {
+
+  /** Transient errors retried by default, matched against the gcloud output of an attempt. */
+  static final List<String> DEFAULT_RETRYABLE_ERRORS =
+      ImmutableList.of(
+          "Error Response: \\[(409|429|500|502|503|504)\\]",
+          "(?i)operation is already in progress",
+          "RESOURCE_EXHAUSTED",
+          "(?i)\\btimed out\\b",
+          "(?i)\\b(Read|Connect)Timeout",
+          "(?i)connection (reset|aborted)");
+
+  static final long MAX_BACKOFF_MILLIS = 60_000;
+
+  // enough to hold the error gcloud reports on failure
+  private static final int OUTPUT_TAIL_LINES = 100;
+
+  /** Waits in between attempts. */
+  interface Sleeper {
+    void sleep(long millis) throws InterruptedException;
+  }
+
+  /** An attempt at a deployment. */
+  interface Attempt {
+    void run() throws AppEngineException;
+  }
+
+  private final int maxAttempts;
+  private final long backoffMillis;
+  private final List<Pattern> retryableErrors;
+  private final Logger logger;
+  private final Deque<String> outputTail = new ArrayDeque<>();
+  private Sleeper sleeper = Thread::sleep;
+
+  DeployRetry(int maxAttempts, long backoffMillis, List<String> retryableErrors, Logger logger) {
+    if (maxAttempts < 1) {
+      throw new GradleException("deployAttempts must be at least 1");
+    }
+    if (backoffMillis < 0) {
+      throw new GradleException("deployRetryBackoffMillis must not be negative");
+    }
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+    this.retryableErrors = new ArrayList<>();
+    for (String retryableError : retryableErrors) {
+      try {
+        this.retryableErrors.add(Pattern.compile(retryableError));
+      } catch (PatternSyntaxException ex) {
+        throw new GradleException("Invalid retryable deploy error: " + retryableError, ex);
+      }
+    }
+    this.logger = logger;
+  }
+
+  /** The retry policy configured in a deploy extension. */
+  static DeployRetry fromExtension(DeployExtension deployExtension, Logger logger) {
+    return new DeployRetry(
+        deployExtension.getDeployAttempts() == null ? 1 : deployExtension.getDeployAttempts(),
+        deployExtension.getDeployRetryBackoffMillis() == null
+            ? 5_000
+            : deployExtension.getDeployRetryBackoffMillis(),
+        deployExtension.getRetryableDeployErrors() == null
+            ? DEFAULT_RETRYABLE_ERRORS
+            : deployExtension.getRetryableDeployErrors(),
+        logger);
+  }
+
+  void setSleeper(Sleeper sleeper) {
+    this.sleeper = sleeper;
+  }
+
+  /** Record the output of the current attempt, to classify its failure. */
+  @Override
+  public synchronized void onOutputLine(String line) {
+    if (outputTail.size() == OUTPUT_TAIL_LINES) {
+      outputTail.removeFirst();
+    }
+    outputTail.addLast(line);
+  }
+
+  /** Run a deployment, retrying it on transient failures. */
+  void run(Attempt attempt, PhaseTimings timings) throws AppEngineException {
+    for (int attemptNumber = 1; ; attemptNumber++) {
+      synchronized (this) {
+        outputTail.clear();
+      }
+      try {
+        attempt.run();
+        return;
+      } catch (AppEngineException | RuntimeException ex) {
+        if (attemptNumber >= maxAttempts || !isRetryable(ex)) {
+          throw ex;
+        }
+        long backoff = getBackoffMillis(attemptNumber);
+        logger.lifecycle(
+            "Deploy attempt {} of {} failed with a transient error, retrying in {} ms",
+            attemptNumber,
+            maxAttempts,
+            backoff);
+        timings.mark("failedAttempt");
+        try (PhaseTimings.Phase ignored = timings.start("retryWait")) {
+          sleeper.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw ex;
+        }
+        timings.resetMark();
+      }
+    }
+  }
+
+  /** The wait before the attempt following an attempt, doubled after every attempt. */
+  long getBackoffMillis(int attemptNumber) {
+    long backoff = backoffMillis;
+    for (int i = 1; i < attemptNumber && backoff < MAX_BACKOFF_MILLIS; i++) {
+      backoff *= 2;
+    }
+    return Math.min(backoff, MAX_BACKOFF_MILLIS);
+  }
+
+  /** Check if a failure is transient, from the output of the attempt or the failure messages. */
+  synchronized boolean isRetryable(Throwable failure) {
+    List<String> evidence = new ArrayList<>(outputTail);
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null) {
+        evidence.add(cause.getMessage());
+      }
+    }
+    for (String text : evidence) {
+      for (Pattern retryableError : retryableErrors) {
+        if (retryableError.matcher(text).find()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.configuration.DeployConfiguration;
+import com.google.cloud.tools.appengine.operations.Deployment;
+import com.google.cloud.tools.appengine.operations.Gcloud;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Root project task to deploy the services of every App Engine project in a multi-project build,
+ * either in parallel with one gcloud process per service, or with a single gcloud call per set of
+ * services sharing a deploy configuration.
+ */
+public class DeployServicesTask extends DefaultTask {
+
+  private final Map<DeployTask, ToolsExtension> services = new LinkedHashMap<>();
+  private final List<DownloadCloudSdkTask> cloudSdkTasks = new ArrayList<>();
+  private int maxParallelDeploys = 4;
+  private boolean singleDeployment;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
+
+  /** Add the service deployed by a project's appengineDeploy task, with the project's tools. */
+  public void addService(DeployTask deployTask, ToolsExtension tools) {
+    services.put(deployTask, tools);
+  }
+
+  /** Wait for the sdk provisioning of a project before deploying, it may run in the background. */
+  void addCloudSdkTask(DownloadCloudSdkTask downloadCloudSdkTask) {
+    cloudSdkTasks.add(downloadCloudSdkTask);
+  }
+
+  @Internal
+  public List<DeployTask> getDeployTasks() {
+    return new ArrayList<>(services.keySet());
+  }
+
+  /** The maximum number of services deployed at the same time. */
+  @Input
+  public int getMaxParallelDeploys() {
+    return maxParallelDeploys;
+  }
+
+  public void setMaxParallelDeploys(int maxParallelDeploys) {
+    this.maxParallelDeploys = maxParallelDeploys;
+  }
+
+  /** True to deploy services with the same deploy configuration in a single gcloud call. */
+  @Input
+  public boolean getSingleDeployment() {
+    return singleDeployment;
+  }
+
+  public void setSingleDeployment(boolean singleDeployment) {
+    this.singleDeployment = singleDeployment;
+  }
+
+  /** Task Entrypoint : Deploy all services. */
+  @TaskAction
+  public void deployServicesAction() {
+    if (maxParallelDeploys < 1) {
+      throw new GradleException("maxParallelDeploys must be at least 1");
+    }
+    if (services.isEmpty()) {
+      getLogger().lifecycle("No App Engine services to deploy");
+      return;
+    }
+    cloudSdkTasks.forEach(DownloadCloudSdkTask::awaitCloudSdk);
+    PhaseTimings timings = new PhaseTimings();
+    timings.setAttribute("mode", singleDeployment ? "single" : "parallel");
+    Map<DeployTask, GcloudDeployResult> results = new ConcurrentHashMap<>();
+    Map<List<String>, Throwable> failures =
+        singleDeployment ? deploySingle(timings, results) : deployParallel(timings, results);
+    // results are handed to the deploy tasks here, deployment threads only touch this task
+    services.keySet().forEach(service -> service.setDeployResult(results.get(service)));
+    try {
+      timings.writeReport(reportFile.get().getAsFile(), getPath(), failures.isEmpty());
+    } catch (IOException ex) {
+      getLogger().warn("Failed to write the timings report", ex);
+    }
+    if (!failures.isEmpty()) {
+      StringBuilder message = new StringBuilder();
+      message
+          .append("Failed to deploy ")
+          .append(failures.keySet().stream().mapToInt(List::size).sum())
+          .append(" of ")
+          .append(services.size())
+          .append(" services:");
+      for (Map.Entry<List<String>, Throwable> failure : failures.entrySet()) {
+        message
+            .append("\n  ")
+            .append(String.join(", ", failure.getKey()))
+            .append(": ")
+            .append(failure.getValue().getMessage());
+      }
+      throw new GradleException(message.toString(), failures.values().iterator().next());
+    }
+  }
+
+  /**
+   * Resolve what the deployment of a service needs from its deploy task, on the task thread, so
+   * deployment threads never call into another project's task.
+   */
+  private static class Service {
+    private final DeployTask task;
+    private final String name;
+    private final DeployConfiguration deployConfig;
+    private final boolean skipUnchanged;
+    private final DeployedConfigs deployedConfigs;
+    private final Path manifestFile;
+
+    private Service(DeployTask task) {
+      this.task = task;
+      this.name = task.getProject().getPath();
+      this.deployConfig = task.getDeployConfiguration();
+      this.skipUnchanged = task.isSkipUnchanged();
+      this.deployedConfigs = task.getDeployedConfigs();
+      this.manifestFile = task.getDeployManifestFile();
+    }
+
+    GcloudTask.ChangedDeployables findChangedDeployables(Logger logger, PhaseTimings timings) {
+      return GcloudTask.findChangedDeployables(
+          deployConfig, skipUnchanged, deployedConfigs, manifestFile, logger, timings);
+    }
+  }
+
+  /** Deploy each service in its own gcloud process, returns the failures by service. */
+  private Map<List<String>, Throwable> deployParallel(
+      PhaseTimings timings, Map<DeployTask, GcloudDeployResult> results) {
+    Map<List<String>, Future<?>> deployments = new LinkedHashMap<>();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(maxParallelDeploys, services.size()));
+    try {
+      for (DeployTask task : services.keySet()) {
+        Service service = new Service(task);
+        PhaseTimings serviceTimings = timings.forScope(service.name);
+        DeployRetry retry = task.newDeployRetry();
+        Deployment deployment =
+            task.getGcloud()
+                .newDeployment(
+                    task.newProcessHandler(
+                        service.name + ": ",
+                        serviceTimings,
+                        retry,
+                        result -> results.put(task, result)));
+        deployments.put(
+            Collections.singletonList(service.name),
+            executor.submit(
+                () -> {
+                  GcloudTask.ChangedDeployables changed =
+                      service.findChangedDeployables(getLogger(), serviceTimings);
+                  if (changed.isEmpty()) {
+                    getLogger().lifecycle("Nothing to deploy for {}", service.name);
+                    return null;
+                  }
+                  getLogger().lifecycle("Deploying {}", service.name);
+                  GcloudTask.deployChanged(
+                      service.deployConfig, changed, serviceTimings, retry, deployment::deploy);
+                  return null;
+                }));
+      }
+      return awaitAll(deployments);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Deploy services sharing a deploy configuration and Cloud SDK with a single gcloud call per
+   * group, groups are deployed in parallel. Returns the failures by group.
+   */
+  private Map<List<String>, Throwable> deploySingle(
+      PhaseTimings timings, Map<DeployTask, GcloudDeployResult> results) {
+    Map<List<Object>, List<Service>> groups = new LinkedHashMap<>();
+    for (Map.Entry<DeployTask, ToolsExtension> entry : services.entrySet()) {
+      Service service = new Service(entry.getKey());
+      DeployConfiguration config = service.deployConfig;
+      List<Object> key =
+          Arrays.asList(
+              entry.getValue().getCloudSdkHome(),
+              entry.getValue().getServiceAccountKeyFile(),
+              service.task.isStructuredOutput(),
+              config.getBucket(),
+              config.getGcloudMode(),
+              config.getImageUrl(),
+              config.getProjectId(),
+              config.getPromote(),
+              config.getServer(),
+              config.getStopPreviousVersion(),
+              config.getVersion());
+      groups.computeIfAbsent(key, ignored -> new ArrayList<>()).add(service);
+    }
+
+    Map<List<String>, Future<?>> deployments = new LinkedHashMap<>();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(maxParallelDeploys, groups.size()));
+    try {
+      for (List<Service> group : groups.values()) {
+        List<String> names = new ArrayList<>();
+        for (Service service : group) {
+          names.add(service.name);
+        }
+        DeployTask first = group.get(0).task;
+        PhaseTimings groupTimings = timings.forScope(String.join(",", names));
+        DeployRetry retry = first.newDeployRetry();
+        Deployment deployment =
+            first
+                .getGcloud()
+                .newDeployment(
+                    first.newProcessHandler(
+                        "",
+                        groupTimings,
+                        retry,
+                        result -> group.forEach(service -> results.put(service.task, result))));
+        deployments.put(
+            names,
+            executor.submit(
+                () -> {
+                  // each service keeps its own manifest and deployed configs, as if deployed alone
+                  List<GcloudTask.ChangedDeployables> changes = new ArrayList<>();
+                  List<Path> deployables = new ArrayList<>();
+                  for (Service service : group) {
+                    GcloudTask.ChangedDeployables changed =
+                        service.findChangedDeployables(getLogger(), groupTimings);
+                    changes.add(changed);
+                    deployables.addAll(changed.getDeployables());
+                  }
+                  if (deployables.isEmpty()) {
+                    getLogger().lifecycle("Nothing to deploy for {}", String.join(", ", names));
+                    return null;
+                  }
+                  DeployConfiguration groupConfig =
+                      GcloudTask.withDeployables(group.get(0).deployConfig, deployables);
+                  getLogger().lifecycle("Deploying {}", String.join(", ", names));
+                  changes.forEach(GcloudTask.ChangedDeployables::beginDeployment);
+                  try (PhaseTimings.Phase ignored = groupTimings.start("deploy")) {
+                    retry.run(() -> deployment.deploy(groupConfig), groupTimings);
+                  }
+                  changes.forEach(GcloudTask.ChangedDeployables::endDeployment);
+                  return null;
+                }));
+      }
+      return awaitAll(deployments);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Map<List<String>, Throwable> awaitAll(Map<List<String>, Future<?>> deployments) {
+    Map<List<String>, Throwable> failures = new LinkedHashMap<>();
+    for (Map.Entry<List<String>, Future<?>> deployment : deployments.entrySet()) {
+      String names = String.join(", ", deployment.getKey());
+      try {
+        deployment.getValue().get();
+        getLogger().lifecycle("Deployed {}", names);
+      } catch (ExecutionException ex) {
+        getLogger().error("Failed to deploy {}", names, ex.getCause());
+        failures.put(deployment.getKey(), ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new GradleException("Interrupted while deploying services", ex);
+      }
+    }
+    return failures;
+  }
+
+}
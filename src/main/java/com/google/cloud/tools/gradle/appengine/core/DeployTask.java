@@ -43,11 +43,34 @@ public class DeployTask extends GcloudTask {
     this.gcloud = gcloud;
   }
 
+  Gcloud getGcloud() {
+    return gcloud;
+  }
+
+  DeployConfiguration getDeployConfiguration() {
+    return deployExtension.toDeployConfiguration(ImmutableList.of(appYaml));
+  }
+
+  boolean isSkipUnchanged() {
+    return Boolean.TRUE.equals(deployExtension.getSkipUnchanged());
+  }
+
+  DeployRetry newDeployRetry() {
+    return DeployRetry.fromExtension(deployExtension, getLogger());
+  }
+
   /** Task Entrypoint : DeployExtension application (via app.yaml). */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    DeployConfiguration deployConfig =
-        deployExtension.toDeployConfiguration(ImmutableList.of(appYaml));
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deploy(deployConfig);
+    runTimed(
+        timings -> {
+          DeployRetry retry = newDeployRetry();
+          deployIfChanged(
+              getDeployConfiguration(),
+              isSkipUnchanged(),
+              timings,
+              retry,
+              gcloud.newDeployment(newProcessHandler(timings, retry))::deploy);
+        });
   }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The hashes of the config yamls (cron.yaml, dispatch.yaml, dos.yaml, index.yaml and queue.yaml)
+ * last deployed from a project, by target project and server. Shared by all deploy tasks of the
+ * project, so a config deployed by appengineDeployAll is not deployed again by appengineDeployCron.
+ */
+class DeployedConfigs {
+
+  private final Path recordFile;
+
+  DeployedConfigs(Path recordFile) {
+    this.recordFile = recordFile;
+  }
+
+  /** Check if this content of a config was the last one successfully deployed to a target. */
+  boolean isDeployed(String projectId, String server, Path config) throws IOException {
+    if (projectId == null || !Files.isRegularFile(config)) {
+      return false;
+    }
+    return DeployManifest.hash(config).equals(load().getProperty(key(projectId, server, config)));
+  }
+
+  /** Record the content of a config as deployed, or forget it before trying a new deployment. */
+  void setDeployed(String projectId, String server, Path config, boolean deployed)
+      throws IOException {
+    if (projectId == null) {
+      return;
+    }
+    Properties records = load();
+    if (deployed) {
+      records.setProperty(key(projectId, server, config), DeployManifest.hash(config));
+    } else if (records.remove(key(projectId, server, config)) == null) {
+      return;
+    }
+    Files.createDirectories(recordFile.getParent());
+    Path temp = recordFile.resolveSibling(recordFile.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      records.store(out, null);
+    }
+    Files.move(temp, recordFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private Properties load() throws IOException {
+    Properties records = new Properties();
+    if (Files.isRegularFile(recordFile)) {
+      try (InputStream in = Files.newInputStream(recordFile)) {
+        records.load(in);
+      }
+    }
+    return records;
+  }
+
+  private static String key(String projectId, String server, Path config) {
+    return projectId + "/" + (server == null ? "" : server) + "/" + config.getFileName();
+  }
+}
@@ -17,6 +17,7 @@
 
 package com.google.cloud.tools.gradle.appengine.core;
 
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
 import com.google.cloud.tools.managedcloudsdk.ConsoleListener;
 import com.google.cloud.tools.managedcloudsdk.ManagedCloudSdk;
 import com.google.cloud.tools.managedcloudsdk.ManagedSdkVerificationException;
@@ -30,11 +31,20 @@ import com.google.cloud.tools.managedcloudsdk.install.SdkInstaller;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstallerException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 
@@ -42,11 +52,49 @@ public class DownloadCloudSdkTask extends DefaultTask {
 
   private ManagedCloudSdk managedCloudSdk;
   private final List<SdkComponent> components = new ArrayList<>();
+  private long verifiedTtlMillis;
+  private CloudSdkMirror mirror;
+  private ExecutorService backgroundExecutor;
+  private Future<?> background;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
+
+  /** Skip the task while the last verification of the managed sdk holds. */
+  public DownloadCloudSdkTask() {
+    onlyIf(
+        task -> {
+          // a background provisioning is waited for by the task action
+          if (managedCloudSdk == null
+              || isStartedInBackground()
+              || !isVerified(new ManagedCloudSdkStatus(managedCloudSdk.getSdkHome()))) {
+            return true;
+          }
+          getLogger()
+              .info(
+                  "Cloud SDK at {} was verified recently, skipping", managedCloudSdk.getSdkHome());
+          return false;
+        });
+  }
 
   public void setManagedCloudSdk(ManagedCloudSdk managedCloudSdk) {
     this.managedCloudSdk = managedCloudSdk;
   }
 
+  /** Install the sdk and its components from a mirror instead of Google's servers. */
+  void setCloudSdkMirror(CloudSdkMirror mirror) {
+    this.mirror = mirror;
+  }
+
+  /** How long a successful verification of the sdk is trusted by later builds, 0 to not trust. */
+  public void setVerifiedTtlMillis(long verifiedTtlMillis) {
+    this.verifiedTtlMillis = verifiedTtlMillis;
+  }
+
   public void requiresComponent(SdkComponent component) {
     components.add(component);
   }
@@ -68,30 +116,206 @@ public class DownloadCloudSdkTask extends DefaultTask {
       throw new GradleException("Cloud SDK home path must not be configured to run this task.");
     }
 
+    if (isStartedInBackground()) {
+      awaitCloudSdk();
+    } else {
+      provision(
+          new DownloadCloudSdkTaskConsoleListener(getProject()),
+          getLogger(),
+          reportFile.get().getAsFile(),
+          getPath());
+    }
+  }
+
+  /**
+   * Start provisioning the sdk on a background thread, while the rest of the build runs. The task
+   * action, which tasks needing the sdk depend on, waits for it with {@link #awaitCloudSdk()}, and
+   * {@link #stopBackground()} must be called when the build finishes.
+   *
+   * <p>Everything the provisioning needs from the project is resolved here, the background thread
+   * never calls into the project or the task's providers.
+   */
+  synchronized void startInBackground() {
+    if (background != null
+        || managedCloudSdk == null
+        || isVerified(new ManagedCloudSdkStatus(managedCloudSdk.getSdkHome()))) {
+      return;
+    }
+    Logger logger = getLogger();
+    ConsoleListener consoleListener = new DownloadCloudSdkTaskConsoleListener(logger);
+    File report = reportFile.get().getAsFile();
+    String path = getPath();
+    backgroundExecutor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "downloadCloudSdk " + path);
+              thread.setDaemon(true);
+              return thread;
+            });
+    background =
+        backgroundExecutor.submit(
+            () -> {
+              provision(consoleListener, logger, report, path);
+              return null;
+            });
+    backgroundExecutor.shutdown();
+  }
+
+  /**
+   * Interrupt a background provisioning the build did not wait for, and wait for its thread to
+   * end, so it does not outlive the build in the daemon. An interrupted install is cleaned up by
+   * the next build.
+   */
+  void stopBackground() {
+    ExecutorService executor;
+    synchronized (this) {
+      executor = backgroundExecutor;
+      if (executor == null) {
+        return;
+      }
+      background.cancel(true);
+      background = null;
+      backgroundExecutor = null;
+    }
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        getLogger().lifecycle("Waiting for the Cloud SDK download to stop");
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private synchronized boolean isStartedInBackground() {
+    return background != null;
+  }
+
+  /** Wait for the sdk provisioned in the background, if it was started. */
+  void awaitCloudSdk() {
+    Future<?> provisioning;
+    synchronized (this) {
+      provisioning = background;
+    }
+    if (provisioning == null) {
+      return;
+    }
+    try {
+      provisioning.get();
+    } catch (ExecutionException ex) {
+      throw new GradleException("Failed to download the Cloud SDK", ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while waiting for the Cloud SDK", ex);
+    }
+  }
+
+  /** Provision the sdk, may run on a background thread so it only uses its arguments. */
+  private void provision(
+      ConsoleListener consoleListener, Logger logger, File report, String path)
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException,
+          CommandExitException, IOException {
+    PhaseTimings timings = new PhaseTimings();
+    boolean success = false;
+    try {
+      downloadCloudSdk(timings, consoleListener, logger);
+      success = true;
+    } finally {
+      try {
+        timings.writeReport(report, path, success);
+      } catch (IOException ex) {
+        logger.warn("Failed to write the timings report", ex);
+      }
+    }
+  }
+
+  private void downloadCloudSdk(
+      PhaseTimings timings, ConsoleListener consoleListener, Logger logger)
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException,
+          CommandExitException, IOException {
     ProgressListener progressListener = new NoOpProgressListener();
-    ConsoleListener consoleListener = new DownloadCloudSdkTaskConsoleListener(getProject());
 
-    // Install sdk if not installed
-    if (!managedCloudSdk.isInstalled()) {
-      SdkInstaller installer = managedCloudSdk.newInstaller();
-      installer.install(progressListener, consoleListener);
+    // the managed sdk is shared by all builds of the machine, only one of them changes it at once
+    ManagedCloudSdkLock lock;
+    try (PhaseTimings.Phase ignored = timings.start("sdkLock")) {
+      lock = ManagedCloudSdkLock.acquire(managedCloudSdk.getSdkHome(), logger);
     }
+    ManagedCloudSdkStatus status = new ManagedCloudSdkStatus(managedCloudSdk.getSdkHome());
+    try {
+      if (lock.isInterrupted()) {
+        logger.warn(
+            "A previous install of the Cloud SDK at {} did not complete, reinstalling",
+            managedCloudSdk.getSdkHome());
+        lock.deleteInterrupted();
+        status.clear();
+      }
+
+      // another build may have verified the sdk while this one waited for the lock
+      if (isVerified(status)) {
+        return;
+      }
 
-    // install components
-    if (components != null) {
-      for (SdkComponent component : components) {
-        if (!managedCloudSdk.hasComponent(component)) {
-          managedCloudSdk
-              .newComponentInstaller()
-              .installComponent(component, progressListener, consoleListener);
+      // Install sdk if not installed
+      if (mirror != null) {
+        if (!mirror.isInstalled(managedCloudSdk.getSdkHome())) {
+          beginChanges(lock, status);
+          try (PhaseTimings.Phase ignored = timings.start("sdkInstall")) {
+            mirror.installSdk(managedCloudSdk.getSdkHome(), consoleListener);
+          }
+        }
+      } else if (!managedCloudSdk.isInstalled()) {
+        beginChanges(lock, status);
+        try (PhaseTimings.Phase ignored = timings.start("sdkInstall")) {
+          SdkInstaller installer = managedCloudSdk.newInstaller();
+          installer.install(progressListener, consoleListener);
         }
       }
-    }
 
-    // If version is set to LATEST, update Cloud SDK
-    if (!managedCloudSdk.isUpToDate()) {
-      SdkUpdater updater = managedCloudSdk.newUpdater();
-      updater.update(progressListener, consoleListener);
+      // install components
+      if (components != null) {
+        for (SdkComponent component : components) {
+          if (!managedCloudSdk.hasComponent(component)) {
+            beginChanges(lock, status);
+            try (PhaseTimings.Phase ignored = timings.start("componentInstall")) {
+              if (mirror != null && mirror.hasComponentsSnapshot()) {
+                mirror.installComponent(managedCloudSdk.getSdkHome(), component, consoleListener);
+              } else {
+                managedCloudSdk
+                    .newComponentInstaller()
+                    .installComponent(component, progressListener, consoleListener);
+              }
+            }
+          }
+        }
+      }
+
+      // If version is set to LATEST, update Cloud SDK, a mirrored sdk is updated with its archive
+      if (mirror == null && !managedCloudSdk.isUpToDate()) {
+        beginChanges(lock, status);
+        try (PhaseTimings.Phase ignored = timings.start("sdkUpdate")) {
+          SdkUpdater updater = managedCloudSdk.newUpdater();
+          updater.update(progressListener, consoleListener);
+        }
+      }
+      lock.endChanges();
+      if (verifiedTtlMillis > 0) {
+        status.setVerified(components);
+      }
+    } finally {
+      lock.close();
     }
   }
+
+  private boolean isVerified(ManagedCloudSdkStatus status) {
+    return status.isVerified(components, verifiedTtlMillis)
+        && (mirror == null || mirror.isInstalled(managedCloudSdk.getSdkHome()));
+  }
+
+  private static void beginChanges(ManagedCloudSdkLock lock, ManagedCloudSdkStatus status)
+      throws IOException {
+    status.clear();
+    lock.beginChanges();
+  }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of {@code gcloud app deploy --format=json}: the deployed versions and the updated
+ * configs. Parsed as a stream, unknown fields are skipped without being read into memory.
+ */
+public class GcloudDeployResult {
+
+  private final List<DeployedVersion> versions;
+  private final List<String> configs;
+
+  GcloudDeployResult(List<DeployedVersion> versions, List<String> configs) {
+    this.versions = ImmutableList.copyOf(versions);
+    this.configs = ImmutableList.copyOf(configs);
+  }
+
+  /** The versions deployed, one per service. */
+  public List<DeployedVersion> getVersions() {
+    return versions;
+  }
+
+  /** The configs updated, like {@code cron} or {@code dispatch}. */
+  public List<String> getConfigs() {
+    return configs;
+  }
+
+  /**
+   * Parse the JSON output of a deployment.
+   *
+   * @return the result, or null if the output is empty
+   * @throws IOException if the output is not the JSON of a deployment result
+   */
+  static GcloudDeployResult parse(Reader output) throws IOException {
+    // gcloud writes nothing when it fails before deploying
+    PushbackReader input = new PushbackReader(output);
+    int first = input.read();
+    while (first != -1 && Character.isWhitespace(first)) {
+      first = input.read();
+    }
+    if (first == -1) {
+      return null;
+    }
+    input.unread(first);
+    JsonReader json = new JsonReader(input);
+    List<DeployedVersion> versions = new ArrayList<>();
+    List<String> configs = new ArrayList<>();
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if (name.equals("versions") && json.peek() == JsonToken.BEGIN_ARRAY) {
+        json.beginArray();
+        while (json.hasNext()) {
+          versions.add(parseVersion(json));
+        }
+        json.endArray();
+      } else if (name.equals("configs") && json.peek() == JsonToken.BEGIN_ARRAY) {
+        json.beginArray();
+        while (json.hasNext()) {
+          configs.add(nextString(json));
+        }
+        json.endArray();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+    return new GcloudDeployResult(versions, configs);
+  }
+
+  private static DeployedVersion parseVersion(JsonReader json) throws IOException {
+    String project = null;
+    String service = null;
+    String id = null;
+    String url = null;
+    String servingStatus = null;
+    json.beginObject();
+    while (json.hasNext()) {
+      switch (json.nextName()) {
+        case "project":
+          project = nextString(json);
+          break;
+        case "service":
+          service = nextString(json);
+          break;
+        case "id":
+          id = nextString(json);
+          break;
+        case "version":
+          // the version resource of the App Engine Admin API
+          if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            break;
+          }
+          json.beginObject();
+          while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("versionUrl")) {
+              url = nextString(json);
+            } else if (name.equals("servingStatus")) {
+              servingStatus = nextString(json);
+            } else {
+              json.skipValue();
+            }
+          }
+          json.endObject();
+          break;
+        default:
+          json.skipValue();
+      }
+    }
+    json.endObject();
+    return new DeployedVersion(project, service, id, url, servingStatus);
+  }
+
+  private static String nextString(JsonReader json) throws IOException {
+    if (json.peek() == JsonToken.NULL) {
+      json.nextNull();
+      return null;
+    }
+    return json.nextString();
+  }
+
+  /** A version deployed to a service. */
+  public static class DeployedVersion {
+    private final String project;
+    private final String service;
+    private final String id;
+    private final String url;
+    private final String servingStatus;
+
+    DeployedVersion(
+        String project, String service, String id, String url, String servingStatus) {
+      this.project = project;
+      this.service = service;
+      this.id = id;
+      this.url = url;
+      this.servingStatus = servingStatus;
+    }
+
+    public String getProject() {
+      return project;
+    }
+
+    public String getService() {
+      return service;
+    }
+
+    /** The version id, generated by gcloud unless configured. */
+    public String getId() {
+      return id;
+    }
+
+    /** The URL serving this version, or null if not reported. */
+    public String getUrl() {
+      return url;
+    }
+
+    /** SERVING or STOPPED, or null if not reported. */
+    public String getServingStatus() {
+      return servingStatus;
+    }
+
+    @Override
+    public String toString() {
+      return project + "/" + service + "/" + id;
+    }
+  }
+}
@@ -17,9 +17,343 @@
 
 package com.google.cloud.tools.gradle.appengine.core;
 
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.appengine.configuration.DeployConfiguration;
+import com.google.cloud.tools.appengine.configuration.DeployProjectConfigurationConfiguration;
 import com.google.cloud.tools.appengine.operations.Gcloud;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Internal;
 
 public abstract class GcloudTask extends DefaultTask {
+  private boolean structuredOutput;
+  private volatile GcloudDeployResult deployResult;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
+
   public abstract void setGcloud(Gcloud gcloud);
+
+  /** True if gcloud is run with {@code --format=json}, see {@link #getDeployResult()}. */
+  @Internal
+  public boolean isStructuredOutput() {
+    return structuredOutput;
+  }
+
+  public void setStructuredOutput(boolean structuredOutput) {
+    this.structuredOutput = structuredOutput;
+  }
+
+  /**
+   * The result of the last deployment run by this task, only available with structured output.
+   *
+   * @return the deployed versions and configs, or null if nothing was deployed
+   */
+  @Internal
+  public GcloudDeployResult getDeployResult() {
+    return deployResult;
+  }
+
+  void setDeployResult(GcloudDeployResult deployResult) {
+    this.deployResult = deployResult;
+  }
+
+  /** A deployment run by {@link #deployIfChanged}. */
+  interface Deployer {
+    void deploy(DeployConfiguration deployConfig) throws AppEngineException;
+  }
+
+  /** A config deployment run by {@link #deployConfigIfChanged}. */
+  interface ConfigDeployer {
+    void deploy(DeployProjectConfigurationConfiguration config) throws AppEngineException;
+  }
+
+  /** A task action whose phases are timed. */
+  interface TimedAction {
+    void run(PhaseTimings timings) throws AppEngineException;
+  }
+
+  /** Run a task action, then write the timings of its phases to the task's report. */
+  void runTimed(TimedAction action) throws AppEngineException {
+    deployResult = null;
+    PhaseTimings timings = new PhaseTimings();
+    boolean success = false;
+    try {
+      action.run(timings);
+      success = true;
+    } finally {
+      try {
+        timings.writeReport(reportFile.get().getAsFile(), getPath(), success);
+      } catch (IOException ex) {
+        getLogger().warn("Failed to write the timings report", ex);
+      }
+    }
+  }
+
+  /**
+   * The process handler of gcloud deployments, recording their phases, the output classifying
+   * failures to retry, and their result with structured output.
+   */
+  ProcessHandler newProcessHandler(PhaseTimings timings, DeployRetry retry) {
+    return newProcessHandler("", timings, retry, this::setDeployResult);
+  }
+
+  ProcessHandler newProcessHandler(
+      String prefix,
+      PhaseTimings timings,
+      DeployRetry retry,
+      Consumer<GcloudDeployResult> resultConsumer) {
+    ProcessOutputLineListener timingsListener = timings.newGcloudDeployListener();
+    ProcessOutputLineListener outputListener =
+        line -> {
+          timingsListener.onOutputLine(line);
+          retry.onOutputLine(line);
+        };
+    if (structuredOutput) {
+      return CloudSdkOperations.getJsonHandler(
+          getLogger(), prefix, outputListener, resultConsumer);
+    }
+    return CloudSdkOperations.getDefaultHandler(getLogger(), prefix, outputListener);
+  }
+
+  /** The config yamls deployed from this project, shared by all its deploy tasks. */
+  DeployedConfigs getDeployedConfigs() {
+    return new DeployedConfigs(
+        new File(getProject().getBuildDir(), "tmp/appengineDeployedConfigs/configs.properties")
+            .toPath());
+  }
+
+  /** Where the content of the last successful app deployment of this task is recorded. */
+  Path getDeployManifestFile() {
+    return new File(getTemporaryDir(), "deploy-manifest.txt").toPath();
+  }
+
+  /**
+   * Deploy, leaving out what did not change when {@code skipUnchanged} is set. Apps are left out if
+   * the last successful deployment of this task had the same configuration and content, config
+   * yamls if the same content was the last one deployed from this project. A deployment left with
+   * nothing to deploy is reported as up-to-date.
+   */
+  void deployIfChanged(
+      DeployConfiguration deployConfig,
+      boolean skipUnchanged,
+      PhaseTimings timings,
+      DeployRetry retry,
+      Deployer deployer)
+      throws AppEngineException {
+    ChangedDeployables changed =
+        findChangedDeployables(
+            deployConfig,
+            skipUnchanged,
+            getDeployedConfigs(),
+            getDeployManifestFile(),
+            getLogger(),
+            timings);
+    if (changed.isEmpty()) {
+      setDidWork(false);
+      return;
+    }
+    deployChanged(deployConfig, changed, timings, retry, deployer);
+  }
+
+  /** Deploy the changed deployables of a deploy configuration, and record them once deployed. */
+  static void deployChanged(
+      DeployConfiguration deployConfig,
+      ChangedDeployables changed,
+      PhaseTimings timings,
+      DeployRetry retry,
+      Deployer deployer)
+      throws AppEngineException {
+    DeployConfiguration changedConfig =
+        changed.getDeployables().equals(deployConfig.getDeployables())
+            ? deployConfig
+            : withDeployables(deployConfig, changed.getDeployables());
+    changed.beginDeployment();
+    try (PhaseTimings.Phase ignored = timings.start("deploy")) {
+      retry.run(() -> deployer.deploy(changedConfig), timings);
+    }
+    changed.endDeployment();
+  }
+
+  /**
+   * Find the deployables that {@link #deployIfChanged} would deploy. Only uses its arguments, so
+   * deployments of several tasks at once can resolve the records of each task up front.
+   *
+   * @param deployedConfigs the config yamls deployed from the project of the task
+   * @param manifestFile the manifest of the last successful app deployment of the task
+   */
+  static ChangedDeployables findChangedDeployables(
+      DeployConfiguration deployConfig,
+      boolean skipUnchanged,
+      DeployedConfigs deployedConfigs,
+      Path manifestFile,
+      Logger logger,
+      PhaseTimings timings) {
+    String projectId = deployConfig.getProjectId();
+    String server = deployConfig.getServer();
+    try {
+      List<Path> apps = new ArrayList<>();
+      List<Path> configs = new ArrayList<>();
+      for (Path deployable : deployConfig.getDeployables()) {
+        if (DeployManifest.isAppYaml(deployable)) {
+          apps.add(deployable);
+        } else if (skipUnchanged && deployedConfigs.isDeployed(projectId, server, deployable)) {
+          logger.lifecycle("Skipping {}, it did not change", deployable.getFileName());
+        } else {
+          configs.add(deployable);
+        }
+      }
+      DeployManifest manifest = null;
+      if (skipUnchanged && !apps.isEmpty()) {
+        try (PhaseTimings.Phase ignored = timings.start("manifest")) {
+          manifest = DeployManifest.create(deployConfig);
+        }
+      }
+      if (manifest != null && manifest.matches(manifestFile)) {
+        logger.lifecycle(
+            "Skipping app deployment, nothing changed since the last deployment of version {}"
+                + " to {}",
+            deployConfig.getVersion(),
+            projectId);
+        apps.clear();
+      }
+      return new ChangedDeployables(
+          deployedConfigs, projectId, server, apps, configs, manifest, manifestFile);
+    } catch (IOException ex) {
+      throw new GradleException("Failed to read the deployment manifest", ex);
+    }
+  }
+
+  /** The changed deployables of a task, and the records to update when deploying them. */
+  static class ChangedDeployables {
+    private final DeployedConfigs deployedConfigs;
+    private final String projectId;
+    private final String server;
+    private final List<Path> apps;
+    private final List<Path> configs;
+    private final DeployManifest manifest;
+    private final Path manifestFile;
+
+    private ChangedDeployables(
+        DeployedConfigs deployedConfigs,
+        String projectId,
+        String server,
+        List<Path> apps,
+        List<Path> configs,
+        DeployManifest manifest,
+        Path manifestFile) {
+      this.deployedConfigs = deployedConfigs;
+      this.projectId = projectId;
+      this.server = server;
+      this.apps = apps;
+      this.configs = configs;
+      this.manifest = manifest;
+      this.manifestFile = manifestFile;
+    }
+
+    boolean isEmpty() {
+      return apps.isEmpty() && configs.isEmpty();
+    }
+
+    /** The apps, then the config yamls, to deploy. */
+    List<Path> getDeployables() {
+      List<Path> deployables = new ArrayList<>(apps);
+      deployables.addAll(configs);
+      return deployables;
+    }
+
+    /** Forget the deployed content, a failed deployment leaves it unknown. */
+    void beginDeployment() {
+      try {
+        if (!apps.isEmpty()) {
+          Files.deleteIfExists(manifestFile);
+        }
+        for (Path config : configs) {
+          deployedConfigs.setDeployed(projectId, server, config, false);
+        }
+      } catch (IOException ex) {
+        throw new GradleException("Failed to read the deployment manifest", ex);
+      }
+    }
+
+    /** Record the deployed content, after a successful deployment. */
+    void endDeployment() {
+      try {
+        if (manifest != null && !apps.isEmpty()) {
+          manifest.write(manifestFile);
+        }
+        for (Path config : configs) {
+          deployedConfigs.setDeployed(projectId, server, config, true);
+        }
+      } catch (IOException ex) {
+        throw new GradleException("Failed to write the deployment manifest", ex);
+      }
+    }
+  }
+
+  /**
+   * Deploy a config yaml, unless {@code skipUnchanged} is set and the same content was the last one
+   * deployed from this project. A skipped deployment is reported as up-to-date.
+   */
+  void deployConfigIfChanged(
+      DeployProjectConfigurationConfiguration config,
+      String configName,
+      boolean skipUnchanged,
+      PhaseTimings timings,
+      DeployRetry retry,
+      ConfigDeployer deployer)
+      throws AppEngineException {
+    Path configFile = config.getAppEngineDirectory().resolve(configName);
+    DeployedConfigs deployedConfigs = getDeployedConfigs();
+    try {
+      if (skipUnchanged
+          && deployedConfigs.isDeployed(config.getProjectId(), config.getServer(), configFile)) {
+        getLogger()
+            .lifecycle(
+                "Skipping {}, it did not change since it was deployed to {}",
+                configName,
+                config.getProjectId());
+        setDidWork(false);
+        return;
+      }
+      deployedConfigs.setDeployed(config.getProjectId(), config.getServer(), configFile, false);
+      try (PhaseTimings.Phase ignored = timings.start("deploy")) {
+        retry.run(() -> deployer.deploy(config), timings);
+      }
+      deployedConfigs.setDeployed(config.getProjectId(), config.getServer(), configFile, true);
+    } catch (IOException ex) {
+      throw new GradleException("Failed to read the deployed configs", ex);
+    }
+  }
+
+  /** A copy of a deploy configuration, for other deployables. */
+  static DeployConfiguration withDeployables(DeployConfiguration config, List<Path> deployables) {
+    return DeployConfiguration.builder(deployables)
+        .bucket(config.getBucket())
+        .gcloudMode(config.getGcloudMode())
+        .imageUrl(config.getImageUrl())
+        .projectId(config.getProjectId())
+        .promote(config.getPromote())
+        .server(config.getServer())
+        .stopPreviousVersion(config.getStopPreviousVersion())
+        .version(config.getVersion())
+        .build();
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.NonZeroExceptionExitListener;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandlerException;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Handles a gcloud deployment run with {@code --format=json}: stderr, where gcloud writes its
+ * progress, is logged line by line, while stdout is parsed as it is written into a {@link
+ * GcloudDeployResult}. Exits the same way as the default handler, a non zero exit fails.
+ */
+class JsonOutputProcessHandler implements ProcessHandler {
+
+  private final Logger logger;
+  private final String prefix;
+  private final ProcessOutputLineListener stdErrListener;
+  private final Consumer<GcloudDeployResult> resultConsumer;
+
+  JsonOutputProcessHandler(
+      Logger logger,
+      String prefix,
+      ProcessOutputLineListener stdErrListener,
+      Consumer<GcloudDeployResult> resultConsumer) {
+    this.logger = logger;
+    this.prefix = prefix;
+    this.stdErrListener = stdErrListener;
+    this.resultConsumer = resultConsumer;
+  }
+
+  @Override
+  public void handleProcess(Process process) throws ProcessHandlerException {
+    Thread stdErrThread =
+        new Thread(
+            () -> {
+              try (BufferedReader stdErr =
+                  new BufferedReader(
+                      new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = stdErr.readLine()) != null) {
+                  logger.lifecycle(prefix + line);
+                  stdErrListener.onOutputLine(line);
+                }
+              } catch (IOException ex) {
+                logger.warn(prefix + "Failed to read gcloud output", ex);
+              }
+            },
+            "gcloud-stderr");
+    stdErrThread.setDaemon(true);
+    stdErrThread.start();
+
+    GcloudDeployResult result = null;
+    try (Reader stdOut = new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)) {
+      try {
+        result = GcloudDeployResult.parse(stdOut);
+      } catch (IOException | IllegalStateException ex) {
+        // the outcome of the deployment is still given by the exit code
+        logger.warn(prefix + "Failed to parse the gcloud deployment result", ex);
+      }
+      drain(stdOut);
+      stdErrThread.join();
+      new NonZeroExceptionExitListener().onExit(process.waitFor());
+    } catch (IOException ex) {
+      throw new ProcessHandlerException(ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      process.destroy();
+      throw new ProcessHandlerException(ex);
+    }
+    if (result != null) {
+      for (GcloudDeployResult.DeployedVersion version : result.getVersions()) {
+        logger.info(prefix + "Deployed version {}, serving at {}", version, version.getUrl());
+      }
+      resultConsumer.accept(result);
+    }
+  }
+
+  /** Read the rest of an output, so the process does not block on a full pipe. */
+  private static void drain(Reader output) throws IOException {
+    char[] buffer = new char[8192];
+    while (output.read(buffer) != -1) {
+      // discard
+    }
+  }
+}
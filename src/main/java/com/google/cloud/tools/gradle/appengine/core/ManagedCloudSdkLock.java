@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.logging.Logger;
+
+/**
+ * A lock on a managed Cloud SDK shared by the builds of a machine, held while it is installed or
+ * updated so concurrent builds wait for one install and reuse it. Changes are made between {@link
+ * #beginChanges()} and {@link #endChanges()}, which leave a marker file behind if the build
+ * crashes, and an SDK left with that marker is deleted before it is used again.
+ */
+class ManagedCloudSdkLock implements AutoCloseable {
+
+  static final long POLL_MILLIS = 500;
+
+  private final Path sdkHome;
+  private final Path changingMarker;
+  private final FileChannel channel;
+  private final FileLock lock;
+  private boolean changing;
+
+  private ManagedCloudSdkLock(Path sdkHome, FileChannel channel, FileLock lock) {
+    this.sdkHome = sdkHome;
+    this.changingMarker = sdkHome.resolveSibling(sdkHome.getFileName() + ".changing");
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * Lock a managed Cloud SDK, waiting for other builds, in this process or others, to release it.
+   */
+  static ManagedCloudSdkLock acquire(Path sdkHome, Logger logger)
+      throws IOException, InterruptedException {
+    Path lockFile = sdkHome.resolveSibling(sdkHome.getFileName() + ".lock");
+    Files.createDirectories(lockFile.getParent());
+    FileChannel channel =
+        FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      boolean waiting = false;
+      while (true) {
+        FileLock lock;
+        try {
+          lock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+          // held by another build of this process
+          lock = null;
+        }
+        if (lock != null) {
+          return new ManagedCloudSdkLock(sdkHome, channel, lock);
+        }
+        if (!waiting) {
+          logger.lifecycle("Waiting for another build to install the Cloud SDK at {}", sdkHome);
+          waiting = true;
+        }
+        Thread.sleep(POLL_MILLIS);
+      }
+    } catch (IOException | InterruptedException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /** Check if changes to the SDK were interrupted, it must not be used then. */
+  boolean isInterrupted() {
+    return Files.exists(changingMarker);
+  }
+
+  /** Delete an SDK whose changes were interrupted. */
+  void deleteInterrupted() throws IOException {
+    deleteRecursively(sdkHome);
+    Files.deleteIfExists(changingMarker);
+  }
+
+  /** Mark the SDK as being changed, until {@link #endChanges()}. */
+  void beginChanges() throws IOException {
+    if (changing) {
+      return;
+    }
+    changing = true;
+    Path temp = changingMarker.resolveSibling(changingMarker.getFileName() + ".tmp");
+    Files.write(temp, sdkHome.toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, changingMarker, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Mark the changes to the SDK as complete. */
+  void endChanges() throws IOException {
+    if (changing) {
+      Files.deleteIfExists(changingMarker);
+      changing = false;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      lock.release();
+    } finally {
+      channel.close();
+    }
+  }
+
+  static void deleteRecursively(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The last successful verification of a managed Cloud SDK: installed, up to date and with its
+ * components, recorded next to the SDK so builds can trust it for a while instead of running the
+ * checks, which fork gcloud and for the LATEST version go over the network. A record only holds
+ * for the same SDK home and the same modification time of its VERSION file, so any install or
+ * update invalidates it.
+ */
+class ManagedCloudSdkStatus {
+
+  private static final String SDK_HOME = "sdkHome";
+  private static final String VERSION_MODIFIED = "versionModified";
+  private static final String VERIFIED = "verified";
+  private static final String COMPONENTS = "components";
+
+  private final Path sdkHome;
+  private final Path statusFile;
+  private final Clock clock;
+
+  ManagedCloudSdkStatus(Path sdkHome) {
+    this(sdkHome, Clock.systemUTC());
+  }
+
+  ManagedCloudSdkStatus(Path sdkHome, Clock clock) {
+    this.sdkHome = sdkHome;
+    this.statusFile = sdkHome.resolveSibling(sdkHome.getFileName() + ".status");
+    this.clock = clock;
+  }
+
+  /**
+   * Check if the SDK, with the components, was verified less than a ttl ago, and has not changed
+   * since.
+   */
+  boolean isVerified(Collection<SdkComponent> components, long ttlMillis) {
+    if (ttlMillis <= 0 || !Files.isRegularFile(statusFile)) {
+      return false;
+    }
+    try {
+      Properties status = new Properties();
+      try (InputStream in = Files.newInputStream(statusFile)) {
+        status.load(in);
+      }
+      if (!sdkHome.toString().equals(status.getProperty(SDK_HOME))
+          || !String.valueOf(getVersionModified()).equals(status.getProperty(VERSION_MODIFIED))) {
+        return false;
+      }
+      long age = clock.millis() - Long.parseLong(status.getProperty(VERIFIED, "0"));
+      if (age < 0 || age >= ttlMillis) {
+        return false;
+      }
+      Set<String> verifiedComponents =
+          new HashSet<>(Arrays.asList(status.getProperty(COMPONENTS, "").split(",")));
+      return components.stream().map(SdkComponent::name).allMatch(verifiedComponents::contains);
+    } catch (IOException | NumberFormatException ex) {
+      // a missing or corrupt status only means checking the sdk again
+      return false;
+    }
+  }
+
+  /** Record the SDK as verified now, with the components. */
+  void setVerified(Collection<SdkComponent> components) throws IOException {
+    long versionModified = getVersionModified();
+    if (versionModified < 0) {
+      return;
+    }
+    Properties status = new Properties();
+    status.setProperty(SDK_HOME, sdkHome.toString());
+    status.setProperty(VERSION_MODIFIED, String.valueOf(versionModified));
+    status.setProperty(VERIFIED, String.valueOf(clock.millis()));
+    status.setProperty(
+        COMPONENTS, components.stream().map(SdkComponent::name).collect(Collectors.joining(",")));
+    // builds of other projects may record the same sdk at once
+    Path temp =
+        Files.createTempFile(statusFile.getParent(), statusFile.getFileName().toString(), "");
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        status.store(out, null);
+      }
+      Files.move(temp, statusFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Forget the verification, the SDK is checked again by the next build. */
+  void clear() throws IOException {
+    Files.deleteIfExists(statusFile);
+  }
+
+  private long getVersionModified() {
+    try {
+      return Files.getLastModifiedTime(sdkHome.resolve("VERSION")).toMillis();
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package com.google.cloud.tools.gradle.appengine.core;
 
 import java.io.File;
+import java.net.URI;
 import org.gradle.api.Project;
 
 /** Extension element to define the location of cloud sdk tooling. */
@@ -29,6 +30,12 @@ public class ToolsExtension {
   private String cloudSdkVersion;
   private File cloudSdkServiceAccountFile;
   private String verbosity;
+  private Boolean structuredOutput;
+  private Integer cloudSdkCheckTtlSeconds;
+  private URI cloudSdkArchive;
+  private String cloudSdkArchiveSha256;
+  private String cloudSdkComponentsSnapshotUrl;
+  private Boolean downloadCloudSdkInBackground;
 
   public ToolsExtension(Project project) {
     this.project = project;
@@ -65,4 +72,61 @@ public class ToolsExtension {
   public void setVerbosity(String verbosity) {
     this.verbosity = verbosity;
   }
+
+  public Boolean getStructuredOutput() {
+    return structuredOutput;
+  }
+
+  public void setStructuredOutput(Boolean structuredOutput) {
+    this.structuredOutput = structuredOutput;
+  }
+
+  public Integer getCloudSdkCheckTtlSeconds() {
+    return cloudSdkCheckTtlSeconds;
+  }
+
+  public void setCloudSdkCheckTtlSeconds(Integer cloudSdkCheckTtlSeconds) {
+    this.cloudSdkCheckTtlSeconds = cloudSdkCheckTtlSeconds;
+  }
+
+  public URI getCloudSdkArchive() {
+    return cloudSdkArchive;
+  }
+
+  /** A local SDK archive file, or the URL of a mirrored SDK archive. */
+  public void setCloudSdkArchive(Object cloudSdkArchive) {
+    if (cloudSdkArchive == null) {
+      this.cloudSdkArchive = null;
+    } else if (cloudSdkArchive instanceof URI) {
+      this.cloudSdkArchive = (URI) cloudSdkArchive;
+    } else if (cloudSdkArchive.toString().matches("(?i)(file|https?):.*")) {
+      this.cloudSdkArchive = URI.create(cloudSdkArchive.toString());
+    } else {
+      this.cloudSdkArchive = project.file(cloudSdkArchive).toURI();
+    }
+  }
+
+  public String getCloudSdkArchiveSha256() {
+    return cloudSdkArchiveSha256;
+  }
+
+  public void setCloudSdkArchiveSha256(String cloudSdkArchiveSha256) {
+    this.cloudSdkArchiveSha256 = cloudSdkArchiveSha256;
+  }
+
+  public String getCloudSdkComponentsSnapshotUrl() {
+    return cloudSdkComponentsSnapshotUrl;
+  }
+
+  public void setCloudSdkComponentsSnapshotUrl(String cloudSdkComponentsSnapshotUrl) {
+    this.cloudSdkComponentsSnapshotUrl = cloudSdkComponentsSnapshotUrl;
+  }
+
+  public Boolean getDownloadCloudSdkInBackground() {
+    return downloadCloudSdkInBackground;
+  }
+
+  public void setDownloadCloudSdkInBackground(Boolean downloadCloudSdkInBackground) {
+    this.downloadCloudSdkInBackground = downloadCloudSdkInBackground;
+  }
 }
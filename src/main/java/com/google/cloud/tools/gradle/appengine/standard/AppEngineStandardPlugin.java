@@ -25,14 +25,18 @@ import com.google.cloud.tools.gradle.appengine.core.DeployExtension;
 import com.google.cloud.tools.gradle.appengine.core.DeployTargetResolver;
 import com.google.cloud.tools.gradle.appengine.core.DeployTask;
 import com.google.cloud.tools.gradle.appengine.core.ToolsExtension;
+import com.google.cloud.tools.gradle.appengine.util.AppEngineWebXml;
 import com.google.cloud.tools.gradle.appengine.util.GradleCompatibility;
 import com.google.common.base.Strings;
 import java.io.File;
+import java.util.concurrent.Callable;
 import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.plugins.BasePlugin;
 import org.gradle.api.plugins.WarPlugin;
+import org.gradle.api.plugins.WarPluginConvention;
 import org.gradle.api.tasks.bundling.War;
 
 /** Plugin definition for App Engine standard environments. */
@@ -41,12 +45,18 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
   public static final String APP_ENGINE_STANDARD_TASK_GROUP = "App Engine Standard environment";
   public static final String EXPLODE_WAR_TASK_NAME = "explodeWar";
   public static final String STAGE_TASK_NAME = "appengineStage";
+  public static final String COMPILE_JSP_TASK_NAME = "appengineCompileJsp";
   public static final String RUN_TASK_NAME = "appengineRun";
   public static final String START_TASK_NAME = "appengineStart";
   public static final String STOP_TASK_NAME = "appengineStop";
 
   public static final String STAGED_APP_DIR_NAME = "staged-app";
   public static final String DEV_APP_SERVER_OUTPUT_DIR_NAME = "dev-appserver-out";
+  public static final String COMPILED_JSPS_DIR_NAME = "compiled-jsps";
+
+  public static final String JSPC_CONFIGURATION_NAME = "appengineJspc";
+  public static final String DEFAULT_JSPC_DEPENDENCY =
+      "org.eclipse.jetty:apache-jsp:9.4.54.v20240208";
 
   public static final String STAGE_EXTENSION = "stage";
   public static final String RUN_EXTENSION = "run";
@@ -58,6 +68,8 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
   private RunExtension runExtension;
   private StageStandardExtension stageExtension;
   private File explodedWarDir;
+  private ExplodeWarTask explodeWarTask;
+  private CompileJspTask compileJspTask;
 
   @Override
   public void apply(Project project) {
@@ -76,6 +88,7 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
     configureExtensions();
 
     createExplodedWarTask();
+    createCompileJspTask();
     createStageTask();
     createRunTasks();
   }
@@ -96,6 +109,8 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
 
     project.afterEvaluate(
         project -> {
+          checkAppEngineWebXml(project);
+
           // tools extension required to initialize cloudSdkOperations
           ToolsExtension tools = appengineExtension.getTools();
           try {
@@ -135,27 +150,104 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
         });
   }
 
+  /**
+   * Report an invalid appengine-web.xml in the web app directory when the project is configured,
+   * parsing it here also means the tasks reuse the parsed descriptor.
+   */
+  private static void checkAppEngineWebXml(Project project) {
+    WarPluginConvention warConfig = project.getConvention().getPlugin(WarPluginConvention.class);
+    File appengineWebXml = new File(warConfig.getWebAppDir(), "WEB-INF/appengine-web.xml");
+    if (!appengineWebXml.isFile()) {
+      return;
+    }
+    AppEngineWebXml descriptor;
+    try {
+      descriptor = AppEngineWebXml.parse(appengineWebXml);
+    } catch (GradleException ex) {
+      throw new GradleException("Failed to parse " + appengineWebXml, ex.getCause());
+    }
+    if (!descriptor.isAppEngineWebApp()) {
+      throw new GradleException(
+          "Failed to parse " + appengineWebXml + ", the root element must be <appengine-web-app>");
+    }
+  }
+
   private void createExplodedWarTask() {
-    project
-        .getTasks()
-        .create(
-            EXPLODE_WAR_TASK_NAME,
-            ExplodeWarTask.class,
-            explodeWar -> {
-              explodeWar.setExplodedAppDirectory(explodedWarDir);
-              explodeWar.dependsOn(WarPlugin.WAR_TASK_NAME);
-              explodeWar.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
-              explodeWar.setDescription("Explode a war into a directory");
+    explodeWarTask =
+        project
+            .getTasks()
+            .create(
+                EXPLODE_WAR_TASK_NAME,
+                ExplodeWarTask.class,
+                explodeWar -> {
+                  explodeWar.setExplodedAppDirectory(explodedWarDir);
+                  explodeWar.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
+                  explodeWar.setDescription("Explode a war into a directory");
 
-              project.afterEvaluate(
-                  project -> {
-                    War war = (War) project.getTasks().getByPath(WarPlugin.WAR_TASK_NAME);
-                    explodeWar.setWarFile(GradleCompatibility.getArchiveFile(war));
-                  });
-            });
+                  project.afterEvaluate(
+                      project -> {
+                        War war = (War) project.getTasks().getByPath(WarPlugin.WAR_TASK_NAME);
+                        if (explodeWar.isSkipWarArchive()) {
+                          // reuse the war's copy spec, its inputs carry the build dependencies
+                          explodeWar.with(war);
+                        } else {
+                          explodeWar.dependsOn(war);
+                          explodeWar.setWarFile(GradleCompatibility.getArchiveFile(war));
+                        }
+                      });
+                });
     project.getTasks().getByName(BasePlugin.ASSEMBLE_TASK_NAME).dependsOn(EXPLODE_WAR_TASK_NAME);
   }
 
+  /**
+   * Tasks that consume the exploded app depend on assemble, unless the war archive is skipped, in
+   * which case they only depend on explodeWar so the war task is not triggered.
+   */
+  private Callable<String> explodedAppDependency() {
+    return () ->
+        explodeWarTask.isSkipWarArchive() ? EXPLODE_WAR_TASK_NAME : BasePlugin.ASSEMBLE_TASK_NAME;
+  }
+
+  private void createCompileJspTask() {
+    Configuration jspc =
+        project
+            .getConfigurations()
+            .create(
+                JSPC_CONFIGURATION_NAME,
+                configuration -> {
+                  configuration.setVisible(false);
+                  configuration.setDescription("Jasper, used to precompile JSPs");
+                  configuration.defaultDependencies(
+                      dependencies ->
+                          dependencies.add(
+                              project.getDependencies().create(DEFAULT_JSPC_DEPENDENCY)));
+                });
+
+    compileJspTask =
+        project
+            .getTasks()
+            .create(
+                COMPILE_JSP_TASK_NAME,
+                CompileJspTask.class,
+                compileJsp -> {
+                  compileJsp.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
+                  compileJsp.setDescription(
+                      "Precompile the JSPs of an App Engine standard environment application");
+                  compileJsp.dependsOn(explodedAppDependency());
+                  compileJsp.setJspcClasspath(jspc);
+                  compileJsp.setOutputDirectory(
+                      new File(project.getBuildDir(), COMPILED_JSPS_DIR_NAME));
+                  // don't resolve jasper for apps without JSPs
+                  compileJsp.onlyIf(task -> !compileJsp.getJspSources().isEmpty());
+
+                  project.afterEvaluate(
+                      project -> {
+                        compileJsp.setExplodedAppDirectory(stageExtension.getSourceDirectory());
+                        compileJsp.setCompileEncoding(stageExtension.getCompileEncoding());
+                      });
+                });
+  }
+
   private void createStageTask() {
     project
         .getTasks()
@@ -163,7 +255,9 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
         .whenTaskAdded(
             stageStandardTask ->
                 project.afterEvaluate(
-                    ignored -> stageStandardTask.setAppCfg(cloudSdkOperations.getAppcfg())));
+                    ignored ->
+                        stageStandardTask.setCloudSdkHome(
+                            cloudSdkOperations.getCloudSdk().getPath().toFile())));
 
     StageStandardTask stageTask =
         project
@@ -175,11 +269,24 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
                   stageTask1.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
                   stageTask1.setDescription(
                       "Stage an App Engine standard environment application for deployment");
-                  stageTask1.dependsOn(BasePlugin.ASSEMBLE_TASK_NAME);
+                  stageTask1.dependsOn(explodedAppDependency());
 
                   project.afterEvaluate(
                       project -> {
                         stageTask1.setStageStandardExtension(stageExtension);
+                        // explodeWar would otherwise overwrite staged files through their links
+                        if (Boolean.TRUE.equals(stageExtension.getEnableHardLinks())
+                            && explodedWarDir.equals(stageExtension.getSourceDirectory())
+                            && !explodeWarTask.isReplacingFiles()) {
+                          throw new GradleException(
+                              "appengine.stage.enableHardLinks requires explodeWar.incremental,"
+                                  + " without skipWarArchive");
+                        }
+                        // native staging uses precompiled JSPs instead of AppCfg's compiler
+                        if (Boolean.TRUE.equals(stageExtension.getNativeStaging())) {
+                          stageTask1.dependsOn(compileJspTask);
+                          stageTask1.setCompiledJspDirectory(compileJspTask.getOutputDirectory());
+                        }
                       });
                 });
 
@@ -223,7 +330,7 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
             runTask -> {
               runTask.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
               runTask.setDescription("Run an App Engine standard environment application locally");
-              runTask.dependsOn(project.getTasks().findByName(BasePlugin.ASSEMBLE_TASK_NAME));
+              runTask.dependsOn(explodedAppDependency());
 
               project.afterEvaluate(
                   project -> {
@@ -241,7 +348,7 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
               startTask.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
               startTask.setDescription(
                   "Run an App Engine standard environment application locally in the background");
-              startTask.dependsOn(project.getTasks().findByName(BasePlugin.ASSEMBLE_TASK_NAME));
+              startTask.dependsOn(explodedAppDependency());
 
               project.afterEvaluate(
                   project -> {
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Compiles a batch of JSPs with Jasper's JspC. Runs in a worker whose classpath holds the {@value
+ * AppEngineStandardPlugin#JSPC_CONFIGURATION_NAME} configuration, so Jasper is only reached through
+ * reflection here.
+ */
+public abstract class CompileJspAction implements WorkAction<CompileJspAction.Parameters> {
+
+  /** Parameters of a JSP batch. */
+  public interface Parameters extends WorkParameters {
+    /** The exploded app, JspC also adds its WEB-INF/classes and WEB-INF/lib to the classpath. */
+    DirectoryProperty getExplodedAppDirectory();
+
+    DirectoryProperty getOutputDirectory();
+
+    /** The JSPs to compile, relative to the exploded app. */
+    ListProperty<String> getJspFiles();
+
+    Property<String> getCompileEncoding();
+
+    /** The Java version of the generated servlets, as accepted by JspC, like 1.8 or 17. */
+    Property<String> getCompilerVm();
+  }
+
+  @Override
+  public void execute() {
+    Parameters parameters = getParameters();
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(getClass().getClassLoader());
+    try {
+      Class<?> jspcClass =
+          Class.forName("org.apache.jasper.JspC", true, getClass().getClassLoader());
+      Object jspc = jspcClass.getConstructor().newInstance();
+      invoke(
+          jspc,
+          "setUriroot",
+          parameters.getExplodedAppDirectory().get().getAsFile().getAbsolutePath());
+      invoke(jspc, "setOutputDir", parameters.getOutputDirectory().get().getAsFile().getPath());
+      invoke(jspc, "setJspFiles", String.join(",", parameters.getJspFiles().get()));
+      invoke(jspc, "setPackage", JspSources.JSP_PACKAGE);
+      invoke(jspc, "setCompilerSourceVM", parameters.getCompilerVm().get());
+      invoke(jspc, "setCompilerTargetVM", parameters.getCompilerVm().get());
+      if (parameters.getCompileEncoding().isPresent()) {
+        invoke(jspc, "setJavaEncoding", parameters.getCompileEncoding().get());
+      }
+      jspcClass.getMethod("setCompile", boolean.class).invoke(jspc, true);
+      jspcClass.getMethod("setFailOnError", boolean.class).invoke(jspc, true);
+      jspcClass.getMethod("execute").invoke(jspc);
+    } catch (ClassNotFoundException ex) {
+      throw new GradleException(
+          "Could not find Jasper, check the "
+              + AppEngineStandardPlugin.JSPC_CONFIGURATION_NAME
+              + " configuration",
+          ex);
+    } catch (InvocationTargetException ex) {
+      throw new GradleException("Failed to compile JSPs", ex.getCause());
+    } catch (ReflectiveOperationException ex) {
+      throw new GradleException("Unsupported Jasper version", ex);
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  private static void invoke(Object jspc, String setter, String value)
+      throws ReflectiveOperationException {
+    Method method = jspc.getClass().getMethod(setter, String.class);
+    method.invoke(jspc, value);
+  }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Precompile the JSPs of an exploded app, so staging does not have to.
+ *
+ * <p>Only JSPs that changed, or whose static includes or tag files changed, are compiled again.
+ * They are compiled in parallel batches, and the generated classes are cached by the content of
+ * the JSP and everything it includes, so reverting a change does not compile anything.
+ */
+@CacheableTask
+public class CompileJspTask extends DefaultTask {
+
+  private static final String[] SOURCE_PATTERNS = {
+    "**/*.jsp", "**/*.jspx", "**/*.jspf", "**/*.tag", "**/*.tagx", "**/*.tagf"
+  };
+  private static final String TAG_PACKAGE_PATH = "org/apache/jsp/tag/";
+  private static final String DEFAULT_COMPILER_VM = "1.8";
+
+  private File explodedAppDirectory;
+  private File outputDirectory;
+  private String compileEncoding;
+  private String compilerVm;
+  private FileCollection jspcClasspath;
+
+  // the same instance must be returned on every call for InputChanges to find it
+  private final FileCollection jspSources =
+      getProject()
+          .files(
+              (Callable<Object>)
+                  () ->
+                      explodedAppDirectory == null
+                          ? null
+                          : getProject()
+                              .fileTree(
+                                  explodedAppDirectory, tree -> tree.include(SOURCE_PATTERNS)));
+
+  private final FileCollection classpath =
+      getProject()
+          .files(
+              (Callable<Object>)
+                  () ->
+                      explodedAppDirectory == null
+                          ? null
+                          : getProject()
+                              .files(
+                                  new File(explodedAppDirectory, "WEB-INF/classes"),
+                                  getProject()
+                                      .fileTree(
+                                          new File(explodedAppDirectory, "WEB-INF/lib"),
+                                          tree -> tree.include("*.jar"))));
+
+  @Internal
+  public File getExplodedAppDirectory() {
+    return explodedAppDirectory;
+  }
+
+  public void setExplodedAppDirectory(File explodedAppDirectory) {
+    this.explodedAppDirectory = explodedAppDirectory;
+  }
+
+  /** The JSPs, JSP fragments and tag files of the exploded app. */
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getJspSources() {
+    return jspSources;
+  }
+
+  /** The classes and jars of the exploded app, any change recompiles all JSPs. */
+  @Classpath
+  public FileCollection getClasspath() {
+    return classpath;
+  }
+
+  @Classpath
+  public FileCollection getJspcClasspath() {
+    return jspcClasspath;
+  }
+
+  public void setJspcClasspath(FileCollection jspcClasspath) {
+    this.jspcClasspath = jspcClasspath;
+  }
+
+  @Input
+  @Optional
+  public String getCompileEncoding() {
+    return compileEncoding;
+  }
+
+  public void setCompileEncoding(String compileEncoding) {
+    this.compileEncoding = compileEncoding;
+  }
+
+  /**
+   * The Java version of the generated servlets' source and classes, the project's {@code
+   * targetCompatibility} unless set.
+   */
+  @Input
+  public String getCompilerVm() {
+    if (compilerVm != null) {
+      return compilerVm;
+    }
+    JavaPluginExtension java = getProject().getExtensions().findByType(JavaPluginExtension.class);
+    return java == null ? DEFAULT_COMPILER_VM : java.getTargetCompatibility().toString();
+  }
+
+  public void setCompilerVm(String compilerVm) {
+    this.compilerVm = compilerVm;
+  }
+
+  @OutputDirectory
+  public File getOutputDirectory() {
+    return outputDirectory;
+  }
+
+  public void setOutputDirectory(File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  @Inject
+  public WorkerExecutor getWorkerExecutor() {
+    // injected by Gradle
+    throw new UnsupportedOperationException();
+  }
+
+  /** Task entrypoint : compile the changed JSPs. */
+  @TaskAction
+  public void compileAction(InputChanges inputChanges) throws IOException {
+    Path root = explodedAppDirectory.toPath();
+    Path output = outputDirectory.toPath();
+    Path cache = new File(getTemporaryDir(), "cache").toPath();
+    JspSources sources = new JspSources(root, compileEncoding);
+    List<String> jsps = sources.findServlets();
+
+    Set<String> changed = new HashSet<>();
+    if (inputChanges.isIncremental()) {
+      for (FileChange change : inputChanges.getFileChanges(jspSources)) {
+        String path = change.getNormalizedPath().replace('\\', '/');
+        changed.add(path);
+        if (JspSources.isServlet(path) && !jsps.contains(path)) {
+          deleteClasses(output, path);
+        }
+      }
+    } else {
+      deleteRecursively(output);
+      Files.createDirectories(output);
+    }
+
+    String vm = getCompilerVm();
+    String classpathKey = hashClasspath();
+    Set<String> usedKeys = new HashSet<>();
+    Map<String, String> toCompile = new LinkedHashMap<>();
+    for (String jsp : jsps) {
+      Set<String> dependencies = sources.getDependencies(jsp);
+      if (inputChanges.isIncremental()
+          && !changed.contains(jsp)
+          && Collections.disjoint(changed, dependencies)) {
+        continue;
+      }
+      String key = cacheKey(root, jsp, dependencies, classpathKey, vm);
+      usedKeys.add(key);
+      deleteClasses(output, jsp);
+      Path cached = cache.resolve(key);
+      if (Files.isDirectory(cached)) {
+        copyTree(cached, output);
+      } else {
+        toCompile.put(jsp, key);
+      }
+    }
+    getLogger()
+        .info(
+            "{} of {} JSPs out of date, {} restored from cache",
+            usedKeys.size(),
+            jsps.size(),
+            usedKeys.size() - toCompile.size());
+    if (!toCompile.isEmpty()) {
+      compile(toCompile, root, output, cache, vm);
+    }
+    if (!inputChanges.isIncremental()) {
+      evictCache(cache, usedKeys);
+    }
+  }
+
+  private void compile(
+      Map<String, String> toCompile, Path root, Path output, Path cache, String vm)
+      throws IOException {
+    // jasper compiles the tag files used by every batch, so each batch gets its own directory
+    int batchCount = Math.min(toCompile.size(), Runtime.getRuntime().availableProcessors());
+    List<List<String>> batches = new ArrayList<>();
+    for (int i = 0; i < batchCount; i++) {
+      batches.add(new ArrayList<>());
+    }
+    int next = 0;
+    for (String jsp : toCompile.keySet()) {
+      batches.get(next++ % batchCount).add(jsp);
+    }
+
+    WorkQueue queue =
+        getWorkerExecutor()
+            .classLoaderIsolation(spec -> spec.getClasspath().from(jspcClasspath));
+    List<Path> batchDirectories = new ArrayList<>();
+    for (List<String> batch : batches) {
+      Path batchDirectory = getTemporaryDir().toPath().resolve("batch-" + batchDirectories.size());
+      deleteRecursively(batchDirectory);
+      Files.createDirectories(batchDirectory);
+      batchDirectories.add(batchDirectory);
+      queue.submit(
+          CompileJspAction.class,
+          parameters -> {
+            parameters.getExplodedAppDirectory().set(root.toFile());
+            parameters.getOutputDirectory().set(batchDirectory.toFile());
+            parameters.getJspFiles().set(batch);
+            parameters.getCompileEncoding().set(compileEncoding);
+            parameters.getCompilerVm().set(vm);
+          });
+    }
+    queue.await();
+
+    for (int i = 0; i < batchCount; i++) {
+      Path batchDirectory = batchDirectories.get(i);
+      for (String jsp : batches.get(i)) {
+        cacheClasses(batchDirectory, jsp, cache.resolve(toCompile.get(jsp)));
+      }
+      copyTree(batchDirectory, output);
+      deleteRecursively(batchDirectory);
+    }
+  }
+
+  /** Cache the classes of a JSP with the tag classes it may use. */
+  private static void cacheClasses(Path batchDirectory, String jsp, Path entry)
+      throws IOException {
+    String classPath = JspSources.getServletClassName(jsp).replace('.', '/');
+    String packagePath = classPath.substring(0, classPath.lastIndexOf('/') + 1);
+    String simpleName = classPath.substring(packagePath.length());
+    Path temp = entry.resolveSibling(entry.getFileName() + ".tmp");
+    deleteRecursively(temp);
+    List<Path> classes;
+    try (Stream<Path> files = Files.walk(batchDirectory)) {
+      classes = files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    for (Path file : classes) {
+      String relative = batchDirectory.relativize(file).toString().replace('\\', '/');
+      String name = file.getFileName().toString();
+      boolean own =
+          relative.equals(packagePath + name)
+              && (name.equals(simpleName + ".class") || name.startsWith(simpleName + "$"));
+      if (own || (relative.startsWith(TAG_PACKAGE_PATH) && name.endsWith(".class"))) {
+        Path target = temp.resolve(relative);
+        Files.createDirectories(target.getParent());
+        Files.copy(file, target);
+      }
+    }
+    Files.createDirectories(temp);
+    deleteRecursively(entry);
+    Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Delete the classes generated for a JSP, leaving shared tag classes alone. */
+  private static void deleteClasses(Path output, String jsp) throws IOException {
+    String classPath = JspSources.getServletClassName(jsp).replace('.', '/');
+    Path directory = output.resolve(classPath).getParent();
+    String simpleName = classPath.substring(classPath.lastIndexOf('/') + 1);
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    List<Path> classes;
+    try (Stream<Path> files = Files.list(directory)) {
+      classes =
+          files
+              .filter(
+                  file -> {
+                    String name = file.getFileName().toString();
+                    return name.equals(simpleName + ".class")
+                        || name.startsWith(simpleName + "$");
+                  })
+              .collect(Collectors.toList());
+    }
+    for (Path file : classes) {
+      Files.delete(file);
+    }
+  }
+
+  private String cacheKey(
+      Path root, String jsp, Set<String> dependencies, String classpathKey, String vm)
+      throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(classpathKey, StandardCharsets.UTF_8);
+    hasher.putString(String.valueOf(compileEncoding), StandardCharsets.UTF_8);
+    hasher.putString(vm, StandardCharsets.UTF_8);
+    List<String> files = new ArrayList<>();
+    files.add(jsp);
+    files.addAll(dependencies);
+    for (String file : files) {
+      hasher.putString(file, StandardCharsets.UTF_8);
+      Path path = root.resolve(file);
+      if (Files.isRegularFile(path)) {
+        hasher.putBytes(Files.readAllBytes(path));
+      } else {
+        hasher.putInt(-1);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Identify the jasper and app classpaths by file metadata, hashing every jar would be slow. */
+  private String hashClasspath() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (FileCollection files : new FileCollection[] {jspcClasspath, classpath}) {
+      hasher.putString("|", StandardCharsets.UTF_8);
+      for (File file : files.getAsFileTree()) {
+        hasher.putString(file.getPath(), StandardCharsets.UTF_8);
+        hasher.putLong(file.length());
+        hasher.putLong(file.lastModified());
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Copy the class files of a directory tree, the generated java sources are left behind. */
+  private static void copyTree(Path from, Path to) throws IOException {
+    List<Path> classes;
+    try (Stream<Path> files = Files.walk(from)) {
+      classes =
+          files
+              .filter(Files::isRegularFile)
+              .filter(file -> file.getFileName().toString().endsWith(".class"))
+              .collect(Collectors.toList());
+    }
+    for (Path file : classes) {
+      Path target = to.resolve(from.relativize(file).toString());
+      Files.createDirectories(target.getParent());
+      Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void evictCache(Path cache, Set<String> usedKeys) throws IOException {
+    if (!Files.isDirectory(cache)) {
+      return;
+    }
+    List<Path> entries;
+    try (Stream<Path> list = Files.list(cache)) {
+      entries = list.collect(Collectors.toList());
+    }
+    for (Path entry : entries) {
+      if (!usedKeys.contains(entry.getFileName().toString())) {
+        deleteRecursively(entry);
+      }
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(path)) {
+      paths = walk.sorted(Collections.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path file : paths) {
+      Files.delete(file);
+    }
+  }
+}
@@ -18,16 +18,39 @@
 package com.google.cloud.tools.gradle.appengine.standard;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.Sync;
+import org.gradle.api.tasks.TaskAction;
 
 /** Expand a war. */
 public class ExplodeWarTask extends Sync {
 
   private File explodedAppDirectory;
+  private File warFile;
+  private boolean incremental;
+  private boolean skipWarArchive;
+
+  public ExplodeWarTask() {
+    // resolved lazily so incremental can be toggled after the war file is set
+    from(
+        (Callable<Object>)
+            () -> {
+              if (warFile == null) {
+                return getProject().files();
+              }
+              return incremental ? warFile : getProject().zipTree(warFile);
+            });
+  }
 
   public void setWarFile(File warFile) {
-    from(getProject().zipTree(warFile));
+    this.warFile = warFile;
   }
 
   /**
@@ -46,4 +69,73 @@ public class ExplodeWarTask extends Sync {
   public File getExplodedAppDirectory() {
     return explodedAppDirectory;
   }
+
+  /**
+   * When true, only the war entries that changed since the last explode are written, instead of
+   * re-extracting the whole archive. Only {@code preserve} rules are honored in this mode.
+   */
+  @Input
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * True if changed files are deleted before they are written, rather than overwritten, so hard
+   * links to the exploded app keep their content. Only the incremental explode of a war archive
+   * does.
+   */
+  @Internal
+  public boolean isReplacingFiles() {
+    return incremental && !skipWarArchive;
+  }
+
+  /**
+   * When true, the exploded app is built directly from the inputs of the war task (web app
+   * directory, classes and runtime classpath), so the war archive is never created or unzipped.
+   */
+  @Input
+  public boolean isSkipWarArchive() {
+    return skipWarArchive;
+  }
+
+  public void setSkipWarArchive(boolean skipWarArchive) {
+    this.skipWarArchive = skipWarArchive;
+  }
+
+  @TaskAction
+  @Override
+  protected void copy() {
+    if (!incremental || warFile == null) {
+      super.copy();
+      return;
+    }
+
+    File target = getDestinationDir();
+    Set<String> preserved =
+        getProject().fileTree(target).matching(getPreserve()).getFiles().stream()
+            .map(file -> target.toPath().relativize(file.toPath()).toString().replace('\\', '/'))
+            .collect(Collectors.toSet());
+
+    IncrementalWarExploder exploder =
+        new IncrementalWarExploder(
+            warFile.toPath(),
+            target.toPath(),
+            new File(getTemporaryDir(), "explode-manifest.properties").toPath());
+    try {
+      exploder.explode(preserved::contains);
+    } catch (IOException ex) {
+      throw new GradleException("Failed to explode " + warFile, ex);
+    }
+    getLogger()
+        .info(
+            "Exploded {}: {} entries written, {} stale files deleted",
+            warFile.getName(),
+            exploder.getWrittenCount(),
+            exploder.getDeletedCount());
+    setDidWork(exploder.getWrittenCount() > 0 || exploder.getDeletedCount() > 0);
+  }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.appengine.configuration.AppEngineWebXmlProjectStageConfiguration;
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies source directory changes to an already staged standard app, for changes that staging
+ * would have copied verbatim.
+ *
+ * <p>Anything staging transforms (appengine-web.xml and the other WEB-INF xml configs, JSPs, and
+ * classes or jars when they are jarred, split or scanned for quickstart) cannot be applied here,
+ * and the caller is expected to fall back to a full staging.
+ *
+ * <p>AppCfg also copies static files to {@value #STATIC_DIRECTORY} and generates an app.yaml
+ * handler for each of them. Modified static files are updated in both places, but removing a static
+ * file or adding web content, which may match the {@code <static-files>} includes, changes the
+ * handlers and requires a full staging.
+ */
+public class IncrementalStandardStaging {
+
+  static final String STATIC_DIRECTORY = "__static__";
+
+  private final Path sourceDirectory;
+  private final Path stagingDirectory;
+  private final boolean jarClasses;
+  private final boolean transformLibs;
+  private final boolean hardLinks;
+  private QuickstartScanIndex quickstartScanIndex;
+  private boolean staticHandlers = true;
+
+  private int copied;
+  private int deleted;
+
+  /**
+   * Create a new incremental staging for the given configuration.
+   *
+   * @param config the staging configuration, to determine which files staging transforms
+   * @param hardLinks hard link changed files instead of copying them
+   * @param quickstartScanIndex with quickstart, used to find jar changes that do not affect the
+   *     quickstart scan and can be copied, can be null to always restage on jar changes
+   */
+  public IncrementalStandardStaging(
+      AppEngineWebXmlProjectStageConfiguration config,
+      boolean hardLinks,
+      QuickstartScanIndex quickstartScanIndex) {
+    this(
+        config.getSourceDirectory(),
+        config.getStagingDirectory(),
+        Boolean.TRUE.equals(config.getEnableJarClasses())
+            || Boolean.TRUE.equals(config.getEnableQuickstart()),
+        Boolean.TRUE.equals(config.getEnableJarSplitting())
+            || (Boolean.TRUE.equals(config.getEnableQuickstart()) && quickstartScanIndex == null),
+        hardLinks);
+    if (Boolean.TRUE.equals(config.getEnableQuickstart())) {
+      this.quickstartScanIndex = quickstartScanIndex;
+    }
+  }
+
+  IncrementalStandardStaging(
+      Path sourceDirectory,
+      Path stagingDirectory,
+      boolean jarClasses,
+      boolean transformLibs,
+      boolean hardLinks) {
+    this.sourceDirectory = sourceDirectory;
+    this.stagingDirectory = stagingDirectory;
+    this.jarClasses = jarClasses;
+    this.transformLibs = transformLibs;
+    this.hardLinks = hardLinks;
+  }
+
+  /** Only applies jar changes that the quickstart scan would not notice. */
+  void setQuickstartScanIndex(QuickstartScanIndex quickstartScanIndex) {
+    this.quickstartScanIndex = quickstartScanIndex;
+  }
+
+  /**
+   * Set to false if the staging does not generate static file handlers, like native staging, so
+   * web content can be added without a full staging.
+   */
+  public void setStaticHandlers(boolean staticHandlers) {
+    this.staticHandlers = staticHandlers;
+  }
+
+  /**
+   * Check if a file can be staged by copying it.
+   *
+   * @param relativePath path relative to the source directory, using '/' as separator
+   * @return true if a change to this file requires a full staging
+   */
+  public boolean requiresFullStaging(String relativePath) {
+    String path = relativePath.toLowerCase();
+    if (path.startsWith("web-inf/")) {
+      String webInfPath = path.substring("web-inf/".length());
+      if (!webInfPath.contains("/") && webInfPath.endsWith(".xml")) {
+        // appengine-web.xml, web.xml, cron.xml, queue.xml, etc. are translated by staging
+        return true;
+      }
+      if (webInfPath.startsWith("appengine-generated/") || webInfPath.startsWith("tags/")) {
+        return true;
+      }
+      if (webInfPath.startsWith("classes/") && jarClasses) {
+        return true;
+      }
+      if (webInfPath.startsWith("lib/") && transformLibs) {
+        return true;
+      }
+    }
+    return path.endsWith(".jsp") || path.endsWith(".jspx") || path.endsWith(".tag");
+  }
+
+  /**
+   * Apply changes to the staging directory.
+   *
+   * @param changes relative paths of changed files mapped to true if the file was added or modified
+   *     and false if it was removed
+   * @return false, without touching the staging directory, if any of the changes requires a full
+   *     staging
+   */
+  public boolean stage(Map<String, Boolean> changes) throws IOException {
+    copied = 0;
+    deleted = 0;
+    if (!Files.isDirectory(stagingDirectory)
+        || changes.keySet().stream().anyMatch(this::requiresFullStaging)
+        || changes.entrySet().stream().anyMatch(this::changesStaticHandlers)
+        || (quickstartScanIndex != null && libChangesAffectQuickstart(changes))) {
+      return false;
+    }
+
+    for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+      Path source = sourceDirectory.resolve(change.getKey());
+      Path target = stagingDirectory.resolve(change.getKey());
+      if (change.getValue() && Files.isRegularFile(source)) {
+        Path staticTarget = getStaticTarget(change.getKey());
+        if (Files.isRegularFile(staticTarget)) {
+          copy(source, staticTarget);
+          copied++;
+          if (!Files.isRegularFile(target)) {
+            // excluded from the resource files
+            continue;
+          }
+        }
+        Files.createDirectories(target.getParent());
+        copy(source, target);
+        copied++;
+      } else if (change.getValue() && Files.isDirectory(source)) {
+        Files.createDirectories(target);
+      } else if (!change.getValue() && Files.exists(target)) {
+        deleteRecursively(target);
+        deleted++;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if a change adds web content or removes a static file, which AppCfg serves through a
+   * generated handler. A file is static if the previous staging copied it to the static directory.
+   */
+  private boolean changesStaticHandlers(Map.Entry<String, Boolean> change) {
+    if (!staticHandlers || change.getKey().toLowerCase().startsWith("web-inf/")) {
+      return false;
+    }
+    Path staticTarget = getStaticTarget(change.getKey());
+    if (!change.getValue()) {
+      return Files.exists(staticTarget);
+    }
+    return Files.isRegularFile(sourceDirectory.resolve(change.getKey()))
+        && !Files.isRegularFile(staticTarget)
+        && !Files.isRegularFile(stagingDirectory.resolve(change.getKey()));
+  }
+
+  private Path getStaticTarget(String relativePath) {
+    return stagingDirectory.resolve(STATIC_DIRECTORY).resolve(relativePath);
+  }
+
+  private void copy(Path source, Path target) throws IOException {
+    if (hardLinks) {
+      FileLinks.linkOrCopy(source, target);
+    } else {
+      Files.copy(
+          source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+  }
+
+  private boolean libChangesAffectQuickstart(Map<String, Boolean> changes) throws IOException {
+    boolean libChanged = false;
+    for (String change : changes.keySet()) {
+      if (!change.toLowerCase().startsWith("web-inf/lib/")) {
+        continue;
+      }
+      libChanged = true;
+      // the jar being replaced or removed may be listed in the quickstart-web.xml too
+      Path source = sourceDirectory.resolve(change);
+      Path staged = stagingDirectory.resolve(change);
+      if ((isJar(source) && quickstartScanIndex.affectsQuickstart(source))
+          || (isJar(staged) && quickstartScanIndex.affectsQuickstart(staged))) {
+        return true;
+      }
+    }
+    if (!libChanged) {
+      return false;
+    }
+
+    // an initializer's @HandlesTypes can match classes in any jar, even one without annotations
+    Path lib = sourceDirectory.resolve("WEB-INF/lib");
+    if (Files.isDirectory(lib)) {
+      List<Path> jars;
+      try (Stream<Path> files = Files.list(lib)) {
+        jars = files.filter(IncrementalStandardStaging::isJar).collect(Collectors.toList());
+      }
+      for (Path jar : jars) {
+        if (quickstartScanIndex.hasContainerInitializer(jar)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isJar(Path path) {
+    return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".jar");
+  }
+
+  /** The number of files copied by the last staging. */
+  public int getCopiedCount() {
+    return copied;
+  }
+
+  /** The number of files deleted by the last staging. */
+  public int getDeletedCount() {
+    return deleted;
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    Files.walkFileTree(
+        path,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Explodes a war into a directory, only writing entries that changed since the last explode.
+ *
+ * <p>Entries are compared using the crc and size recorded in the war's central directory against a
+ * manifest persisted by the previous run, so unchanged entries are never decompressed. Files in the
+ * target directory that are no longer in the war are deleted unless they match the preserve
+ * predicate.
+ */
+public class IncrementalWarExploder {
+
+  private final Path warFile;
+  private final Path targetDirectory;
+  private final Path manifestFile;
+
+  private int written;
+  private int deleted;
+
+  /**
+   * Create a new exploder.
+   *
+   * @param warFile the war to explode
+   * @param targetDirectory the exploded app directory
+   * @param manifestFile where the state of the previous explode is persisted
+   */
+  public IncrementalWarExploder(Path warFile, Path targetDirectory, Path manifestFile) {
+    this.warFile = warFile;
+    this.targetDirectory = targetDirectory.toAbsolutePath().normalize();
+    this.manifestFile = manifestFile;
+  }
+
+  /**
+   * Bring the target directory in sync with the war.
+   *
+   * @param preserved matches paths (relative to the target directory, using '/' as separator) that
+   *     must not be deleted even though they are not in the war
+   */
+  public void explode(Predicate<String> preserved) throws IOException {
+    written = 0;
+    deleted = 0;
+
+    Properties previous = loadManifest();
+    Properties current = new Properties();
+    Set<Path> expected = new HashSet<>();
+    expected.add(targetDirectory);
+
+    Files.createDirectories(targetDirectory);
+    try (ZipFile zip = new ZipFile(warFile.toFile())) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        Path target = resolveEntry(entry.getName());
+        addWithParents(expected, target);
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+          continue;
+        }
+
+        String name = toRelativePath(target);
+        String recorded = previous.getProperty(name);
+        if (recorded == null || !isUnchanged(recorded, entry, target)) {
+          extract(zip, entry, target);
+          written++;
+        }
+        current.setProperty(
+            name,
+            entry.getCrc()
+                + ","
+                + entry.getSize()
+                + ","
+                + Files.getLastModifiedTime(target).toMillis());
+      }
+    }
+
+    deleteStaleFiles(expected, preserved);
+    writeManifest(current);
+  }
+
+  /** The number of entries written by the last explode. */
+  public int getWrittenCount() {
+    return written;
+  }
+
+  /** The number of stale files deleted by the last explode. */
+  public int getDeletedCount() {
+    return deleted;
+  }
+
+  private Path resolveEntry(String entryName) throws IOException {
+    Path target = targetDirectory.resolve(entryName).normalize();
+    if (!target.startsWith(targetDirectory) || target.equals(targetDirectory)) {
+      throw new IOException("War entry is outside of the target directory: " + entryName);
+    }
+    return target;
+  }
+
+  private void addWithParents(Set<Path> expected, Path path) {
+    for (Path current = path;
+        current != null && !current.equals(targetDirectory);
+        current = current.getParent()) {
+      if (!expected.add(current)) {
+        return;
+      }
+    }
+  }
+
+  private boolean isUnchanged(String recorded, ZipEntry entry, Path target) throws IOException {
+    String[] parts = recorded.split(",");
+    if (parts.length != 3 || !Files.isRegularFile(target)) {
+      return false;
+    }
+    try {
+      return Long.parseLong(parts[0]) == entry.getCrc()
+          && Long.parseLong(parts[1]) == entry.getSize()
+          && Files.size(target) == entry.getSize()
+          && Files.getLastModifiedTime(target).toMillis() == Long.parseLong(parts[2]);
+    } catch (NumberFormatException ex) {
+      return false;
+    }
+  }
+
+  private void extract(ZipFile zip, ZipEntry entry, Path target) throws IOException {
+    if (Files.isDirectory(target)) {
+      deleteRecursively(target);
+    }
+    Files.createDirectories(target.getParent());
+    // never write through an existing file, it may be hard linked into a staged app
+    Files.deleteIfExists(target);
+    try (InputStream in = zip.getInputStream(entry);
+        OutputStream out = Files.newOutputStream(target)) {
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+  }
+
+  private void deleteStaleFiles(Set<Path> expected, Predicate<String> preserved)
+      throws IOException {
+    Set<Path> keep = new HashSet<>(expected);
+    Files.walkFileTree(
+        targetDirectory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (!keep.contains(file)) {
+              if (preserved.test(toRelativePath(file))) {
+                addWithParents(keep, file);
+              } else {
+                Files.delete(file);
+                deleted++;
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            if (exc != null) {
+              throw exc;
+            }
+            if (!keep.contains(dir)) {
+              Files.delete(dir);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private String toRelativePath(Path path) {
+    return targetDirectory.relativize(path).toString().replace('\\', '/');
+  }
+
+  private Properties loadManifest() {
+    Properties properties = new Properties();
+    if (Files.isRegularFile(manifestFile)) {
+      try (InputStream in = Files.newInputStream(manifestFile)) {
+        properties.load(in);
+      } catch (IOException | IllegalArgumentException ex) {
+        // a corrupt manifest only costs us a full explode
+        properties.clear();
+      }
+    }
+    return properties;
+  }
+
+  private void writeManifest(Properties manifest) throws IOException {
+    Files.createDirectories(manifestFile.getParent());
+    Path temp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      manifest.store(out, null);
+    }
+    try {
+      Files.move(
+          temp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Splits jars into pieces no larger than a maximum size, and drops the entries matching the
+ * excluded suffixes, like AppCfg's {@code --enable_jar_splitting} and {@code
+ * --jar_splitting_excludes}.
+ *
+ * <p>Each jar is read once and its pieces are written straight to the output directory. Jars are
+ * split in parallel and, when a cache directory is given, the pieces are kept there keyed by the
+ * hash of the jar so unchanged jars are not split again.
+ */
+public class JarSplitter {
+
+  /** The maximum size of a file in a standard app. */
+  public static final long DEFAULT_MAX_JAR_SIZE = 10 * 1024 * 1024;
+
+  // end of central directory record, and the size of the headers of an entry without its name
+  private static final int END_RECORD_SIZE = 22;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  // a zip64 data descriptor, and room for the extended timestamp and zip64 extra fields
+  private static final int DATA_DESCRIPTOR_SIZE = 24;
+  private static final int EXTRA_FIELDS_SIZE = 64;
+
+  private final long maxJarSize;
+  private final String excludes;
+  private final Pattern excludePattern;
+  private final Path cacheDirectory;
+  private final boolean hardLinks;
+
+  /**
+   * Create a new jar splitter.
+   *
+   * @param maxJarSize the maximum size of a piece
+   * @param excludes comma separated suffixes of entries to drop from all jars, can be null
+   * @param cacheDirectory the directory to cache pieces in, can be null to disable caching
+   * @param hardLinks hard link cached pieces into the output instead of copying them
+   */
+  public JarSplitter(long maxJarSize, String excludes, Path cacheDirectory, boolean hardLinks) {
+    this.maxJarSize = maxJarSize;
+    this.excludes = excludes == null ? "" : excludes;
+    this.excludePattern = compileExcludes(excludes);
+    this.cacheDirectory = cacheDirectory;
+    this.hardLinks = hardLinks;
+  }
+
+  /** All suffixes in a single pattern, so an entry name is only matched once. */
+  static Pattern compileExcludes(String excludes) {
+    if (excludes == null) {
+      return null;
+    }
+    List<String> suffixes =
+        Stream.of(excludes.split(","))
+            .map(String::trim)
+            .filter(suffix -> !suffix.isEmpty())
+            .map(Pattern::quote)
+            .collect(Collectors.toList());
+    if (suffixes.isEmpty()) {
+      return null;
+    }
+    return Pattern.compile("(?:" + String.join("|", suffixes) + ")$");
+  }
+
+  /** Check if a jar has to be rewritten, otherwise it can be staged as is. */
+  public boolean needsSplitting(Path jar) throws IOException {
+    return excludePattern != null || Files.size(jar) > maxJarSize;
+  }
+
+  /**
+   * Split jars in parallel.
+   *
+   * @param jars the jars to split
+   * @param outputDirectory the directory to write the pieces to
+   */
+  public void split(List<Path> jars, Path outputDirectory) throws IOException {
+    Set<String> usedCacheKeys = ConcurrentHashMap.newKeySet();
+    try {
+      jars.parallelStream()
+          .forEach(
+              jar -> {
+                try {
+                  String key = splitCached(jar, outputDirectory);
+                  if (key != null) {
+                    usedCacheKeys.add(key);
+                  }
+                } catch (IOException ex) {
+                  throw new UncheckedIOException(ex);
+                }
+              });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    evictCache(usedCacheKeys);
+  }
+
+  private String splitCached(Path jar, Path outputDirectory) throws IOException {
+    if (cacheDirectory == null) {
+      split(jar, outputDirectory);
+      return null;
+    }
+
+    String key = cacheKey(jar);
+    Path cached = cacheDirectory.resolve(key);
+    if (Files.isDirectory(cached)) {
+      try (Stream<Path> pieces = Files.list(cached)) {
+        for (Path piece : pieces.collect(Collectors.toList())) {
+          copy(piece, outputDirectory.resolve(piece.getFileName().toString()));
+        }
+      }
+      return key;
+    }
+
+    List<Path> pieces = split(jar, outputDirectory);
+    Path temp = cacheDirectory.resolve(key + ".tmp");
+    deleteRecursively(temp);
+    Files.createDirectories(temp);
+    for (Path piece : pieces) {
+      copy(piece, temp.resolve(piece.getFileName().toString()));
+    }
+    Files.move(temp, cached, StandardCopyOption.ATOMIC_MOVE);
+    return key;
+  }
+
+  /** Copy a piece into or out of the cache, or hard link it with hard links enabled. */
+  private void copy(Path source, Path target) throws IOException {
+    if (hardLinks) {
+      FileLinks.linkOrCopy(source, target);
+    } else {
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Split a single jar, reading it once and writing the pieces directly to the output directory.
+   *
+   * @return the pieces written, named {@code <name>-0000.jar}, {@code <name>-0001.jar}, ...
+   */
+  public List<Path> split(Path jar, Path outputDirectory) throws IOException {
+    String fileName = jar.getFileName().toString();
+    String baseName =
+        fileName.endsWith(".jar") ? fileName.substring(0, fileName.length() - 4) : fileName;
+
+    List<Path> pieces = new ArrayList<>();
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      ZipEntry manifest = zip.getEntry(JarFile.MANIFEST_NAME);
+      Piece piece = null;
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getName().equals(JarFile.MANIFEST_NAME) || isExcluded(entry.getName())) {
+          continue;
+        }
+        if (piece != null && piece.entryCount > 0 && !piece.fits(entry)) {
+          piece.close();
+          piece = null;
+        }
+        if (piece == null) {
+          Path path =
+              outputDirectory.resolve(String.format("%s-%04d.jar", baseName, pieces.size()));
+          pieces.add(path);
+          piece = new Piece(path);
+          // every piece carries the manifest
+          if (manifest != null) {
+            piece.write(zip, manifest);
+            piece.entryCount = 0;
+          }
+        }
+        piece.write(zip, entry);
+      }
+      if (piece != null) {
+        piece.close();
+      }
+    }
+    return pieces;
+  }
+
+  private boolean isExcluded(String entryName) {
+    return excludePattern != null && excludePattern.matcher(entryName).find();
+  }
+
+  private String cacheKey(Path jar) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putLong(maxJarSize);
+    hasher.putString(excludes, StandardCharsets.UTF_8);
+    hasher.putString(jar.getFileName().toString(), StandardCharsets.UTF_8);
+    try (InputStream in = Files.newInputStream(jar)) {
+      ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Only keep the pieces of the jars split by the last staging. */
+  private void evictCache(Set<String> usedCacheKeys) throws IOException {
+    if (cacheDirectory == null || !Files.isDirectory(cacheDirectory)) {
+      return;
+    }
+    List<Path> entries;
+    try (Stream<Path> list = Files.list(cacheDirectory)) {
+      entries = list.collect(Collectors.toList());
+    }
+    for (Path entry : entries) {
+      if (!usedCacheKeys.contains(entry.getFileName().toString())) {
+        deleteRecursively(entry);
+      }
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(path)) {
+      paths = walk.sorted(Collections.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path file : paths) {
+      Files.delete(file);
+    }
+  }
+
+  /** The largest size data of the given size can take once deflated, as zlib's deflateBound. */
+  static long deflateBound(long size) {
+    size = Math.max(size, 0);
+    return size + (size >> 12) + (size >> 14) + (size >> 25) + 13;
+  }
+
+  /** A jar being written, tracking how large it will be once closed. */
+  private class Piece {
+    private final CountingOutputStream counter;
+    private final ZipOutputStream out;
+    private long centralDirectorySize = END_RECORD_SIZE;
+    private int entryCount;
+
+    Piece(Path path) throws IOException {
+      OutputStream file = Files.newOutputStream(path);
+      counter = new CountingOutputStream(file);
+      out = new ZipOutputStream(counter);
+    }
+
+    /**
+     * Check if the entry fits, bounding its size conservatively: pieces re-deflate entries, so the
+     * compressed size in the source jar says nothing of the size written.
+     */
+    boolean fits(ZipEntry entry) {
+      long nameSize = entry.getName().getBytes(StandardCharsets.UTF_8).length;
+      long headers =
+          LOCAL_HEADER_SIZE
+              + CENTRAL_HEADER_SIZE
+              + DATA_DESCRIPTOR_SIZE
+              + 2 * (nameSize + EXTRA_FIELDS_SIZE);
+      return counter.getCount() + centralDirectorySize + deflateBound(entry.getSize()) + headers
+          <= maxJarSize;
+    }
+
+    void write(ZipFile zip, ZipEntry entry) throws IOException {
+      ZipEntry copy = new ZipEntry(entry.getName());
+      copy.setTime(entry.getTime());
+      out.putNextEntry(copy);
+      if (!entry.isDirectory()) {
+        try (InputStream in = zip.getInputStream(entry)) {
+          ByteStreams.copy(in, out);
+        }
+      }
+      out.closeEntry();
+      centralDirectorySize +=
+          CENTRAL_HEADER_SIZE
+              + entry.getName().getBytes(StandardCharsets.UTF_8).length
+              + EXTRA_FIELDS_SIZE;
+      entryCount++;
+    }
+
+    void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The JSP sources of an exploded app: which files are compiled to servlets, which files they pull
+ * in at translation time, and the name of the servlet class Jasper generates for them.
+ *
+ * <p>All paths are relative to the app root and use '/' as separator.
+ */
+public class JspSources {
+
+  static final String JSP_PACKAGE = "org.apache.jsp";
+
+  private static final Set<String> JAVA_KEYWORDS =
+      ImmutableSet.of(
+          "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+          "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+          "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+          "interface", "long", "native", "new", "package", "private", "protected", "public",
+          "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+          "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false",
+          "null");
+
+  // translation time dependencies: static includes and tag directories
+  private static final Pattern INCLUDE =
+      Pattern.compile("(?:<%@\\s*include|<jsp:directive\\.include)\\s+file\\s*=\\s*[\"']([^\"']+)");
+  private static final Pattern TAGDIR =
+      Pattern.compile("<%@\\s*taglib[^%]*tagdir\\s*=\\s*[\"']([^\"']+)");
+
+  private final Path root;
+  private final Charset encoding;
+  private final Map<String, Set<String>> directDependencies = new HashMap<>();
+
+  /**
+   * Read the JSP sources of an app.
+   *
+   * @param root the exploded app
+   * @param encoding the encoding of the sources, can be null for UTF-8
+   */
+  public JspSources(Path root, String encoding) {
+    this.root = root;
+    this.encoding = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+  }
+
+  /** Check if a file is JSP source, compiled on its own or as part of another JSP. */
+  public static boolean isSource(String path) {
+    String lower = path.toLowerCase();
+    return isServlet(path)
+        || lower.endsWith(".jspf")
+        || lower.endsWith(".tag")
+        || lower.endsWith(".tagx")
+        || lower.endsWith(".tagf");
+  }
+
+  /** Check if a file is compiled to a servlet. */
+  public static boolean isServlet(String path) {
+    String lower = path.toLowerCase();
+    return (lower.endsWith(".jsp") || lower.endsWith(".jspx"))
+        && !lower.startsWith("web-inf/tags/");
+  }
+
+  /** Find all files that are compiled to servlets. */
+  public List<String> findServlets() throws IOException {
+    if (!Files.isDirectory(root)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> files = Files.walk(root)) {
+      return files
+          .filter(Files::isRegularFile)
+          .map(file -> root.relativize(file).toString().replace('\\', '/'))
+          .filter(JspSources::isServlet)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /** All the files a JSP pulls in when it is translated, transitively, excluding itself. */
+  public Set<String> getDependencies(String path) throws IOException {
+    Set<String> dependencies = new TreeSet<>();
+    Deque<String> queue = new ArrayDeque<>(getDirectDependencies(path));
+    while (!queue.isEmpty()) {
+      String dependency = queue.pop();
+      if (!dependency.equals(path) && dependencies.add(dependency)) {
+        queue.addAll(getDirectDependencies(dependency));
+      }
+    }
+    return dependencies;
+  }
+
+  private Set<String> getDirectDependencies(String path) throws IOException {
+    Set<String> cached = directDependencies.get(path);
+    if (cached != null) {
+      return cached;
+    }
+    Set<String> dependencies = new TreeSet<>();
+    Path file = root.resolve(path);
+    if (Files.isRegularFile(file)) {
+      String content = new String(Files.readAllBytes(file), encoding);
+      Matcher include = INCLUDE.matcher(content);
+      while (include.find()) {
+        dependencies.add(resolve(path, include.group(1)));
+      }
+      Matcher tagdir = TAGDIR.matcher(content);
+      while (tagdir.find()) {
+        Path directory = root.resolve(resolve(path, tagdir.group(1)));
+        if (Files.isDirectory(directory)) {
+          try (Stream<Path> tags = Files.walk(directory)) {
+            tags.filter(Files::isRegularFile)
+                .map(tag -> root.relativize(tag).toString().replace('\\', '/'))
+                .filter(JspSources::isSource)
+                .forEach(dependencies::add);
+          }
+        }
+      }
+    }
+    directDependencies.put(path, dependencies);
+    return dependencies;
+  }
+
+  /** Resolve an include against the including file, absolute includes are app relative. */
+  static String resolve(String from, String include) {
+    String resolved;
+    if (include.startsWith("/")) {
+      resolved = include.substring(1);
+    } else {
+      int slash = from.lastIndexOf('/');
+      resolved = slash < 0 ? include : from.substring(0, slash + 1) + include;
+    }
+    Deque<String> segments = new ArrayDeque<>();
+    for (String segment : resolved.split("/")) {
+      if (segment.equals("..")) {
+        segments.pollLast();
+      } else if (!segment.isEmpty() && !segment.equals(".")) {
+        segments.addLast(segment);
+      }
+    }
+    return String.join("/", segments);
+  }
+
+  /**
+   * The fully qualified name of the servlet Jasper generates for a JSP, e.g. {@code
+   * org.apache.jsp.admin.index_jsp} for {@code admin/index.jsp}.
+   */
+  public static String getServletClassName(String path) {
+    StringBuilder className = new StringBuilder(JSP_PACKAGE);
+    String[] segments = path.split("/");
+    for (String segment : segments) {
+      if (!segment.isEmpty()) {
+        className.append('.').append(makeJavaIdentifier(segment));
+      }
+    }
+    return className.toString();
+  }
+
+  /** Same mangling as Jasper's JspUtil.makeJavaIdentifier. */
+  static String makeJavaIdentifier(String identifier) {
+    StringBuilder result = new StringBuilder(identifier.length());
+    if (!Character.isJavaIdentifierStart(identifier.charAt(0))) {
+      result.append('_');
+    }
+    for (int i = 0; i < identifier.length(); i++) {
+      char ch = identifier.charAt(i);
+      if (Character.isJavaIdentifierPart(ch) && ch != '_') {
+        result.append(ch);
+      } else if (ch == '.') {
+        result.append('_');
+      } else {
+        result.append('_');
+        for (int shift = 12; shift >= 0; shift -= 4) {
+          result.append(Character.forDigit((ch >> shift) & 0xF, 16));
+        }
+      }
+    }
+    if (JAVA_KEYWORDS.contains(result.toString())) {
+      result.append('_');
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.appengine.configuration.AppEngineWebXmlProjectStageConfiguration;
+import com.google.cloud.tools.gradle.appengine.util.AppEngineWebXml;
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Stages appengine-web.xml based applications without forking AppCfg, for the common case of a
+ * second generation java runtime that only needs its web content copied and an app.yaml generated.
+ *
+ * <p>Use {@link #getUnsupportedReason} to find out if an application can be staged by this class,
+ * everything else must go through AppCfg.
+ */
+public class NativeStandardStaging {
+
+  static final String WEB_INF_CLASSES_JAR = "_ah_webinf_classes.jar";
+  static final String COMPILED_JSPS_JAR = "_ah_compiled_jsps-0000.jar";
+
+  private static final Set<String> SUPPORTED_RUNTIMES =
+      ImmutableSet.of("java11", "java17", "java21");
+
+  private static final Set<String> SUPPORTED_ELEMENTS =
+      ImmutableSet.of(
+          "application",
+          "version",
+          "runtime",
+          "service",
+          "module",
+          "instance-class",
+          "automatic-scaling",
+          "basic-scaling",
+          "manual-scaling",
+          "env-variables",
+          "inbound-services",
+          "app-engine-apis");
+
+  // web.xml elements AppCfg translates into app.yaml handlers
+  private static final Set<String> HANDLER_ELEMENTS =
+      ImmutableSet.of("security-constraint", "welcome-file-list");
+
+  private static final Set<String> SUPPORTED_AUTOMATIC_SCALING =
+      ImmutableSet.of(
+          "min-idle-instances",
+          "max-idle-instances",
+          "min-pending-latency",
+          "max-pending-latency",
+          "max-concurrent-requests",
+          "min-instances",
+          "max-instances",
+          "target-cpu-utilization",
+          "target-throughput-utilization");
+
+  private static final Set<String> SUPPORTED_BASIC_SCALING =
+      ImmutableSet.of("max-instances", "idle-timeout");
+
+  private static final Set<String> SUPPORTED_MANUAL_SCALING = ImmutableSet.of("instances");
+
+  private static final Pattern PLAIN_SCALAR = Pattern.compile("[A-Za-z0-9._-]+");
+
+  // reproducible jar entries, same as gradle's reproducible archives
+  private static final long CONSTANT_ENTRY_TIME = 315532800000L;
+
+  private final Path sourceDirectory;
+  private final Path stagingDirectory;
+  private final String runtime;
+  private final boolean enableJarClasses;
+  private final boolean enableHardLinks;
+  private final JarSplitter jarSplitter;
+  private Path compiledJspDirectory;
+  private boolean deleteJsps;
+  private boolean disableJarJsps;
+  private AppEngineWebXml.ParseCache descriptors = new AppEngineWebXml.ParseCache();
+
+  /**
+   * Create a new native staging.
+   *
+   * @param sourceDirectory the exploded app
+   * @param stagingDirectory the (empty) directory to stage into
+   * @param runtime overrides the runtime in appengine-web.xml, can be null
+   * @param enableJarClasses jar the content of WEB-INF/classes
+   * @param enableHardLinks hard link files to the source directory instead of copying them
+   * @param jarSplitter splits the jars in WEB-INF/lib, can be null to copy them as they are
+   */
+  public NativeStandardStaging(
+      Path sourceDirectory,
+      Path stagingDirectory,
+      String runtime,
+      boolean enableJarClasses,
+      boolean enableHardLinks,
+      JarSplitter jarSplitter) {
+    this.sourceDirectory = sourceDirectory;
+    this.stagingDirectory = stagingDirectory;
+    this.runtime = runtime;
+    this.enableJarClasses = enableJarClasses;
+    this.enableHardLinks = enableHardLinks;
+    this.jarSplitter = jarSplitter;
+  }
+
+  /**
+   * Include JSPs precompiled by {@link CompileJspTask}, instead of compiling them with AppCfg.
+   *
+   * @param compiledJspDirectory the classes generated from the JSPs of the source directory
+   * @param deleteJsps do not stage the JSP sources
+   * @param disableJarJsps stage the generated classes in WEB-INF/classes instead of a jar
+   */
+  public void setCompiledJsps(
+      Path compiledJspDirectory, boolean deleteJsps, boolean disableJarJsps) {
+    this.compiledJspDirectory = compiledJspDirectory;
+    this.deleteJsps = deleteJsps;
+    this.disableJarJsps = disableJarJsps;
+  }
+
+  /** Share the appengine-web.xml parsed by the rest of the staging run. */
+  public void setDescriptors(AppEngineWebXml.ParseCache descriptors) {
+    this.descriptors = descriptors;
+  }
+
+  /**
+   * Check if an application can be staged without AppCfg.
+   *
+   * @param jspsCompiled true if the JSPs have been compiled by {@link CompileJspTask}
+   * @param descriptors parses appengine-web.xml, shared with the rest of the staging run
+   * @return a description of the first unsupported option found, or null if native staging can be
+   *     used
+   */
+  public static String getUnsupportedReason(
+      AppEngineWebXmlProjectStageConfiguration config,
+      boolean jspsCompiled,
+      AppEngineWebXml.ParseCache descriptors)
+      throws IOException {
+    if (Boolean.TRUE.equals(config.getEnableQuickstart())) {
+      return "enableQuickstart";
+    }
+    if (!jspsCompiled
+        && (config.getCompileEncoding() != null
+            || Boolean.TRUE.equals(config.getDeleteJsps())
+            || Boolean.TRUE.equals(config.getDisableJarJsps()))) {
+      return "JSP compilation options";
+    }
+    if (config.getDockerfile() != null) {
+      return "dockerfile";
+    }
+    return getUnsupportedReason(
+        config.getSourceDirectory(), config.getRuntime(), jspsCompiled, descriptors);
+  }
+
+  static String getUnsupportedReason(Path sourceDirectory, String runtimeOverride)
+      throws IOException {
+    return getUnsupportedReason(sourceDirectory, runtimeOverride, false);
+  }
+
+  static String getUnsupportedReason(
+      Path sourceDirectory, String runtimeOverride, boolean jspsCompiled) throws IOException {
+    return getUnsupportedReason(
+        sourceDirectory, runtimeOverride, jspsCompiled, new AppEngineWebXml.ParseCache());
+  }
+
+  private static String getUnsupportedReason(
+      Path sourceDirectory,
+      String runtimeOverride,
+      boolean jspsCompiled,
+      AppEngineWebXml.ParseCache descriptors)
+      throws IOException {
+    Path webInf = sourceDirectory.resolve("WEB-INF");
+    Path appengineWebXml = webInf.resolve("appengine-web.xml");
+    if (!Files.isRegularFile(appengineWebXml)) {
+      return "missing appengine-web.xml";
+    }
+
+    AppEngineWebXml descriptor = descriptors.parse(appengineWebXml.toFile());
+    String runtime = runtimeOverride != null ? runtimeOverride : descriptor.getRuntime();
+    if (!SUPPORTED_RUNTIMES.contains(runtime)) {
+      return "runtime " + runtime;
+    }
+    for (String element : descriptor.getElementNames()) {
+      if (!SUPPORTED_ELEMENTS.contains(element)) {
+        return "appengine-web.xml element <" + element + ">";
+      }
+    }
+    String scaling =
+        getUnsupportedChild(descriptor, "automatic-scaling", SUPPORTED_AUTOMATIC_SCALING);
+    if (scaling == null) {
+      scaling = getUnsupportedChild(descriptor, "basic-scaling", SUPPORTED_BASIC_SCALING);
+    }
+    if (scaling == null) {
+      scaling = getUnsupportedChild(descriptor, "manual-scaling", SUPPORTED_MANUAL_SCALING);
+    }
+    if (scaling != null) {
+      return "appengine-web.xml element <" + scaling + ">";
+    }
+
+    // other xml configs (cron.xml, queue.xml, etc.) are converted to yaml by AppCfg
+    try (Stream<Path> webInfFiles = Files.list(webInf)) {
+      List<String> configs =
+          webInfFiles
+              .map(file -> file.getFileName().toString())
+              .filter(name -> name.endsWith(".xml"))
+              .filter(name -> !name.equals("appengine-web.xml") && !name.equals("web.xml"))
+              .sorted()
+              .collect(Collectors.toList());
+      if (!configs.isEmpty()) {
+        return "WEB-INF/" + configs.get(0);
+      }
+    }
+    String handlerElement = getHandlerElement(webInf.resolve("web.xml"));
+    if (handlerElement != null) {
+      return "web.xml element <" + handlerElement + ">";
+    }
+    if (Files.isDirectory(webInf.resolve("appengine-generated"))) {
+      return "WEB-INF/appengine-generated";
+    }
+    if (!jspsCompiled) {
+      try (Stream<Path> files = Files.walk(sourceDirectory)) {
+        if (files.anyMatch(file -> file.getFileName().toString().endsWith(".jsp"))) {
+          return "JSP compilation";
+        }
+      }
+    }
+    return null;
+  }
+
+  /** The first web.xml element that AppCfg turns into app.yaml handlers, or null. */
+  private static String getHandlerElement(Path webXml) throws IOException {
+    if (!Files.isRegularFile(webXml)) {
+      return null;
+    }
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (InputStream in = Files.newInputStream(webXml)) {
+      XMLStreamReader reader = factory.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT
+              && HANDLER_ELEMENTS.contains(reader.getLocalName())) {
+            return reader.getLocalName();
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException ex) {
+      throw new IOException("Failed to parse " + webXml, ex);
+    }
+    return null;
+  }
+
+  private static String getUnsupportedChild(
+      AppEngineWebXml descriptor, String element, Set<String> supported) {
+    Map<String, String> values = descriptor.getChildValues(element);
+    if (values != null) {
+      for (String child : values.keySet()) {
+        if (!supported.contains(child)) {
+          return child;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Copy the web content and generate app.yaml into the staging directory. */
+  public void stage() throws IOException {
+    Files.createDirectories(stagingDirectory);
+    Path classes = sourceDirectory.resolve("WEB-INF/classes");
+    Path libs = sourceDirectory.resolve("WEB-INF/lib");
+    List<Path> jarsToSplit = new ArrayList<>();
+    List<Path> sources;
+    try (Stream<Path> files = Files.walk(sourceDirectory)) {
+      sources = files.sorted().collect(Collectors.toList());
+    }
+    List<String> jsps =
+        compiledJspDirectory == null
+            ? Collections.emptyList()
+            : new JspSources(sourceDirectory, null).findServlets();
+    for (Path source : sources) {
+      if (enableJarClasses && source.startsWith(classes)) {
+        continue;
+      }
+      if (deleteJsps && jsps.contains(toRelativePath(source))) {
+        continue;
+      }
+      if (jarSplitter != null
+          && libs.equals(source.getParent())
+          && source.getFileName().toString().endsWith(".jar")
+          && jarSplitter.needsSplitting(source)) {
+        jarsToSplit.add(source);
+        continue;
+      }
+      Path target = stagingDirectory.resolve(sourceDirectory.relativize(source).toString());
+      if (Files.isDirectory(source)) {
+        Files.createDirectories(target);
+      } else if (enableHardLinks) {
+        FileLinks.linkOrCopy(source, target);
+      } else {
+        Files.copy(
+            source,
+            target,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.COPY_ATTRIBUTES);
+      }
+    }
+    if (!jarsToSplit.isEmpty()) {
+      jarSplitter.split(jarsToSplit, stagingDirectory.resolve("WEB-INF/lib"));
+    }
+    if (enableJarClasses && Files.isDirectory(classes)) {
+      Path lib = stagingDirectory.resolve("WEB-INF/lib");
+      Files.createDirectories(lib);
+      jar(classes, lib.resolve(WEB_INF_CLASSES_JAR));
+    }
+    if (!jsps.isEmpty()) {
+      stageCompiledJsps(jsps);
+    }
+
+    AppEngineWebXml descriptor =
+        descriptors.parse(sourceDirectory.resolve("WEB-INF/appengine-web.xml").toFile());
+    Files.write(
+        stagingDirectory.resolve("app.yaml"),
+        toAppYaml(descriptor, runtime).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toRelativePath(Path source) {
+    return sourceDirectory.relativize(source).toString().replace('\\', '/');
+  }
+
+  /** Add the precompiled JSP classes and map them in web.xml, like AppCfg does. */
+  private void stageCompiledJsps(List<String> jsps) throws IOException {
+    if (Files.isDirectory(compiledJspDirectory)) {
+      if (disableJarJsps) {
+        Path classesTarget = stagingDirectory.resolve("WEB-INF/classes");
+        List<Path> compiled;
+        try (Stream<Path> files = Files.walk(compiledJspDirectory)) {
+          compiled = files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : compiled) {
+          Path target = classesTarget.resolve(compiledJspDirectory.relativize(file).toString());
+          Files.createDirectories(target.getParent());
+          Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } else {
+        Path lib = stagingDirectory.resolve("WEB-INF/lib");
+        Files.createDirectories(lib);
+        jar(compiledJspDirectory, lib.resolve(COMPILED_JSPS_JAR));
+      }
+    }
+
+    Path webXml = stagingDirectory.resolve("WEB-INF/web.xml");
+    String content =
+        Files.isRegularFile(webXml)
+            ? new String(Files.readAllBytes(webXml), StandardCharsets.UTF_8)
+            : "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"3.1\">\n"
+                + "</web-app>\n";
+    int end = content.lastIndexOf("</web-app>");
+    if (end < 0) {
+      throw new IOException("Invalid " + webXml + ": missing </web-app>");
+    }
+    StringBuilder servlets = new StringBuilder();
+    for (String jsp : jsps) {
+      String urlPattern = "<url-pattern>/" + jsp + "</url-pattern>";
+      if (content.contains(urlPattern)) {
+        // already mapped by the app
+        continue;
+      }
+      String className = JspSources.getServletClassName(jsp);
+      servlets
+          .append("  <servlet>\n    <servlet-name>")
+          .append(className)
+          .append("</servlet-name>\n    <servlet-class>")
+          .append(className)
+          .append("</servlet-class>\n  </servlet>\n  <servlet-mapping>\n    <servlet-name>")
+          .append(className)
+          .append("</servlet-name>\n    ")
+          .append(urlPattern)
+          .append("\n  </servlet-mapping>\n");
+    }
+    // the staged web.xml may be a hard link to the source, replace it instead of writing through
+    Files.deleteIfExists(webXml);
+    Files.createDirectories(webXml.getParent());
+    Files.write(
+        webXml,
+        (content.substring(0, end) + servlets + content.substring(end))
+            .getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Translate the supported subset of appengine-web.xml to app.yaml. */
+  static String toAppYaml(AppEngineWebXml descriptor, String runtimeOverride) {
+    StringBuilder yaml = new StringBuilder();
+    String runtime = runtimeOverride != null ? runtimeOverride : descriptor.getRuntime();
+    appendScalar(yaml, "runtime", runtime);
+    appendScalar(yaml, "service", descriptor.getService());
+    appendScalar(yaml, "instance_class", descriptor.getInstanceClass());
+    if ("true".equals(descriptor.getValue("app-engine-apis"))) {
+      yaml.append("app_engine_apis: true\n");
+    }
+
+    for (String scaling :
+        ImmutableList.of("automatic-scaling", "basic-scaling", "manual-scaling")) {
+      Map<String, String> values = descriptor.getChildValues(scaling);
+      if (values != null) {
+        yaml.append(toYamlKey(scaling)).append(":\n");
+        for (Map.Entry<String, String> value : values.entrySet()) {
+          yaml.append("  ");
+          appendScalar(yaml, toYamlKey(value.getKey()), value.getValue());
+        }
+      }
+    }
+
+    List<String> inboundServices = descriptor.getChildValueList("inbound-services");
+    if (!inboundServices.isEmpty()) {
+      yaml.append("inbound_services:\n");
+      for (String inboundService : inboundServices) {
+        yaml.append("- ").append(quote(inboundService)).append("\n");
+      }
+    }
+
+    Map<String, String> envVariables = descriptor.getEnvVariables();
+    if (!envVariables.isEmpty()) {
+      yaml.append("env_variables:\n");
+      for (Map.Entry<String, String> variable : envVariables.entrySet()) {
+        yaml.append("  ");
+        appendScalar(yaml, variable.getKey(), variable.getValue());
+      }
+    }
+    return yaml.toString();
+  }
+
+  private static void appendScalar(StringBuilder yaml, String key, String value) {
+    if (value != null) {
+      yaml.append(key).append(": ").append(quote(value)).append("\n");
+    }
+  }
+
+  private static String toYamlKey(String xmlName) {
+    return xmlName.replace('-', '_');
+  }
+
+  private static String quote(String value) {
+    if (PLAIN_SCALAR.matcher(value).matches()) {
+      return value;
+    }
+    return "'" + value.replace("'", "''") + "'";
+  }
+
+  private static void jar(Path directory, Path jarFile) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    try (OutputStream out = Files.newOutputStream(jarFile);
+        JarOutputStream jar = new JarOutputStream(out)) {
+      JarEntry manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+      manifestEntry.setTime(CONSTANT_ENTRY_TIME);
+      jar.putNextEntry(manifestEntry);
+      manifest.write(jar);
+      jar.closeEntry();
+      for (Path file : files) {
+        JarEntry entry = new JarEntry(directory.relativize(file).toString().replace('\\', '/'));
+        entry.setTime(CONSTANT_ENTRY_TIME);
+        jar.putNextEntry(entry);
+        Files.copy(file, jar);
+        jar.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A persistent index of what the quickstart annotation scan finds in a jar, keyed by the jar's
+ * content hash so a jar is only scanned the first time any build sees it.
+ *
+ * <p>A jar without any of these features never shows up in the generated quickstart-web.xml, so
+ * adding, removing or updating it does not require regenerating it.
+ */
+public class QuickstartScanIndex {
+
+  static final String ANNOTATIONS = "annotations";
+  static final String WEB_FRAGMENT = "web-fragment";
+  static final String CONTAINER_INITIALIZER = "container-initializer";
+  static final String RESOURCES = "resources";
+  static final String TLD = "tld";
+
+  private static final byte[][] SERVLET_ANNOTATION_PACKAGES = {
+    "javax/servlet/annotation/".getBytes(StandardCharsets.UTF_8),
+    "jakarta/servlet/annotation/".getBytes(StandardCharsets.UTF_8)
+  };
+
+  private final Path indexDirectory;
+
+  /**
+   * Create an index backed by a directory, usually shared by all builds of a user.
+   *
+   * @param indexDirectory the directory holding one entry per scanned jar
+   */
+  public QuickstartScanIndex(Path indexDirectory) {
+    this.indexDirectory = indexDirectory;
+  }
+
+  /** Check if the jar has anything the quickstart scan would pick up. */
+  public boolean affectsQuickstart(Path jar) throws IOException {
+    return !getFeatures(jar).isEmpty();
+  }
+
+  /**
+   * Check if the jar has a ServletContainerInitializer, its {@code @HandlesTypes} can match
+   * classes in any other jar.
+   */
+  public boolean hasContainerInitializer(Path jar) throws IOException {
+    return getFeatures(jar).contains(CONTAINER_INITIALIZER);
+  }
+
+  /** Get the scan features of a jar, from the index or by scanning it. */
+  Set<String> getFeatures(Path jar) throws IOException {
+    String hash = hash(jar);
+    Path entry = indexDirectory.resolve(hash.substring(0, 2)).resolve(hash);
+    if (Files.isRegularFile(entry)) {
+      return new TreeSet<>(Files.readAllLines(entry, StandardCharsets.UTF_8));
+    }
+
+    Set<String> features = scan(jar);
+    Files.createDirectories(entry.getParent());
+    Path temp = Files.createTempFile(entry.getParent(), hash, ".tmp");
+    Files.write(temp, features, StandardCharsets.UTF_8);
+    // concurrent builds write the same content, whichever move wins is fine
+    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+    return features;
+  }
+
+  /** Find everything in a jar that the quickstart scan would pick up. */
+  static Set<String> scan(Path jar) throws IOException {
+    Set<String> features = new TreeSet<>();
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (name.equals("META-INF/web-fragment.xml")) {
+          features.add(WEB_FRAGMENT);
+        } else if (name.equals("META-INF/services/javax.servlet.ServletContainerInitializer")
+            || name.equals("META-INF/services/jakarta.servlet.ServletContainerInitializer")) {
+          features.add(CONTAINER_INITIALIZER);
+        } else if (name.startsWith("META-INF/resources/")) {
+          features.add(RESOURCES);
+        } else if (name.endsWith(".tld")) {
+          features.add(TLD);
+        } else if (name.endsWith(".class") && !features.contains(ANNOTATIONS)) {
+          byte[] content;
+          try (InputStream in = zip.getInputStream(entry)) {
+            content = ByteStreams.toByteArray(in);
+          }
+          // annotation types are in the constant pool, a match may also be a plain reference which
+          // only makes the index more conservative
+          for (byte[] servletPackage : SERVLET_ANNOTATION_PACKAGES) {
+            if (indexOf(content, servletPackage) >= 0) {
+              features.add(ANNOTATIONS);
+            }
+          }
+        }
+      }
+    }
+    return features;
+  }
+
+  private static String hash(Path jar) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    try (InputStream in = Files.newInputStream(jar)) {
+      ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+    }
+    return hasher.hash().toString();
+  }
+
+  private static int indexOf(byte[] content, byte[] pattern) {
+    outer:
+    for (int i = 0; i <= content.length - pattern.length; i++) {
+      for (int j = 0; j < pattern.length; j++) {
+        if (content[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+}
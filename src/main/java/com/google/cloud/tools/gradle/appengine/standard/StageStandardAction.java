@@ -0,0 +1,271 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.appengine.configuration.AppEngineWebXmlProjectStageConfiguration;
+import com.google.cloud.tools.appengine.operations.AppCfg;
+import com.google.cloud.tools.appengine.operations.CloudSdk;
+import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkNotFoundException;
+import com.google.cloud.tools.gradle.appengine.core.CloudSdkOperations;
+import com.google.cloud.tools.gradle.appengine.util.AppEngineWebXml;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import com.google.cloud.tools.gradle.appengine.util.io.FileLinks;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Stages a standard app in a Gradle worker: incrementally when possible, then natively when
+ * enabled and supported, and with AppCfg otherwise.
+ */
+public abstract class StageStandardAction implements WorkAction<StageStandardAction.Parameters> {
+
+  private static final Logger LOGGER = Logging.getLogger(StageStandardAction.class);
+
+  /** Parameters of a staging, mirrors {@link StageStandardExtension}. */
+  public interface Parameters extends WorkParameters {
+    DirectoryProperty getCloudSdkHome();
+
+    DirectoryProperty getSourceDirectory();
+
+    DirectoryProperty getStagingDirectory();
+
+    RegularFileProperty getDockerfile();
+
+    Property<Boolean> getEnableQuickstart();
+
+    Property<Boolean> getDisableUpdateCheck();
+
+    Property<Boolean> getEnableJarSplitting();
+
+    Property<String> getJarSplittingExcludes();
+
+    Property<String> getCompileEncoding();
+
+    Property<Boolean> getDeleteJsps();
+
+    Property<Boolean> getEnableJarClasses();
+
+    Property<Boolean> getDisableJarJsps();
+
+    Property<String> getRuntime();
+
+    Property<Boolean> getNativeStaging();
+
+    /** JSPs precompiled by {@link CompileJspTask}, for native staging. */
+    DirectoryProperty getCompiledJspDirectory();
+
+    Property<Boolean> getEnableHardLinks();
+
+    /** The persistent quickstart scan index, shared by all builds. */
+    DirectoryProperty getQuickstartScanIndex();
+
+    /** Where native staging caches split jars. */
+    DirectoryProperty getJarSplittingCache();
+
+    /** True to try applying {@link #getChanges()} to the previous staging first. */
+    Property<Boolean> getIncremental();
+
+    /** Changed source files, see {@link IncrementalStandardStaging#stage}. */
+    MapProperty<String, Boolean> getChanges();
+
+    /** Where to write the phase timings of the staging. */
+    RegularFileProperty getReportFile();
+
+    /** The path of the staging task, for the timings report. */
+    Property<String> getTaskPath();
+  }
+
+  @Override
+  public void execute() {
+    Parameters parameters = getParameters();
+    AppEngineWebXmlProjectStageConfiguration config = toStageStandardConfiguration(parameters);
+    PhaseTimings timings = new PhaseTimings();
+    boolean success = false;
+    try (PhaseTimings.Phase ignored = timings.start("staging")) {
+      timings.setAttribute("stagingMode", stage(config, parameters));
+      success = true;
+    } finally {
+      RegularFile reportFile = parameters.getReportFile().getOrNull();
+      if (reportFile != null) {
+        try {
+          timings.writeReport(reportFile.getAsFile(), parameters.getTaskPath().get(), success);
+        } catch (IOException ex) {
+          LOGGER.warn("Failed to write the timings report", ex);
+        }
+      }
+    }
+  }
+
+  /** Stage the app, returns the staging mode used. */
+  private String stage(AppEngineWebXmlProjectStageConfiguration config, Parameters parameters) {
+    boolean hardLinks = parameters.getEnableHardLinks().get();
+    // the descriptor is read by each staging mode tried, parse it once per run
+    AppEngineWebXml.ParseCache descriptors = new AppEngineWebXml.ParseCache();
+    try {
+      if (parameters.getIncremental().get()
+          && stageIncrementally(config, hardLinks, descriptors)) {
+        return "incremental";
+      }
+
+      deleteRecursively(config.getStagingDirectory());
+      Files.createDirectories(config.getStagingDirectory());
+      if (parameters.getNativeStaging().get() && stageNatively(config, hardLinks, descriptors)) {
+        return "native";
+      }
+
+      CloudSdk cloudSdk =
+          new CloudSdk.Builder()
+              .sdkPath(parameters.getCloudSdkHome().get().getAsFile().toPath())
+              .build();
+      AppCfg.builder(cloudSdk)
+          .build()
+          .newStaging(CloudSdkOperations.getDefaultHandler(LOGGER))
+          .stageStandard(config);
+      if (hardLinks) {
+        int linked =
+            FileLinks.linkIdenticalFiles(config.getSourceDirectory(), config.getStagingDirectory());
+        LOGGER.info("Hard linked {} staged files to the source directory", linked);
+      }
+      return "appcfg";
+    } catch (CloudSdkNotFoundException ex) {
+      throw new GradleException("Could not find CloudSDK: ", ex);
+    } catch (AppEngineException | IOException ex) {
+      throw new GradleException("Failed to stage the application", ex);
+    }
+  }
+
+  private boolean stageIncrementally(
+      AppEngineWebXmlProjectStageConfiguration config,
+      boolean hardLinks,
+      AppEngineWebXml.ParseCache descriptors)
+      throws IOException {
+    Directory index = getParameters().getQuickstartScanIndex().getOrNull();
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(
+            config,
+            hardLinks,
+            index == null ? null : new QuickstartScanIndex(index.getAsFile().toPath()));
+    // descriptor changes restage fully, so the previous staging was native if this one would be
+    boolean nativeStaging =
+        getParameters().getNativeStaging().get()
+            && NativeStandardStaging.getUnsupportedReason(
+                    config, getParameters().getCompiledJspDirectory().isPresent(), descriptors)
+                == null;
+    staging.setStaticHandlers(!nativeStaging);
+    if (!staging.stage(getParameters().getChanges().get())) {
+      LOGGER.info("Changes require a full staging of {}", config.getSourceDirectory());
+      return false;
+    }
+    LOGGER.info(
+        "Incrementally staged: {} files copied, {} files deleted",
+        staging.getCopiedCount(),
+        staging.getDeletedCount());
+    return true;
+  }
+
+  /** Stage without forking AppCfg, if the app only uses supported options. */
+  private boolean stageNatively(
+      AppEngineWebXmlProjectStageConfiguration config,
+      boolean hardLinks,
+      AppEngineWebXml.ParseCache descriptors)
+      throws IOException {
+    Directory compiledJsps = getParameters().getCompiledJspDirectory().getOrNull();
+    String unsupported =
+        NativeStandardStaging.getUnsupportedReason(config, compiledJsps != null, descriptors);
+    if (unsupported != null) {
+      LOGGER.info("Staging with AppCfg, native staging does not support {}", unsupported);
+      return false;
+    }
+    JarSplitter jarSplitter = null;
+    if (Boolean.TRUE.equals(config.getEnableJarSplitting())) {
+      Directory cache = getParameters().getJarSplittingCache().getOrNull();
+      jarSplitter =
+          new JarSplitter(
+              JarSplitter.DEFAULT_MAX_JAR_SIZE,
+              config.getJarSplittingExcludes(),
+              cache == null ? null : cache.getAsFile().toPath(),
+              hardLinks);
+    }
+    NativeStandardStaging staging =
+        new NativeStandardStaging(
+            config.getSourceDirectory(),
+            config.getStagingDirectory(),
+            config.getRuntime(),
+            Boolean.TRUE.equals(config.getEnableJarClasses()),
+            hardLinks,
+            jarSplitter);
+    staging.setDescriptors(descriptors);
+    if (compiledJsps != null) {
+      staging.setCompiledJsps(
+          compiledJsps.getAsFile().toPath(),
+          Boolean.TRUE.equals(config.getDeleteJsps()),
+          Boolean.TRUE.equals(config.getDisableJarJsps()));
+    }
+    staging.stage();
+    return true;
+  }
+
+  private static AppEngineWebXmlProjectStageConfiguration toStageStandardConfiguration(
+      Parameters parameters) {
+    RegularFile dockerfile = parameters.getDockerfile().getOrNull();
+    return AppEngineWebXmlProjectStageConfiguration.builder()
+        .sourceDirectory(parameters.getSourceDirectory().get().getAsFile().toPath())
+        .stagingDirectory(parameters.getStagingDirectory().get().getAsFile().toPath())
+        .compileEncoding(parameters.getCompileEncoding().getOrNull())
+        .deleteJsps(parameters.getDeleteJsps().getOrNull())
+        .disableJarJsps(parameters.getDisableJarJsps().getOrNull())
+        .dockerfile(dockerfile == null ? null : dockerfile.getAsFile().toPath())
+        .disableUpdateCheck(parameters.getDisableUpdateCheck().getOrNull())
+        .enableJarClasses(parameters.getEnableJarClasses().getOrNull())
+        .enableJarSplitting(parameters.getEnableJarSplitting().getOrNull())
+        .enableQuickstart(parameters.getEnableQuickstart().getOrNull())
+        .jarSplittingExcludes(parameters.getJarSplittingExcludes().getOrNull())
+        .runtime(parameters.getRuntime().getOrNull())
+        .build();
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+}
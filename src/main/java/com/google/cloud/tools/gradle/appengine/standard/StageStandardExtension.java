@@ -17,15 +17,15 @@
 
 package com.google.cloud.tools.gradle.appengine.standard;
 
-import com.google.cloud.tools.appengine.configuration.AppEngineWebXmlProjectStageConfiguration;
-import com.google.cloud.tools.gradle.appengine.util.NullSafe;
 import java.io.File;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 
 /** Extension element to define Stage configurations for App Engine Standard Environments. */
 public class StageStandardExtension {
@@ -44,13 +44,17 @@ public class StageStandardExtension {
   private Boolean enableJarClasses;
   private Boolean disableJarJsps;
   private String runtime;
+  private Boolean incremental;
+  private Boolean nativeStaging;
+  private Boolean enableHardLinks;
 
   /** Constuctor. */
   public StageStandardExtension(Project project) {
     this.project = project;
   }
 
-  @InputDirectory
+  // a non incremental input would make every source change restage everything
+  @Internal("tracked by StageStandardTask.getSourceFiles")
   public File getSourceDirectory() {
     return sourceDirectory;
   }
@@ -70,6 +74,7 @@ public class StageStandardExtension {
 
   @InputFile
   @Optional
+  @PathSensitive(PathSensitivity.NONE)
   public File getDockerfile() {
     return dockerfile;
   }
@@ -168,20 +173,33 @@ public class StageStandardExtension {
     this.runtime = runtime;
   }
 
-  AppEngineWebXmlProjectStageConfiguration toStageStandardConfiguration() {
-    return AppEngineWebXmlProjectStageConfiguration.builder()
-        .sourceDirectory(sourceDirectory.toPath())
-        .stagingDirectory(stagingDirectory.toPath())
-        .compileEncoding(compileEncoding)
-        .deleteJsps(deleteJsps)
-        .disableJarJsps(disableJarJsps)
-        .dockerfile(NullSafe.convert(dockerfile, File::toPath))
-        .disableUpdateCheck(disableUpdateCheck)
-        .enableJarClasses(enableJarClasses)
-        .enableJarSplitting(enableJarSplitting)
-        .enableQuickstart(enableQuickstart)
-        .jarSplittingExcludes(jarSplittingExcludes)
-        .runtime(runtime)
-        .build();
+  @Input
+  @Optional
+  public Boolean getIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(Boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  @Input
+  @Optional
+  public Boolean getNativeStaging() {
+    return nativeStaging;
+  }
+
+  public void setNativeStaging(Boolean nativeStaging) {
+    this.nativeStaging = nativeStaging;
+  }
+
+  @Input
+  @Optional
+  public Boolean getEnableHardLinks() {
+    return enableHardLinks;
+  }
+
+  public void setEnableHardLinks(Boolean enableHardLinks) {
+    this.enableHardLinks = enableHardLinks;
   }
 }
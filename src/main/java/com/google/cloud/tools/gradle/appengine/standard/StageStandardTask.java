@@ -17,18 +17,53 @@
 
 package com.google.cloud.tools.gradle.appengine.standard;
 
-import com.google.cloud.tools.appengine.AppEngineException;
-import com.google.cloud.tools.appengine.operations.AppCfg;
-import com.google.cloud.tools.gradle.appengine.core.CloudSdkOperations;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
 
 /** Stage App Engine Standard Environment applications for deployment. */
+@CacheableTask
 public class StageStandardTask extends DefaultTask {
 
   private StageStandardExtension stageStandardExtension;
-  private AppCfg appCfg;
+  private File cloudSdkHome;
+  private File compiledJspDirectory;
+  private final Provider<RegularFile> reportFile = PhaseTimings.getReportFile(this);
+
+  // the same instance must be returned on every call for InputChanges to find it
+  private final FileCollection sourceFiles =
+      getProject()
+          .files(
+              (Callable<File>)
+                  () ->
+                      stageStandardExtension == null
+                          ? null
+                          : stageStandardExtension.getSourceDirectory());
+
+  private final File quickstartScanIndex =
+      new File(
+          getProject().getGradle().getGradleUserHomeDir(),
+          "caches/appengine-plugin/quickstart-scan-v1");
 
   @Nested
   public StageStandardExtension getStageStandardExtension() {
@@ -39,16 +74,98 @@ public class StageStandardTask extends DefaultTask {
     this.stageStandardExtension = stageStandardExtension;
   }
 
-  public void setAppCfg(AppCfg appCfg) {
-    this.appCfg = appCfg;
+  /** The content of the source directory, used to track changes for incremental staging. */
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getSourceFiles() {
+    return sourceFiles;
+  }
+
+  /** Where the phase timings of the task are written. */
+  @Internal
+  public Provider<RegularFile> getReportFile() {
+    return reportFile;
+  }
+
+  @Inject
+  public WorkerExecutor getWorkerExecutor() {
+    // injected by Gradle
+    throw new UnsupportedOperationException();
+  }
+
+  @Internal
+  public File getCloudSdkHome() {
+    return cloudSdkHome;
   }
 
-  /** Task entrypoint : stage the standard app. */
+  public void setCloudSdkHome(File cloudSdkHome) {
+    this.cloudSdkHome = cloudSdkHome;
+  }
+
+  /** JSPs precompiled by {@link CompileJspTask}, used by native staging. */
+  @Optional
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public File getCompiledJspDirectory() {
+    return compiledJspDirectory;
+  }
+
+  public void setCompiledJspDirectory(File compiledJspDirectory) {
+    this.compiledJspDirectory = compiledJspDirectory;
+  }
+
+  /** Task entrypoint : stage the standard app in a worker. */
   @TaskAction
-  public void stageAction() throws AppEngineException {
-    getProject().delete(stageStandardExtension.getStagingDirectory());
-    appCfg
-        .newStaging(CloudSdkOperations.getDefaultHandler(getLogger()))
-        .stageStandard(stageStandardExtension.toStageStandardConfiguration());
+  public void stageAction(InputChanges inputChanges) {
+    // Gradle only runs incrementally when the source files are the only inputs that changed, a
+    // change to any of the staging flags always results in a full staging.
+    boolean incremental =
+        Boolean.TRUE.equals(stageStandardExtension.getIncremental())
+            && inputChanges.isIncremental();
+    Map<String, Boolean> changes = new LinkedHashMap<>();
+    if (incremental) {
+      for (FileChange change : inputChanges.getFileChanges(sourceFiles)) {
+        changes.put(
+            change.getNormalizedPath().replace('\\', '/'),
+            change.getChangeType() != ChangeType.REMOVED);
+      }
+    }
+
+    StageStandardExtension ext = stageStandardExtension;
+    getWorkerExecutor()
+        .noIsolation()
+        .submit(
+            StageStandardAction.class,
+            parameters -> {
+              if (cloudSdkHome != null) {
+                parameters.getCloudSdkHome().set(cloudSdkHome);
+              }
+              parameters.getSourceDirectory().set(ext.getSourceDirectory());
+              parameters.getStagingDirectory().set(ext.getStagingDirectory());
+              if (ext.getDockerfile() != null) {
+                parameters.getDockerfile().set(ext.getDockerfile());
+              }
+              parameters.getEnableQuickstart().set(ext.getEnableQuickstart());
+              parameters.getDisableUpdateCheck().set(ext.getDisableUpdateCheck());
+              parameters.getEnableJarSplitting().set(ext.getEnableJarSplitting());
+              parameters.getJarSplittingExcludes().set(ext.getJarSplittingExcludes());
+              parameters.getCompileEncoding().set(ext.getCompileEncoding());
+              parameters.getDeleteJsps().set(ext.getDeleteJsps());
+              parameters.getEnableJarClasses().set(ext.getEnableJarClasses());
+              parameters.getDisableJarJsps().set(ext.getDisableJarJsps());
+              parameters.getRuntime().set(ext.getRuntime());
+              if (compiledJspDirectory != null) {
+                parameters.getCompiledJspDirectory().set(compiledJspDirectory);
+              }
+              parameters.getNativeStaging().set(Boolean.TRUE.equals(ext.getNativeStaging()));
+              parameters.getEnableHardLinks().set(Boolean.TRUE.equals(ext.getEnableHardLinks()));
+              parameters.getQuickstartScanIndex().set(quickstartScanIndex);
+              parameters.getJarSplittingCache().set(new File(getTemporaryDir(), "jar-splitting"));
+              parameters.getIncremental().set(incremental);
+              parameters.getChanges().set(changes);
+              parameters.getReportFile().set(reportFile);
+              parameters.getTaskPath().set(getPath());
+            });
   }
 }
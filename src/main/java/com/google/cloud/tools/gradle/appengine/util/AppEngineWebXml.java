@@ -17,46 +17,278 @@
 
 package com.google.cloud.tools.gradle.appengine.util;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.gradle.api.GradleException;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 /**
  * Simple parser for appengine-web.xml, this should ideally not exist, but we need it to correctly
  * error when vm=false and the user is using java8 as the target platform.
+ *
+ * <p>The file is read in a single streaming pass that only keeps the top level elements and their
+ * children. A {@link ParseCache} shares parsed files by content hash for the duration of a single
+ * staging, which reads the descriptor from several places.
  */
 public class AppEngineWebXml {
 
-  private final Document document;
+  private static final String ROOT_ELEMENT = "appengine-web-app";
+
+  private final String rootName;
+  private final Map<String, XmlElement> elements;
+
+  private AppEngineWebXml(String rootName, Map<String, XmlElement> elements) {
+    this.rootName = rootName;
+    this.elements = elements;
+  }
 
-  private AppEngineWebXml(File appengineWebXml) {
+  /** Parse an appengine-web.xml. */
+  public static AppEngineWebXml parse(File appengineWebXml) {
     try {
-      document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(appengineWebXml);
-    } catch (SAXException | IOException | ParserConfigurationException e) {
+      return parse(Files.readAllBytes(appengineWebXml.toPath()));
+    } catch (IOException | XMLStreamException e) {
       throw new GradleException("Failed to parse appengine-web.xml", e);
     }
   }
 
-  public static AppEngineWebXml parse(File appengineWebXml) {
-    return new AppEngineWebXml(appengineWebXml);
+  /**
+   * Parsed appengine-web.xml files, shared by content. Meant for a single staging, not for sharing
+   * across threads or builds.
+   */
+  public static class ParseCache {
+    private final Map<HashCode, AppEngineWebXml> parsed = new HashMap<>();
+
+    /** Parse an appengine-web.xml, or reuse the result of parsing a file with the same content. */
+    public AppEngineWebXml parse(File appengineWebXml) {
+      try {
+        byte[] content = Files.readAllBytes(appengineWebXml.toPath());
+        HashCode hash = Hashing.sha256().hashBytes(content);
+        AppEngineWebXml descriptor = parsed.get(hash);
+        if (descriptor == null) {
+          descriptor = AppEngineWebXml.parse(content);
+          parsed.put(hash, descriptor);
+        }
+        return descriptor;
+      } catch (IOException | XMLStreamException e) {
+        throw new GradleException("Failed to parse appengine-web.xml", e);
+      }
+    }
+  }
+
+  private static AppEngineWebXml parse(byte[] content) throws XMLStreamException {
+    // factories are not guaranteed to be thread safe, and workers may parse concurrently
+    XMLStreamReader reader =
+        createXmlInputFactory().createXMLStreamReader(new ByteArrayInputStream(content));
+    try {
+      String rootName = null;
+      Map<String, XmlElement> elements = new LinkedHashMap<>();
+      // elements below the children of top level elements only contribute their text
+      XmlElement element = null;
+      XmlElement child = null;
+      int depth = 0;
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (depth == 1) {
+            rootName = reader.getLocalName();
+          } else if (depth == 2) {
+            element = new XmlElement(reader);
+            // like the DOM lookups this replaces, the first of repeated elements wins
+            elements.putIfAbsent(element.name, element);
+          } else if (depth == 3) {
+            child = new XmlElement(reader);
+            element.children.add(child);
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        } else if (event == XMLStreamConstants.CHARACTERS
+            || event == XMLStreamConstants.CDATA
+            || event == XMLStreamConstants.SPACE) {
+          if (depth >= 2) {
+            element.text.append(reader.getText());
+          }
+          if (depth >= 3) {
+            child.text.append(reader.getText());
+          }
+        }
+      }
+      return new AppEngineWebXml(rootName, Collections.unmodifiableMap(elements));
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /** Check that the root element is {@code <appengine-web-app>}. */
+  public boolean isAppEngineWebApp() {
+    return ROOT_ELEMENT.equals(rootName);
   }
 
   /** Check if vm = true. */
   public boolean isVm() {
-    try {
-      XPath xpath = XPathFactory.newInstance().newXPath();
-      String expression = "/appengine-web-app/vm/text()='true'";
-      return (Boolean) xpath.evaluate(expression, document, XPathConstants.BOOLEAN);
-    } catch (XPathExpressionException e) {
-      throw new GradleException("XPath evaluation failed on appengine-web.xml", e);
+    return "true".equals(getValue("vm"));
+  }
+
+  /** The runtime, or null if not set. */
+  public String getRuntime() {
+    return getValue("runtime");
+  }
+
+  /** The service, falling back to the deprecated module, or null if neither is set. */
+  public String getService() {
+    String service = getValue("service");
+    return service != null ? service : getValue("module");
+  }
+
+  /** The threadsafe flag, or null if not set. */
+  public Boolean getThreadsafe() {
+    String threadsafe = getValue("threadsafe");
+    return threadsafe == null ? null : Boolean.valueOf(threadsafe);
+  }
+
+  /** The instance class, or null if not set. */
+  public String getInstanceClass() {
+    return getValue("instance-class");
+  }
+
+  /**
+   * The scaling element in use, one of {@code automatic-scaling}, {@code basic-scaling} or {@code
+   * manual-scaling}, or null if none is set.
+   */
+  public String getScalingType() {
+    for (String scaling :
+        ImmutableList.of("automatic-scaling", "basic-scaling", "manual-scaling")) {
+      if (elements.containsKey(scaling)) {
+        return scaling;
+      }
+    }
+    return null;
+  }
+
+  /** The settings of the scaling element in use, empty if none is set. */
+  public Map<String, String> getScaling() {
+    String scalingType = getScalingType();
+    return scalingType == null ? ImmutableMap.of() : getChildValues(scalingType);
+  }
+
+  /** The paths of the {@code <include>} children of static-files. */
+  public List<String> getStaticFileIncludes() {
+    return getChildAttributes("static-files", "include", "path");
+  }
+
+  /** The paths of the {@code <exclude>} children of static-files. */
+  public List<String> getStaticFileExcludes() {
+    return getChildAttributes("static-files", "exclude", "path");
+  }
+
+  /** Names of all top level elements. */
+  public Set<String> getElementNames() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(elements.keySet()));
+  }
+
+  /** The trimmed text of a top level element, or null if it is not present. */
+  public String getValue(String elementName) {
+    XmlElement element = elements.get(elementName);
+    return element == null ? null : element.text.toString().trim();
+  }
+
+  /**
+   * The trimmed text of every child of a top level element, or null if the element is not present.
+   * Grandchildren are not inspected, their text is part of their parent's value.
+   */
+  public Map<String, String> getChildValues(String elementName) {
+    XmlElement element = elements.get(elementName);
+    if (element == null) {
+      return null;
+    }
+    Map<String, String> values = new LinkedHashMap<>();
+    for (XmlElement child : element.children) {
+      values.put(child.name, child.text.toString().trim());
+    }
+    return values;
+  }
+
+  /** The trimmed text of every child of a top level element, for repeated children. */
+  public List<String> getChildValueList(String elementName) {
+    List<String> values = new ArrayList<>();
+    XmlElement element = elements.get(elementName);
+    if (element != null) {
+      for (XmlElement child : element.children) {
+        values.add(child.text.toString().trim());
+      }
+    }
+    return values;
+  }
+
+  /** Environment variables declared in env-variables, in declaration order. */
+  public Map<String, String> getEnvVariables() {
+    Map<String, String> variables = new LinkedHashMap<>();
+    XmlElement envVariables = elements.get("env-variables");
+    if (envVariables != null) {
+      for (XmlElement envVar : envVariables.children) {
+        variables.put(envVar.getAttribute("name"), envVar.getAttribute("value"));
+      }
+    }
+    return variables;
+  }
+
+  private List<String> getChildAttributes(
+      String elementName, String childName, String attributeName) {
+    List<String> values = new ArrayList<>();
+    XmlElement element = elements.get(elementName);
+    if (element != null) {
+      for (XmlElement child : element.children) {
+        if (child.name.equals(childName)) {
+          values.add(child.getAttribute(attributeName));
+        }
+      }
+    }
+    return values;
+  }
+
+  /** A top level element or one of its children, with the text of all its descendants. */
+  private static class XmlElement {
+    private final String name;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final StringBuilder text = new StringBuilder();
+    private final List<XmlElement> children = new ArrayList<>();
+
+    XmlElement(XMLStreamReader reader) {
+      name = reader.getLocalName();
+      for (int i = 0; i < reader.getAttributeCount(); i++) {
+        attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+      }
+    }
+
+    /** The attribute value, or an empty string if not present, like DOM's getAttribute. */
+    String getAttribute(String attributeName) {
+      String value = attributes.get(attributeName);
+      return value == null ? "" : value;
     }
   }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util;
+
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
+import com.google.gson.stream.JsonWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.gradle.api.Task;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Phase timings of a task run, written as a JSON report to {@code
+ * build/reports/appengine/<task>.json}. Phases are either timed explicitly, or parsed from the
+ * output of {@code gcloud app deploy}, whose progress lines mark the end of each phase: the local
+ * file hashing, the upload, the remote build and the traffic migration.
+ *
+ * <p>Timings are thread safe, and can be scoped to tell apart phases of services deployed in
+ * parallel.
+ */
+public class PhaseTimings {
+
+  private static final Pattern UPLOAD_START = Pattern.compile("^Uploading \\d+ files? to .*");
+
+  private final Report report;
+  private final String scope;
+  private long lastMark;
+
+  public PhaseTimings() {
+    this(new Report(), null);
+  }
+
+  private PhaseTimings(Report report, String scope) {
+    this.report = report;
+    this.scope = scope;
+    this.lastMark = System.nanoTime();
+  }
+
+  /** Timings sharing this report, with phases recorded under a scope. */
+  public PhaseTimings forScope(String scope) {
+    return new PhaseTimings(report, scope);
+  }
+
+  /** Start a phase, that ends when closed. */
+  public Phase start(String name) {
+    return new Phase(name, System.nanoTime());
+  }
+
+  /** Record a phase that started at the previous mark, or when output parsing started. */
+  public synchronized void mark(String name) {
+    long now = System.nanoTime();
+    report.add(scope, name, lastMark, now);
+    lastMark = now;
+  }
+
+  /** Start the next marked phase now, leaving out the time since the previous mark. */
+  public synchronized void resetMark() {
+    lastMark = System.nanoTime();
+  }
+
+  /** Add a value describing the run, like the staging mode used. */
+  public void setAttribute(String name, String value) {
+    synchronized (report) {
+      report.attributes.put(name, value);
+    }
+  }
+
+  /**
+   * A listener recording phases from the output of {@code gcloud app deploy}, the first phase
+   * starts when the listener is created.
+   */
+  public ProcessOutputLineListener newGcloudDeployListener() {
+    resetMark();
+    return line -> {
+      String trimmed = line.trim();
+      if (trimmed.startsWith("Beginning deployment of service")) {
+        mark("prepare");
+      } else if (UPLOAD_START.matcher(trimmed).matches()) {
+        mark("hashing");
+      } else if (trimmed.startsWith("File upload done")) {
+        mark("upload");
+      } else if (trimmed.startsWith("Updating service [")) {
+        mark("build");
+      } else if (trimmed.startsWith("Setting traffic split for service")) {
+        mark("promote");
+      } else if (trimmed.startsWith("Updating config [")) {
+        mark("config");
+      }
+    };
+  }
+
+  /**
+   * The report file of a task, to get when the task is created: the project must not be accessed
+   * while tasks run.
+   */
+  public static Provider<RegularFile> getReportFile(Task task) {
+    return task.getProject()
+        .getLayout()
+        .getBuildDirectory()
+        .file("reports/appengine/" + task.getName() + ".json");
+  }
+
+  /** Write the report of a task run, replacing the report of the previous run. */
+  public void writeReport(File reportFile, String taskPath, boolean success) throws IOException {
+    Path reportPath = reportFile.toPath();
+    Files.createDirectories(reportPath.getParent());
+    Path temp = reportPath.resolveSibling(reportPath.getFileName() + ".tmp");
+    synchronized (report) {
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+          JsonWriter json = new JsonWriter(writer)) {
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("task").value(taskPath);
+        json.name("startTime").value(Instant.ofEpochMilli(report.startMillis).toString());
+        json.name("durationMillis").value(toMillis(System.nanoTime() - report.startNanos));
+        json.name("success").value(success);
+        json.name("attributes").beginObject();
+        for (Map.Entry<String, String> attribute : report.attributes.entrySet()) {
+          json.name(attribute.getKey()).value(attribute.getValue());
+        }
+        json.endObject();
+        json.name("phases").beginArray();
+        for (PhaseRecord phase : report.phases) {
+          json.beginObject();
+          json.name("name").value(phase.name);
+          if (phase.scope != null) {
+            json.name("scope").value(phase.scope);
+          }
+          json.name("startMillis").value(toMillis(phase.startNanos - report.startNanos));
+          json.name("durationMillis").value(toMillis(phase.endNanos - phase.startNanos));
+          json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+      }
+    }
+    Files.move(temp, reportPath, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static long toMillis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /** A phase being timed. */
+  public class Phase implements AutoCloseable {
+    private final String name;
+    private final long startNanos;
+
+    private Phase(String name, long startNanos) {
+      this.name = name;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close() {
+      report.add(scope, name, startNanos, System.nanoTime());
+    }
+  }
+
+  private static class Report {
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final List<PhaseRecord> phases = new ArrayList<>();
+
+    synchronized void add(String scope, String name, long startNanos, long endNanos) {
+      phases.add(new PhaseRecord(scope, name, startNanos, endNanos));
+    }
+  }
+
+  private static class PhaseRecord {
+    private final String scope;
+    private final String name;
+    private final long startNanos;
+    private final long endNanos;
+
+    PhaseRecord(String scope, String name, long startNanos, long endNanos) {
+      this.scope = scope;
+      this.name = name;
+      this.startNanos = startNanos;
+      this.endNanos = endNanos;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Hard links staged files to the files they were staged from, so an app is not held on disk twice.
+ *
+ * <p>A linked file shares its content with the source, so sources must be replaced (deleted and
+ * written again) rather than modified in place. Where links are not supported (different file
+ * stores, file systems without hard links) files are copied instead.
+ */
+public class FileLinks {
+
+  private FileLinks() {}
+
+  /**
+   * Hard link {@code target} to {@code source}, replacing any existing target.
+   *
+   * @return true if a link was created, false if the file had to be copied
+   */
+  public static boolean linkOrCopy(Path source, Path target) throws IOException {
+    Files.deleteIfExists(target);
+    try {
+      Files.createLink(target, source);
+      return true;
+    } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+      Files.copy(
+          source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+      return false;
+    }
+  }
+
+  /**
+   * Replace {@code target} with a hard link to {@code source} if both are regular files with the
+   * same content.
+   *
+   * @return true if {@code target} is now a link to {@code source}
+   */
+  public static boolean linkIfIdentical(Path source, Path target) throws IOException {
+    if (!Files.isRegularFile(source) || !Files.isRegularFile(target)) {
+      return false;
+    }
+    if (Files.isSameFile(source, target)) {
+      return true;
+    }
+    if (Files.size(source) != Files.size(target) || !contentEquals(source, target)) {
+      return false;
+    }
+
+    // link next to the target first, so the target is never missing if linking fails
+    Path link = target.resolveSibling(target.getFileName() + ".link");
+    Files.deleteIfExists(link);
+    try {
+      Files.createLink(link, source);
+    } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+      return false;
+    }
+    Files.move(link, target, StandardCopyOption.REPLACE_EXISTING);
+    return true;
+  }
+
+  /**
+   * Replace every file under {@code targetDirectory} that is identical to the file at the same
+   * relative path under {@code sourceDirectory} with a hard link to it.
+   *
+   * @return the number of files that are now links
+   */
+  public static int linkIdenticalFiles(Path sourceDirectory, Path targetDirectory)
+      throws IOException {
+    if (!Files.isDirectory(sourceDirectory) || !Files.isDirectory(targetDirectory)) {
+      return 0;
+    }
+    List<Path> targets;
+    try (Stream<Path> files = Files.walk(targetDirectory)) {
+      targets = files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    int linked = 0;
+    for (Path target : targets) {
+      Path source = sourceDirectory.resolve(targetDirectory.relativize(target).toString());
+      if (linkIfIdentical(source, target)) {
+        linked++;
+      }
+    }
+    return linked;
+  }
+
+  private static boolean contentEquals(Path first, Path second) throws IOException {
+    try (InputStream in1 = Files.newInputStream(first);
+        InputStream in2 = Files.newInputStream(second)) {
+      byte[] buffer1 = new byte[64 * 1024];
+      byte[] buffer2 = new byte[64 * 1024];
+      while (true) {
+        int read1 = readFully(in1, buffer1);
+        int read2 = readFully(in2, buffer2);
+        if (read1 != read2) {
+          return false;
+        }
+        if (read1 == 0) {
+          return true;
+        }
+        for (int i = 0; i < read1; i++) {
+          if (buffer1[i] != buffer2[i]) {
+            return false;
+          }
+        }
+      }
+    }
+  }
+
+  private static int readFully(InputStream in, byte[] buffer) throws IOException {
+    int total = 0;
+    while (total < buffer.length) {
+      int read = in.read(buffer, total, buffer.length - total);
+      if (read == -1) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.appyaml;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalAppYamlStagingTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path extra1;
+  private Path extra2;
+  private Path staged;
+  private Path artifact;
+
+  @Before
+  public void setUp() throws IOException {
+    extra1 = tmpDir.newFolder("extra1").toPath();
+    extra2 = tmpDir.newFolder("extra2").toPath();
+    staged = tmpDir.newFolder("staged").toPath();
+    artifact = tmpDir.getRoot().toPath().resolve("app.jar");
+    writeJar(artifact, null);
+  }
+
+  @Test
+  public void testStage_extraFiles() throws IOException {
+    write(extra1, "css/site.css", "new");
+    write(extra1, "shared.txt", "first");
+    write(extra2, "shared.txt", "second");
+    write(staged, "css/site.css", "old");
+    write(staged, "shared.txt", "stale");
+    write(staged, "removed.txt", "gone");
+
+    IncrementalAppYamlStaging staging = newStaging();
+    Assert.assertTrue(
+        staging.stage(
+            Collections.emptyMap(),
+            ImmutableList.of("css/site.css", "shared.txt", "removed.txt")));
+
+    Assert.assertEquals("new", read(staged, "css/site.css"));
+    // the last directory wins, like a full staging
+    Assert.assertEquals("second", read(staged, "shared.txt"));
+    Assert.assertFalse(Files.exists(staged.resolve("removed.txt")));
+    Assert.assertEquals(2, staging.getCopiedCount());
+    Assert.assertEquals(1, staging.getDeletedCount());
+  }
+
+  @Test
+  public void testStage_removedFileStillInOtherDirectory() throws IOException {
+    write(extra1, "shared.txt", "first");
+    write(staged, "shared.txt", "second");
+
+    Assert.assertTrue(
+        newStaging().stage(Collections.emptyMap(), ImmutableList.of("shared.txt")));
+
+    Assert.assertEquals("first", read(staged, "shared.txt"));
+  }
+
+  @Test
+  public void testStage_artifact() throws IOException {
+    write(staged, "old-app.jar", "old");
+
+    Assert.assertTrue(
+        newStaging()
+            .stage(
+                ImmutableMap.of("old-app.jar", false, "app.jar", true), Collections.emptyList()));
+
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("app.jar")));
+    Assert.assertFalse(Files.exists(staged.resolve("old-app.jar")));
+  }
+
+  @Test
+  public void testStage_artifactWithClassPath() throws IOException {
+    writeJar(artifact, "lib/dep.jar");
+
+    Assert.assertFalse(
+        newStaging().stage(ImmutableMap.of("app.jar", true), Collections.emptyList()));
+    Assert.assertFalse(Files.exists(staged.resolve("app.jar")));
+  }
+
+  @Test
+  public void testStage_hardLinksExtraFilesOnly() throws IOException {
+    write(extra1, "css/site.css", "new");
+
+    Assert.assertTrue(
+        new IncrementalAppYamlStaging(artifact, ImmutableList.of(extra1, extra2), staged, true)
+            .stage(ImmutableMap.of("app.jar", true), ImmutableList.of("css/site.css")));
+
+    // the jar task rewrites the artifact in place, which would change a linked staged copy
+    Assert.assertFalse(Files.isSameFile(artifact, staged.resolve("app.jar")));
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("css/site.css")));
+  }
+
+  @Test
+  public void testStage_appYamlInExtraFiles() throws IOException {
+    Assert.assertFalse(newStaging().stage(Collections.emptyMap(), ImmutableList.of("app.yaml")));
+  }
+
+  private IncrementalAppYamlStaging newStaging() {
+    return new IncrementalAppYamlStaging(artifact, ImmutableList.of(extra1, extra2), staged, false);
+  }
+
+  private static void writeJar(Path jar, String classPath) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (classPath != null) {
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+    }
+    try (OutputStream out = Files.newOutputStream(jar);
+        JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+      // manifest only
+    }
+  }
+
+  private static void write(Path root, String path, String content) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path root, String path) throws IOException {
+    return new String(Files.readAllBytes(root.resolve(path)), StandardCharsets.UTF_8);
+  }
+}
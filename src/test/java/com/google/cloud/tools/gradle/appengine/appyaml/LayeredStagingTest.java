@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.appyaml;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.gradle.api.GradleException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LayeredStagingTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path staged;
+  private Path artifact;
+
+  @Before
+  public void setUp() throws IOException {
+    staged = tmpDir.newFolder("staged").toPath();
+    artifact = tmpDir.getRoot().toPath().resolve("app.jar");
+    writeJar(artifact, "com.example.Main");
+    Files.copy(artifact, staged.resolve("app.jar"));
+  }
+
+  @Test
+  public void testStage() throws IOException {
+    Path dep1 = writeJar(tmpDir.newFolder("a").toPath().resolve("core-1.0.jar"), null);
+    Path dep2 = writeJar(tmpDir.newFolder("b").toPath().resolve("core-1.0.jar"), null);
+    Path classes = tmpDir.newFolder("classes").toPath();
+    write(staged, "app.yaml", "runtime: java11");
+
+    new LayeredStaging(artifact, ImmutableList.of(dep1, dep2, classes), staged, false).stage();
+
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("lib/core-1.0.jar")));
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("lib/core-1.0-1.jar")));
+    try (JarFile jar = new JarFile(staged.resolve("app.jar").toFile())) {
+      Attributes attributes = jar.getManifest().getMainAttributes();
+      Assert.assertEquals(
+          "lib/core-1.0.jar lib/core-1.0-1.jar", attributes.getValue(Attributes.Name.CLASS_PATH));
+      Assert.assertEquals("com.example.Main", attributes.getValue(Attributes.Name.MAIN_CLASS));
+      Assert.assertNotNull(jar.getEntry("com/example/Main.class"));
+    }
+    Assert.assertEquals(
+        "runtime: java11\nentrypoint: java -jar app.jar\n", read(staged, "app.yaml"));
+  }
+
+  @Test
+  public void testStage_keepsEntrypoint() throws IOException {
+    write(staged, "app.yaml", "runtime: java11\nentrypoint: java -Xmx64m -jar app.jar\n");
+
+    new LayeredStaging(artifact, Collections.emptyList(), staged, true).stage();
+
+    Assert.assertEquals(
+        "runtime: java11\nentrypoint: java -Xmx64m -jar app.jar\n", read(staged, "app.yaml"));
+    try (JarFile jar = new JarFile(staged.resolve("app.jar").toFile())) {
+      Assert.assertNull(jar.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+    }
+  }
+
+  @Test
+  public void testStage_doesNotWriteThroughHardLinks() throws IOException {
+    Files.delete(staged.resolve("app.jar"));
+    Files.createLink(staged.resolve("app.jar"), artifact);
+    byte[] original = Files.readAllBytes(artifact);
+
+    new LayeredStaging(artifact, Collections.emptyList(), staged, true).stage();
+
+    Assert.assertArrayEquals(original, Files.readAllBytes(artifact));
+  }
+
+  @Test
+  public void testStage_reproducible() throws IOException {
+    Path otherStaged = tmpDir.newFolder("otherStaged").toPath();
+    Files.copy(artifact, otherStaged.resolve("app.jar"));
+
+    new LayeredStaging(artifact, Collections.emptyList(), staged, false).stage();
+    new LayeredStaging(artifact, Collections.emptyList(), otherStaged, false).stage();
+
+    Assert.assertArrayEquals(
+        Files.readAllBytes(staged.resolve("app.jar")),
+        Files.readAllBytes(otherStaged.resolve("app.jar")));
+    try (JarFile jar = new JarFile(staged.resolve("app.jar").toFile())) {
+      // 1980-01-01, give or take the time zone
+      long time = jar.getEntry(JarFile.MANIFEST_NAME).getTime();
+      Assert.assertTrue(Math.abs(time - 315532800000L) <= 24 * 3600 * 1000L);
+    }
+  }
+
+  @Test
+  public void testStage_rejectsWar() throws IOException {
+    Path war = tmpDir.getRoot().toPath().resolve("app.war");
+    Files.copy(artifact, war);
+
+    try {
+      new LayeredStaging(war, Collections.emptyList(), staged, false).stage();
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(ex.getMessage().contains("requires a jar artifact"));
+    }
+  }
+
+  @Test
+  public void testStage_rejectsFatJar() throws IOException {
+    Path fatJar = tmpDir.getRoot().toPath().resolve("fat.jar");
+    try (OutputStream out = Files.newOutputStream(fatJar);
+        JarOutputStream jarOut = new JarOutputStream(out)) {
+      jarOut.putNextEntry(new JarEntry("BOOT-INF/lib/core-1.0.jar"));
+      jarOut.closeEntry();
+    }
+
+    try {
+      new LayeredStaging(fatJar, Collections.emptyList(), staged, false).stage();
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(ex.getMessage().contains("bundles its dependencies"));
+    }
+    Assert.assertFalse(Files.exists(staged.resolve("lib")));
+  }
+
+  @Test
+  public void testStage_requiresMainClassForEntrypoint() throws IOException {
+    Path library = writeJar(tmpDir.getRoot().toPath().resolve("library.jar"), null);
+    write(staged, "app.yaml", "runtime: java11\n");
+
+    try {
+      new LayeredStaging(library, Collections.emptyList(), staged, false).stage();
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(ex.getMessage().contains("the jar manifest has no Main-Class"));
+    }
+    Assert.assertEquals("runtime: java11\n", read(staged, "app.yaml"));
+    Assert.assertFalse(Files.exists(staged.resolve("lib")));
+  }
+
+  @Test
+  public void testStage_mainClassNotRequiredWithEntrypoint() throws IOException {
+    Path library = writeJar(tmpDir.getRoot().toPath().resolve("library.jar"), null);
+    Files.copy(library, staged.resolve("library.jar"));
+    write(staged, "app.yaml", "runtime: java11\nentrypoint: java -cp library.jar Main\n");
+
+    new LayeredStaging(library, Collections.emptyList(), staged, false).stage();
+
+    Assert.assertEquals(
+        "runtime: java11\nentrypoint: java -cp library.jar Main\n", read(staged, "app.yaml"));
+  }
+
+  private static Path writeJar(Path jar, String mainClass) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (mainClass != null) {
+      manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "fat.jar");
+    }
+    try (OutputStream out = Files.newOutputStream(jar);
+        JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+      jarOut.putNextEntry(new JarEntry("com/example/Main.class"));
+      jarOut.write(new byte[] {1, 2, 3});
+      jarOut.closeEntry();
+    }
+    return jar;
+  }
+
+  private static void write(Path root, String path, String content) throws IOException {
+    Files.write(root.resolve(path), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path root, String path) throws IOException {
+    return new String(Files.readAllBytes(root.resolve(path)), StandardCharsets.UTF_8);
+  }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.gradle.api.Project;
@@ -117,6 +118,22 @@ public class StageAppYamlExtensionTest {
     Assert.assertEquals(0, generatedConfig.getExtraFilesDirectory().size());
   }
 
+  @Test
+  public void testGetExtraFilesDirectoriesAsInputFiles() {
+    StageAppYamlExtension extension = new StageAppYamlExtension(testContextProject);
+    Assert.assertNull(extension.getExtraFilesDirectoriesAsInputFiles());
+
+    extension.setExtraFilesDirectories(extraFilesDirectories);
+
+    // a flat collection of the directories, the same instance on every call
+    Assert.assertSame(
+        extension.getExtraFilesDirectoriesAsInputFiles(),
+        extension.getExtraFilesDirectoriesAsInputFiles());
+    Assert.assertEquals(
+        new LinkedHashSet<>(extraFilesDirectories),
+        extension.getExtraFilesDirectoriesAsInputFiles().getFiles());
+  }
+
   @Test
   public void testGetExtraFilesDirectoriesAsInputFiles_indirectFunctional() throws IOException {
     TestProject testProject =
@@ -141,5 +158,13 @@ public class StageAppYamlExtensionTest {
     BuildResult runWithNewFileAdded = testProject.applyGradleRunner("appengineStage");
     Assert.assertEquals(
         TaskOutcome.SUCCESS, runWithNewFileAdded.task(":appengineStage").getOutcome());
+
+    Files.write(
+        testProject.getProjectRoot().toPath().resolve("src/main/extras/test2.txt"),
+        "changed".getBytes(Charsets.UTF_8));
+
+    BuildResult runWithFileChanged = testProject.applyGradleRunner("appengineStage");
+    Assert.assertEquals(
+        TaskOutcome.SUCCESS, runWithFileChanged.task(":appengineStage").getOutcome());
   }
 }
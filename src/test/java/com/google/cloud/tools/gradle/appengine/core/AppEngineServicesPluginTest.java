@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.cloud.tools.gradle.appengine.appyaml.AppEngineAppYamlPlugin;
+import com.google.cloud.tools.gradle.appengine.standard.AppEngineStandardPlugin;
+import java.io.IOException;
+import java.util.Arrays;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.WarPlugin;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AppEngineServicesPluginTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testApply_collectsServicesOfAllProjects() throws IOException {
+    Project root = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder("root")).build();
+    root.getPluginManager().apply(AppEngineServicesPlugin.class);
+
+    // applied before and after the root project plugin
+    Project frontend = ProjectBuilder.builder().withName("frontend").withParent(root).build();
+    frontend.getPluginManager().apply(JavaPlugin.class);
+    frontend.getPluginManager().apply(WarPlugin.class);
+    frontend.getPluginManager().apply(AppEngineStandardPlugin.class);
+    Project backend = ProjectBuilder.builder().withName("backend").withParent(root).build();
+    backend.getPluginManager().apply(JavaPlugin.class);
+    backend.getPluginManager().apply(AppEngineAppYamlPlugin.class);
+    ProjectBuilder.builder().withName("library").withParent(root).build();
+
+    DeployServicesTask task =
+        (DeployServicesTask)
+            root.getTasks().getByName(AppEngineCorePluginConfiguration.DEPLOY_SERVICES_TASK_NAME);
+    assertEquals(
+        Arrays.asList(
+            frontend.getTasks().getByName(AppEngineCorePluginConfiguration.DEPLOY_TASK_NAME),
+            backend.getTasks().getByName(AppEngineCorePluginConfiguration.DEPLOY_TASK_NAME)),
+        task.getDeployTasks());
+  }
+
+  @Test
+  public void testApply_appEnginePluginsDoNotChangeRootProject() throws IOException {
+    Project root = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder("root")).build();
+    Project service = ProjectBuilder.builder().withName("service").withParent(root).build();
+    service.getPluginManager().apply(JavaPlugin.class);
+    service.getPluginManager().apply(AppEngineAppYamlPlugin.class);
+
+    assertNull(
+        root.getTasks().findByName(AppEngineCorePluginConfiguration.DEPLOY_SERVICES_TASK_NAME));
+  }
+}
@@ -25,12 +25,18 @@ import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkNotFoundExce
 import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkOutOfDateException;
 import com.google.cloud.tools.appengine.operations.cloudsdk.CloudSdkVersionFileException;
 import com.google.cloud.tools.appengine.operations.cloudsdk.serialization.CloudSdkVersion;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -39,6 +45,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class CheckCloudSdkTaskTest {
 
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
   @Mock private CloudSdk sdk;
 
   private CheckCloudSdkTask checkCloudSdkTask;
@@ -112,4 +120,47 @@ public class CheckCloudSdkTaskTest {
     Mockito.verify(sdk, Mockito.never()).validateAppEngineJavaComponents();
     Mockito.verifyNoMoreInteractions(sdk);
   }
+
+  private File newCloudSdkHome() throws IOException {
+    File cloudSdkHome = tmpDir.newFolder("google-cloud-sdk");
+    Files.write(
+        cloudSdkHome.toPath().resolve("VERSION"), "192.0.0".getBytes(StandardCharsets.UTF_8));
+    File installDir = new File(cloudSdkHome, ".install");
+    Assert.assertTrue(installDir.mkdir());
+    Files.write(
+        installDir.toPath().resolve("app-engine-java.manifest"),
+        "platform/google_appengine/\n".getBytes(StandardCharsets.UTF_8));
+    return cloudSdkHome;
+  }
+
+  @Test
+  public void testCheckCloudSdkAction_writesMarker() throws Exception {
+    checkCloudSdkTask.setVersion("192.0.0");
+    checkCloudSdkTask.setCloudSdkHome(newCloudSdkHome());
+    when(sdk.getVersion()).thenReturn(new CloudSdkVersion("192.0.0"));
+
+    checkCloudSdkTask.checkCloudSdkAction();
+
+    Assert.assertTrue(checkCloudSdkTask.getMarkerFile().exists());
+    Assert.assertEquals(2, checkCloudSdkTask.getCloudSdkFiles().getFiles().size());
+  }
+
+  @Test
+  public void testCheckCloudSdkAction_sdkChanged() throws Exception {
+    File cloudSdkHome = newCloudSdkHome();
+    checkCloudSdkTask.setVersion("192.0.0");
+    checkCloudSdkTask.setCloudSdkHome(cloudSdkHome);
+    when(sdk.getVersion()).thenReturn(new CloudSdkVersion("192.0.0"));
+
+    checkCloudSdkTask.checkCloudSdkAction();
+    Files.write(
+        cloudSdkHome.toPath().resolve(".install").resolve("beta.manifest"),
+        "lib/surface/beta/\n".getBytes(StandardCharsets.UTF_8));
+
+    // a new component changes the inputs, so the task runs again
+    Assert.assertTrue(
+        checkCloudSdkTask
+            .getCloudSdkFiles()
+            .contains(new File(cloudSdkHome, ".install/beta.manifest")));
+  }
 }
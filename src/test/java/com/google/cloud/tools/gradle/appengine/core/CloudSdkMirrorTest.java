@@ -0,0 +1,323 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.gradle.api.GradleException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloudSdkMirrorTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private final StringBuilder console = new StringBuilder();
+  private final Map<String, String> sdkFiles = new LinkedHashMap<>();
+  private Path sdkHome;
+
+  @Before
+  public void setUp() throws IOException {
+    sdkHome = tmpDir.newFolder("LATEST").toPath().resolve("google-cloud-sdk");
+    sdkFiles.put("google-cloud-sdk/VERSION", "470.0.0\n");
+    sdkFiles.put("google-cloud-sdk/bin/gcloud", "#!/bin/sh\n");
+    sdkFiles.put("google-cloud-sdk/lib/gcloud.py", "print('gcloud')\n");
+  }
+
+  private Path writeTarGz(Map<String, String> files) throws IOException {
+    Path archive = tmpDir.getRoot().toPath().resolve("google-cloud-sdk.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      for (Map.Entry<String, String> file : files.entrySet()) {
+        byte[] content = file.getValue().getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(file.getKey());
+        entry.setSize(content.length);
+        entry.setMode(file.getKey().contains("/bin/") ? 0755 : 0644);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+      }
+    }
+    return archive;
+  }
+
+  private Path writeZip(Map<String, String> files) throws IOException {
+    Path archive = tmpDir.getRoot().toPath().resolve("google-cloud-sdk.zip");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+      for (Map.Entry<String, String> file : files.entrySet()) {
+        zip.putNextEntry(new ZipEntry(file.getKey()));
+        zip.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return archive;
+  }
+
+  private static String sha256(Path file) throws IOException {
+    return Hashing.sha256().hashBytes(Files.readAllBytes(file)).toString();
+  }
+
+  @Test
+  public void testInstallSdk_tarGz() throws IOException {
+    Path archive = writeTarGz(sdkFiles);
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), sha256(archive), null);
+    Assert.assertFalse(mirror.isInstalled(sdkHome));
+
+    mirror.installSdk(sdkHome, console::append);
+
+    Assert.assertEquals(
+        "470.0.0\n",
+        new String(Files.readAllBytes(sdkHome.resolve("VERSION")), StandardCharsets.UTF_8));
+    Assert.assertTrue(Files.isRegularFile(sdkHome.resolve("lib").resolve("gcloud.py")));
+    Assert.assertTrue(Files.isExecutable(sdkHome.resolve("bin").resolve("gcloud")));
+    Assert.assertTrue(mirror.isInstalled(sdkHome));
+    Assert.assertFalse(Files.exists(sdkHome.resolveSibling("google-cloud-sdk.extracting")));
+  }
+
+  @Test
+  public void testInstallSdk_zip() throws IOException {
+    Path archive = writeZip(sdkFiles);
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    mirror.installSdk(sdkHome, console::append);
+
+    Assert.assertTrue(Files.isRegularFile(sdkHome.resolve("VERSION")));
+    Assert.assertTrue(mirror.isInstalled(sdkHome));
+  }
+
+  @Test
+  public void testInstallSdk_checksumMismatch() throws IOException {
+    Path archive = writeTarGz(sdkFiles);
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), "0123456789abcdef", null);
+
+    try {
+      mirror.installSdk(sdkHome, console::append);
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(ex.getMessage().contains("does not match cloudSdkArchiveSha256"));
+    }
+    Assert.assertFalse(Files.exists(sdkHome));
+    Assert.assertFalse(Files.exists(sdkHome.resolveSibling("google-cloud-sdk.extracting")));
+  }
+
+  @Test
+  public void testInstallSdk_entryOutsideRoot() throws IOException {
+    sdkFiles.put("../escaped", "content");
+    Path archive = writeTarGz(sdkFiles);
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    try {
+      mirror.installSdk(sdkHome, console::append);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertEquals("Archive entry outside of the archive root: ../escaped", ex.getMessage());
+    }
+    Assert.assertFalse(Files.exists(sdkHome));
+  }
+
+  @Test
+  public void testInstallSdk_linkOutsideRoot() throws IOException {
+    Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    Path outside = tmpDir.newFolder("outside").toPath();
+    // a link out of the archive, then a file written through it
+    Path archive = tmpDir.getRoot().toPath().resolve("hostile.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/lib/escape", TarArchiveEntry.LF_SYMLINK);
+      link.setLinkName("../../../outside");
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+      byte[] content = "pwned".getBytes(StandardCharsets.UTF_8);
+      TarArchiveEntry file = new TarArchiveEntry("google-cloud-sdk/lib/escape/pwned");
+      file.setSize(content.length);
+      tar.putArchiveEntry(file);
+      tar.write(content);
+      tar.closeArchiveEntry();
+    }
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), "0123456789abcdef", null);
+
+    try {
+      mirror.installSdk(sdkHome, console::append);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertEquals(
+          "Archive link outside of the archive root: google-cloud-sdk/lib/escape -> "
+              + "../../../outside",
+          ex.getMessage());
+    }
+    Assert.assertFalse(Files.exists(outside.resolve("pwned")));
+    Assert.assertFalse(Files.exists(sdkHome));
+  }
+
+  @Test
+  public void testInstallSdk_absoluteLink() throws IOException {
+    Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    Path archive = tmpDir.getRoot().toPath().resolve("hostile.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/bin/gcloud", TarArchiveEntry.LF_SYMLINK);
+      link.setLinkName(tmpDir.getRoot().getAbsolutePath());
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+    }
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    try {
+      mirror.installSdk(sdkHome, console::append);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Archive link outside of the archive root"));
+    }
+  }
+
+  @Test
+  public void testInstallSdk_linkInsideRoot() throws IOException {
+    Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    Path archive = tmpDir.getRoot().toPath().resolve("google-cloud-sdk.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      byte[] content = "470.0.0\n".getBytes(StandardCharsets.UTF_8);
+      TarArchiveEntry file = new TarArchiveEntry("google-cloud-sdk/VERSION");
+      file.setSize(content.length);
+      tar.putArchiveEntry(file);
+      tar.write(content);
+      tar.closeArchiveEntry();
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/lib/VERSION", TarArchiveEntry.LF_SYMLINK);
+      link.setLinkName("../VERSION");
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+    }
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    mirror.installSdk(sdkHome, console::append);
+
+    Assert.assertTrue(Files.isSymbolicLink(sdkHome.resolve("lib").resolve("VERSION")));
+    Assert.assertTrue(Files.isRegularFile(sdkHome.resolve("lib").resolve("VERSION")));
+  }
+
+  @Test
+  public void testInstallSdk_hardLink() throws IOException {
+    Path archive = tmpDir.getRoot().toPath().resolve("google-cloud-sdk.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      byte[] content = "470.0.0\n".getBytes(StandardCharsets.UTF_8);
+      TarArchiveEntry file = new TarArchiveEntry("google-cloud-sdk/VERSION");
+      file.setSize(content.length);
+      tar.putArchiveEntry(file);
+      tar.write(content);
+      tar.closeArchiveEntry();
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/lib/VERSION", TarArchiveEntry.LF_LINK);
+      link.setLinkName("google-cloud-sdk/VERSION");
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+    }
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    mirror.installSdk(sdkHome, console::append);
+
+    Assert.assertEquals(
+        "470.0.0\n",
+        new String(
+            Files.readAllBytes(sdkHome.resolve("lib").resolve("VERSION")),
+            StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testInstallSdk_hardLinkOutsideRoot() throws IOException {
+    Path archive = tmpDir.getRoot().toPath().resolve("hostile.tar.gz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(archive)))) {
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/VERSION", TarArchiveEntry.LF_LINK);
+      link.setLinkName("../hostile.tar.gz");
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+    }
+    CloudSdkMirror mirror = new CloudSdkMirror(archive.toUri(), null, null);
+
+    try {
+      mirror.installSdk(sdkHome, console::append);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Archive hard link to a missing or outside"));
+    }
+  }
+
+  @Test
+  public void testIsInstalled_otherArchive() throws IOException {
+    Path archive = writeTarGz(sdkFiles);
+    new CloudSdkMirror(archive.toUri(), sha256(archive), null).installSdk(sdkHome, console::append);
+
+    sdkFiles.put("google-cloud-sdk/VERSION", "471.0.0\n");
+    Path newArchive = writeTarGz(sdkFiles);
+    CloudSdkMirror mirror = new CloudSdkMirror(newArchive.toUri(), sha256(newArchive), null);
+    Assert.assertFalse(mirror.isInstalled(sdkHome));
+
+    mirror.installSdk(sdkHome, console::append);
+    Assert.assertEquals(
+        "471.0.0\n",
+        new String(Files.readAllBytes(sdkHome.resolve("VERSION")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRemoteArchiveRequiresChecksum() {
+    try {
+      new CloudSdkMirror(
+          URI.create("https://mirror.example.com/google-cloud-sdk.tar.gz"), null, null);
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertEquals(
+          "cloudSdkArchiveSha256 must be configured to download the Cloud SDK from "
+              + "https://mirror.example.com/google-cloud-sdk.tar.gz",
+          ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testIsLocal() {
+    URI archive = URI.create("file:/mirror/google-cloud-sdk.tar.gz");
+    Assert.assertTrue(new CloudSdkMirror(archive, null, null).isLocal(false));
+    // required components would come from Google
+    Assert.assertFalse(new CloudSdkMirror(archive, null, null).isLocal(true));
+    Assert.assertTrue(
+        new CloudSdkMirror(archive, null, "file:/mirror/components-2.json").isLocal(true));
+    Assert.assertFalse(
+        new CloudSdkMirror(archive, null, "https://mirror.example.com/components-2.json")
+            .isLocal(true));
+  }
+}
@@ -16,8 +16,11 @@
 
 package com.google.cloud.tools.gradle.appengine.core;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +31,7 @@ import com.google.cloud.tools.appengine.operations.Gcloud;
 import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandler;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
@@ -156,4 +160,86 @@ public class DeployAllTaskTest {
     assertTrue(captured.getDeployables().contains(appYaml));
     assertFalse(captured.getDeployables().contains(validInDifferentDirYaml));
   }
+
+  @Test
+  public void testDeployAllAction_skipUnchanged() throws AppEngineException, IOException {
+    deployExtension.setAppEngineDirectory(tempFolder.newFolder("appengine"));
+    deployExtension.setProjectId("test-project");
+    deployExtension.setVersion("v1");
+    deployExtension.setSkipUnchanged(true);
+    when(deployTargetResolver.getProject("test-project")).thenReturn("test-project");
+    when(deployTargetResolver.getVersion("v1")).thenReturn("v1");
+    tempFolder.newFile("staging/app.yaml");
+    Path jar = tempFolder.newFile("staging/app.jar").toPath();
+
+    deployAllTask.deployAllAction();
+    deployAllTask.deployAllAction();
+    verify(deploy, times(1)).deploy(Mockito.any(DeployConfiguration.class));
+    assertFalse(deployAllTask.getDidWork());
+
+    // changed content
+    Files.write(jar, new byte[] {1});
+    deployAllTask.deployAllAction();
+    verify(deploy, times(2)).deploy(Mockito.any(DeployConfiguration.class));
+
+    // changed configuration
+    deployExtension.setPromote(true);
+    deployAllTask.deployAllAction();
+    verify(deploy, times(3)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployAllAction_failedDeployIsNotSkipped()
+      throws AppEngineException, IOException {
+    deployExtension.setAppEngineDirectory(tempFolder.newFolder("appengine"));
+    deployExtension.setProjectId("test-project");
+    deployExtension.setVersion("v1");
+    deployExtension.setSkipUnchanged(true);
+    when(deployTargetResolver.getProject("test-project")).thenReturn("test-project");
+    when(deployTargetResolver.getVersion("v1")).thenReturn("v1");
+    tempFolder.newFile("staging/app.yaml");
+
+    deployAllTask.deployAllAction();
+    Mockito.doThrow(new AppEngineException("failed"))
+        .when(deploy)
+        .deploy(Mockito.any(DeployConfiguration.class));
+    deployExtension.setPromote(true);
+    try {
+      deployAllTask.deployAllAction();
+      fail();
+    } catch (AppEngineException expected) {
+      // expected
+    }
+    deployExtension.setPromote(null);
+    Mockito.doNothing().when(deploy).deploy(Mockito.any(DeployConfiguration.class));
+
+    deployAllTask.deployAllAction();
+    verify(deploy, times(3)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployAllAction_skipUnchangedConfigs() throws AppEngineException, IOException {
+    deployExtension.setAppEngineDirectory(tempFolder.newFolder("appengine"));
+    deployExtension.setProjectId("test-project");
+    deployExtension.setVersion("v1");
+    deployExtension.setSkipUnchanged(true);
+    when(deployTargetResolver.getProject("test-project")).thenReturn("test-project");
+    when(deployTargetResolver.getVersion("v1")).thenReturn("v1");
+    final Path appYaml = tempFolder.newFile("staging/app.yaml").toPath();
+    final Path cronYaml = tempFolder.newFile("appengine/cron.yaml").toPath();
+    final Path indexYaml = tempFolder.newFile("appengine/index.yaml").toPath();
+
+    deployAllTask.deployAllAction();
+    Files.write(indexYaml, new byte[] {1});
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    DeployConfiguration first = deployCapture.getAllValues().get(0);
+    assertTrue(first.getDeployables().contains(appYaml));
+    assertTrue(first.getDeployables().contains(cronYaml));
+    // only the changed config is deployed again
+    DeployConfiguration second = deployCapture.getAllValues().get(1);
+    assertEquals(1, second.getDeployables().size());
+    assertTrue(second.getDeployables().contains(indexYaml));
+  }
 }
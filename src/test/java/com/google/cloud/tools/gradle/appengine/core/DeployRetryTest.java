@@ -0,0 +1,192 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.gradle.appengine.util.PhaseTimings;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeployRetryTest {
+
+  private static final Logger LOGGER = Logging.getLogger(DeployRetryTest.class);
+  private static final String CONFLICT =
+      "ERROR: (gcloud.app.deploy) Error Response: [409] Cannot operate on apps/my-project/services"
+          + "/default because an operation is already in progress";
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private final List<Long> sleeps = new ArrayList<>();
+  private final PhaseTimings timings = new PhaseTimings();
+  private DeployRetry retry;
+  private int attempts;
+
+  @Before
+  public void setUp() {
+    retry = new DeployRetry(3, 1000, DeployRetry.DEFAULT_RETRYABLE_ERRORS, LOGGER);
+    retry.setSleeper(sleeps::add);
+  }
+
+  /** A fake deployment, writing the output of each attempt, and failing the first attempts. */
+  private DeployRetry.Attempt scripted(List<String> outputs, int failures) {
+    return () -> {
+      String output = outputs.get(attempts++);
+      retry.onOutputLine("Beginning deployment of service [default]...");
+      retry.onOutputLine(output);
+      if (attempts <= failures) {
+        throw new AppEngineException("Non zero exit: 1");
+      }
+    };
+  }
+
+  @Test
+  public void testRun_retriesTransientFailures() throws AppEngineException {
+    retry.run(
+        scripted(
+            Arrays.asList(
+                CONFLICT,
+                "ERROR: gcloud crashed (ReadTimeout): HTTPSConnectionPool: Read timed out.",
+                "Deployed service [default]"),
+            2),
+        timings);
+
+    Assert.assertEquals(3, attempts);
+    Assert.assertEquals(Arrays.asList(1000L, 2000L), sleeps);
+  }
+
+  @Test
+  public void testRun_permanentFailure() {
+    try {
+      retry.run(
+          scripted(
+              Collections.singletonList(
+                  "ERROR: (gcloud.app.deploy) Error Response: [403] Permission denied"),
+              1),
+          timings);
+      Assert.fail();
+    } catch (AppEngineException ex) {
+      Assert.assertEquals(1, attempts);
+      Assert.assertTrue(sleeps.isEmpty());
+    }
+  }
+
+  @Test
+  public void testRun_givesUpAfterMaxAttempts() {
+    try {
+      retry.run(scripted(Arrays.asList(CONFLICT, CONFLICT, CONFLICT), 3), timings);
+      Assert.fail();
+    } catch (AppEngineException ex) {
+      Assert.assertEquals(3, attempts);
+      Assert.assertEquals(2, sleeps.size());
+    }
+  }
+
+  @Test
+  public void testRun_outputOfPreviousAttemptIgnored() {
+    // a transient failure followed by a permanent one is not retried again
+    try {
+      retry.run(scripted(Arrays.asList(CONFLICT, "ERROR: app.yaml is invalid"), 2), timings);
+      Assert.fail();
+    } catch (AppEngineException ex) {
+      Assert.assertEquals(2, attempts);
+    }
+  }
+
+  @Test
+  public void testIsRetryable_failureMessage() {
+    Assert.assertTrue(
+        retry.isRetryable(
+            new RuntimeException(
+                "Upload failed", new IOException("Error Response: [503] Service Unavailable"))));
+    Assert.assertFalse(retry.isRetryable(new RuntimeException("Non zero exit: 1")));
+  }
+
+  @Test
+  public void testIsRetryable_customErrors() {
+    DeployRetry custom =
+        new DeployRetry(2, 0, Collections.singletonList("Cloud Build .* QUEUED"), LOGGER);
+    custom.onOutputLine("ERROR: Cloud Build build-1 stuck in QUEUED");
+
+    Assert.assertTrue(custom.isRetryable(new RuntimeException("Non zero exit: 1")));
+  }
+
+  @Test
+  public void testGetBackoffMillis() {
+    Assert.assertEquals(1000, retry.getBackoffMillis(1));
+    Assert.assertEquals(2000, retry.getBackoffMillis(2));
+    Assert.assertEquals(4000, retry.getBackoffMillis(3));
+    Assert.assertEquals(DeployRetry.MAX_BACKOFF_MILLIS, retry.getBackoffMillis(20));
+  }
+
+  @Test
+  public void testRun_fakeGcloud() throws IOException, AppEngineException {
+    Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    // fails with a conflict on the first run, then deploys
+    Path runs = tmpDir.getRoot().toPath().resolve("runs");
+    Path gcloud = tmpDir.newFile("gcloud").toPath();
+    Files.write(
+        gcloud,
+        ("#!/bin/sh\n"
+                + "echo run >> '"
+                + runs
+                + "'\n"
+                + "if [ \"$(wc -l < '"
+                + runs
+                + "')\" -lt 2 ]; then\n"
+                + "  echo '"
+                + CONFLICT
+                + "' >&2\n"
+                + "  exit 1\n"
+                + "fi\n"
+                + "echo 'Updating service [default]...done.' >&2\n"
+                + "echo '{\"configs\": [], \"versions\": [{\"id\": \"v1\"}]}'\n")
+            .getBytes(StandardCharsets.UTF_8));
+    Assert.assertTrue(gcloud.toFile().setExecutable(true));
+    List<GcloudDeployResult> results = new ArrayList<>();
+    JsonOutputProcessHandler handler =
+        new JsonOutputProcessHandler(LOGGER, "", retry, results::add);
+
+    retry.run(
+        () -> {
+          try {
+            handler.handleProcess(new ProcessBuilder(gcloud.toString()).start());
+          } catch (Exception ex) {
+            throw new AppEngineException("Failed to deploy", ex);
+          }
+        },
+        timings);
+
+    Assert.assertEquals(2, Files.readAllLines(runs).size());
+    Assert.assertEquals(Collections.singletonList(1000L), sleeps);
+    Assert.assertEquals("v1", results.get(0).getVersions().get(0).getId());
+  }
+}
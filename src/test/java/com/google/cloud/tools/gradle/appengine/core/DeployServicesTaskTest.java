@@ -0,0 +1,177 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.AppEngineException;
+import com.google.cloud.tools.appengine.configuration.DeployConfiguration;
+import com.google.cloud.tools.appengine.operations.Deployment;
+import com.google.cloud.tools.appengine.operations.Gcloud;
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandler;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeployServicesTaskTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private Gcloud gcloud;
+  @Mock private Deployment deploy;
+  @Mock private DeployTargetResolver deployTargetResolver;
+
+  private final List<DeployExtension> deployExtensions = new ArrayList<>();
+  private DeployServicesTask deployServicesTask;
+  private Path frontendYaml;
+  private Path backendYaml;
+
+  /** Setup DeployServicesTaskTest. */
+  @Before
+  public void setup() throws IOException {
+    Project rootProject =
+        ProjectBuilder.builder().withProjectDir(tempFolder.newFolder("root")).build();
+    deployServicesTask =
+        rootProject.getTasks().create("tempDeployServicesTask", DeployServicesTask.class);
+    frontendYaml = addService(rootProject, "frontend");
+    backendYaml = addService(rootProject, "backend");
+
+    when(gcloud.newDeployment(Mockito.any(ProcessHandler.class))).thenReturn(deploy);
+  }
+
+  private Path addService(Project rootProject, String name) throws IOException {
+    Project project = ProjectBuilder.builder().withName(name).withParent(rootProject).build();
+    DeployExtension deployExtension = new DeployExtension(project);
+    deployExtension.setDeployTargetResolver(deployTargetResolver);
+    deployExtensions.add(deployExtension);
+    Path appYaml = tempFolder.newFolder(name).toPath().resolve("app.yaml");
+
+    DeployTask deployTask = project.getTasks().create("tempDeployTask", DeployTask.class);
+    deployTask.setDeployConfig(deployExtension);
+    deployTask.setAppYaml(appYaml);
+    deployTask.setGcloud(gcloud);
+    deployServicesTask.addService(deployTask, new ToolsExtension(project));
+    return appYaml;
+  }
+
+  @Test
+  public void testDeployServicesAction_parallel() throws AppEngineException {
+    deployServicesTask.deployServicesAction();
+
+    ArgumentCaptor<DeployConfiguration> deployCapture =
+        ArgumentCaptor.forClass(DeployConfiguration.class);
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    assertEquals(1, deployCapture.getAllValues().get(0).getDeployables().size());
+    assertEquals(1, deployCapture.getAllValues().get(1).getDeployables().size());
+  }
+
+  @Test
+  public void testDeployServicesAction_failuresReportedPerService() throws AppEngineException {
+    Mockito.doThrow(new AppEngineException("quota exceeded"))
+        .when(deploy)
+        .deploy(Mockito.argThat(config -> config.getDeployables().contains(frontendYaml)));
+
+    try {
+      deployServicesTask.deployServicesAction();
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage().contains("Failed to deploy 1 of 2 services"));
+      assertTrue(ex.getMessage().contains(":frontend: quota exceeded"));
+    }
+    // the other service is still deployed
+    verify(deploy).deploy(Mockito.argThat(config -> config.getDeployables().contains(backendYaml)));
+  }
+
+  @Test
+  public void testDeployServicesAction_singleDeployment() throws AppEngineException {
+    deployServicesTask.setSingleDeployment(true);
+
+    deployServicesTask.deployServicesAction();
+
+    ArgumentCaptor<DeployConfiguration> deployCapture =
+        ArgumentCaptor.forClass(DeployConfiguration.class);
+    verify(deploy).deploy(deployCapture.capture());
+    assertTrue(deployCapture.getValue().getDeployables().contains(frontendYaml));
+    assertTrue(deployCapture.getValue().getDeployables().contains(backendYaml));
+  }
+
+  @Test
+  public void testDeployServicesAction_singleDeploymentSkipsUnchanged()
+      throws AppEngineException, IOException {
+    for (DeployExtension deployExtension : deployExtensions) {
+      deployExtension.setProjectId("test-project");
+      deployExtension.setVersion("v1");
+      deployExtension.setSkipUnchanged(true);
+    }
+    when(deployTargetResolver.getProject("test-project")).thenReturn("test-project");
+    when(deployTargetResolver.getVersion("v1")).thenReturn("v1");
+    Files.createFile(frontendYaml);
+    Files.createFile(backendYaml);
+    deployServicesTask.setSingleDeployment(true);
+
+    deployServicesTask.deployServicesAction();
+    deployServicesTask.deployServicesAction();
+    verify(deploy, times(1)).deploy(Mockito.any(DeployConfiguration.class));
+
+    // only the changed service is deployed
+    Files.write(frontendYaml, new byte[] {1});
+    deployServicesTask.deployServicesAction();
+    ArgumentCaptor<DeployConfiguration> deployCapture =
+        ArgumentCaptor.forClass(DeployConfiguration.class);
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    assertTrue(deployCapture.getValue().getDeployables().contains(frontendYaml));
+    assertFalse(deployCapture.getValue().getDeployables().contains(backendYaml));
+
+    // a failed deployment is not skipped next time
+    Files.write(frontendYaml, new byte[] {2});
+    Mockito.doThrow(new AppEngineException("failed"))
+        .when(deploy)
+        .deploy(Mockito.any(DeployConfiguration.class));
+    try {
+      deployServicesTask.deployServicesAction();
+      fail();
+    } catch (GradleException expected) {
+      // expected
+    }
+    Mockito.doNothing().when(deploy).deploy(Mockito.any(DeployConfiguration.class));
+    Files.write(frontendYaml, new byte[] {1});
+    deployServicesTask.deployServicesAction();
+    verify(deploy, times(4)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeployedConfigsTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private DeployedConfigs deployedConfigs;
+  private Path cronYaml;
+
+  @Before
+  public void setUp() throws IOException {
+    deployedConfigs = new DeployedConfigs(tmpDir.getRoot().toPath().resolve("records/configs"));
+    cronYaml = tmpDir.newFile("cron.yaml").toPath();
+    Files.write(cronYaml, "cron: []".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testIsDeployed() throws IOException {
+    Assert.assertFalse(deployedConfigs.isDeployed("project", null, cronYaml));
+
+    deployedConfigs.setDeployed("project", null, cronYaml, true);
+    Assert.assertTrue(deployedConfigs.isDeployed("project", null, cronYaml));
+    // other targets
+    Assert.assertFalse(deployedConfigs.isDeployed("other-project", null, cronYaml));
+    Assert.assertFalse(deployedConfigs.isDeployed("project", "other-server", cronYaml));
+
+    Files.write(cronYaml, "cron: [{url: /task}]".getBytes(StandardCharsets.UTF_8));
+    Assert.assertFalse(deployedConfigs.isDeployed("project", null, cronYaml));
+  }
+
+  @Test
+  public void testSetDeployed_forget() throws IOException {
+    deployedConfigs.setDeployed("project", null, cronYaml, true);
+    deployedConfigs.setDeployed("project", null, cronYaml, false);
+
+    Assert.assertFalse(deployedConfigs.isDeployed("project", null, cronYaml));
+  }
+
+  @Test
+  public void testIsDeployed_noProject() throws IOException {
+    deployedConfigs.setDeployed(null, null, cronYaml, true);
+
+    Assert.assertFalse(deployedConfigs.isDeployed(null, null, cronYaml));
+  }
+}
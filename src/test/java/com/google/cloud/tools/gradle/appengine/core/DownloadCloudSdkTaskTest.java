@@ -35,19 +35,26 @@ import com.google.cloud.tools.managedcloudsdk.components.SdkUpdater;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstaller;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstallerException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 @RunWith(MockitoJUnitRunner.class)
 public class DownloadCloudSdkTaskTest {
 
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
   @Mock private ManagedCloudSdk managedCloudSdk;
 
   @Mock private SdkInstaller installer;
@@ -55,10 +62,12 @@ public class DownloadCloudSdkTaskTest {
   @Mock private SdkUpdater updater;
 
   private DownloadCloudSdkTask downloadCloudSdkTask;
+  private Path sdkHome;
 
   /** Setup DownloadCloudSdkTaskTest. */
   @Before
-  public void setup() {
+  public void setup() throws IOException {
+    sdkHome = tmpDir.newFolder("managed-cloud-sdk", "LATEST", "google-cloud-sdk").toPath();
     Project tempProject = ProjectBuilder.builder().build();
     downloadCloudSdkTask =
         tempProject.getTasks().create("tempDownloadTask", DownloadCloudSdkTask.class);
@@ -66,6 +75,7 @@ public class DownloadCloudSdkTaskTest {
     when(managedCloudSdk.newInstaller()).thenReturn(installer);
     when(managedCloudSdk.newComponentInstaller()).thenReturn(componentInstaller);
     when(managedCloudSdk.newUpdater()).thenReturn(updater);
+    when(managedCloudSdk.getSdkHome()).thenReturn(sdkHome);
   }
 
   @Test
@@ -172,4 +182,131 @@ public class DownloadCloudSdkTaskTest {
     verify(managedCloudSdk, never()).newComponentInstaller();
     verify(managedCloudSdk).newUpdater();
   }
+
+  @Test
+  public void testDownloadCloudSdkAction_interruptedInstall()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    Files.createFile(sdkHome.resolve("VERSION"));
+    Files.createFile(sdkHome.resolveSibling("google-cloud-sdk.changing"));
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    // the partial install is deleted before installing again
+    Assert.assertFalse(Files.exists(sdkHome.resolve("VERSION")));
+    verify(managedCloudSdk).newInstaller();
+    Assert.assertFalse(Files.exists(sdkHome.resolveSibling("google-cloud-sdk.changing")));
+  }
+
+  @Test
+  public void testDownloadCloudSdkAction_failedInstallMarked()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    Mockito.doThrow(SdkInstallerException.class).when(installer).install(any(), any());
+    try {
+      downloadCloudSdkTask.downloadCloudSdkAction();
+      Assert.fail();
+    } catch (SdkInstallerException ex) {
+      Assert.assertTrue(Files.exists(sdkHome.resolveSibling("google-cloud-sdk.changing")));
+    }
+  }
+
+  @Test
+  public void testDownloadCloudSdkAction_recentlyVerified()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    downloadCloudSdkTask.setVerifiedTtlMillis(60_000);
+    downloadCloudSdkTask.requiresComponent(SdkComponent.APP_ENGINE_JAVA);
+    Files.createFile(sdkHome.resolve("VERSION"));
+    new ManagedCloudSdkStatus(sdkHome).setVerified(downloadCloudSdkTask.getComponents());
+
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    verify(managedCloudSdk, never()).isInstalled();
+    verify(managedCloudSdk, never()).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdkAction_recordsVerification()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    downloadCloudSdkTask.setVerifiedTtlMillis(60_000);
+    Files.createFile(sdkHome.resolve("VERSION"));
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    Assert.assertTrue(
+        new ManagedCloudSdkStatus(sdkHome)
+            .isVerified(downloadCloudSdkTask.getComponents(), 60_000));
+  }
+
+  @Test
+  public void testStartInBackground()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloadCloudSdkTask.startInBackground();
+    downloadCloudSdkTask.awaitCloudSdk();
+    verify(installer).install(any(), any());
+
+    // the task only waits for the background provisioning
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    verify(managedCloudSdk).newInstaller();
+  }
+
+  @Test
+  public void testStartInBackground_failure()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    Mockito.doThrow(SdkInstallerException.class).when(installer).install(any(), any());
+
+    downloadCloudSdkTask.startInBackground();
+    try {
+      downloadCloudSdkTask.awaitCloudSdk();
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(ex.getCause() instanceof SdkInstallerException);
+    }
+  }
+
+  @Test
+  public void testStopBackground()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    Mockito.doAnswer(
+            invocation -> {
+              Thread.sleep(60_000);
+              return null;
+            })
+        .when(installer)
+        .install(any(), any());
+
+    downloadCloudSdkTask.startInBackground();
+    verify(installer, Mockito.timeout(10_000)).install(any(), any());
+    long start = System.currentTimeMillis();
+    downloadCloudSdkTask.stopBackground();
+
+    // the install was interrupted, and nothing is left to wait for
+    Assert.assertTrue(System.currentTimeMillis() - start < 30_000);
+    downloadCloudSdkTask.awaitCloudSdk();
+  }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessHandlerException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.gradle.api.logging.Logging;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GcloudDeployResultTest {
+
+  private static final String DEPLOY_OUTPUT =
+      "{\n"
+          + "  \"configs\": [\"cron\"],\n"
+          + "  \"versions\": [\n"
+          + "    {\n"
+          + "      \"environment\": {\"name\": \"STANDARD\", \"flex\": false},\n"
+          + "      \"id\": \"20240102t030405\",\n"
+          + "      \"last_deployed_time\": null,\n"
+          + "      \"project\": \"my-project\",\n"
+          + "      \"service\": \"default\",\n"
+          + "      \"traffic_split\": 1.0,\n"
+          + "      \"version\": {\n"
+          + "        \"id\": \"20240102t030405\",\n"
+          + "        \"servingStatus\": \"SERVING\",\n"
+          + "        \"handlers\": [{\"urlRegex\": \".*\", \"script\": {}}],\n"
+          + "        \"versionUrl\": \"https://20240102t030405-dot-my-project.appspot.com\"\n"
+          + "      }\n"
+          + "    }\n"
+          + "  ]\n"
+          + "}\n";
+
+  @Test
+  public void testParse() throws IOException {
+    GcloudDeployResult result = GcloudDeployResult.parse(new StringReader(DEPLOY_OUTPUT));
+
+    Assert.assertEquals(Collections.singletonList("cron"), result.getConfigs());
+    Assert.assertEquals(1, result.getVersions().size());
+    GcloudDeployResult.DeployedVersion version = result.getVersions().get(0);
+    Assert.assertEquals("my-project", version.getProject());
+    Assert.assertEquals("default", version.getService());
+    Assert.assertEquals("20240102t030405", version.getId());
+    Assert.assertEquals("https://20240102t030405-dot-my-project.appspot.com", version.getUrl());
+    Assert.assertEquals("SERVING", version.getServingStatus());
+  }
+
+  @Test
+  public void testParse_empty() throws IOException {
+    Assert.assertNull(GcloudDeployResult.parse(new StringReader(" \n")));
+  }
+
+  @Test
+  public void testParse_configsOnly() throws IOException {
+    GcloudDeployResult result =
+        GcloudDeployResult.parse(
+            new StringReader("{\"configs\": [\"dispatch\"], \"versions\": []}"));
+
+    Assert.assertEquals(Collections.singletonList("dispatch"), result.getConfigs());
+    Assert.assertTrue(result.getVersions().isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testParse_notJson() throws IOException {
+    GcloudDeployResult.parse(new StringReader("Deployed service [default]"));
+  }
+
+  @Test
+  public void testJsonOutputProcessHandler() throws ProcessHandlerException {
+    List<String> stdErrLines = new ArrayList<>();
+    List<GcloudDeployResult> results = new ArrayList<>();
+    JsonOutputProcessHandler handler =
+        new JsonOutputProcessHandler(
+            Logging.getLogger(GcloudDeployResultTest.class), "", stdErrLines::add, results::add);
+
+    handler.handleProcess(
+        new FakeProcess(DEPLOY_OUTPUT, "Beginning deployment of service [default]...\n", 0));
+
+    Assert.assertEquals(
+        Collections.singletonList("Beginning deployment of service [default]..."), stdErrLines);
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals("default", results.get(0).getVersions().get(0).getService());
+  }
+
+  @Test
+  public void testJsonOutputProcessHandler_unparsedOutput() throws ProcessHandlerException {
+    List<GcloudDeployResult> results = new ArrayList<>();
+    JsonOutputProcessHandler handler =
+        new JsonOutputProcessHandler(
+            Logging.getLogger(GcloudDeployResultTest.class), "", line -> {}, results::add);
+
+    // the deployment still succeeds
+    handler.handleProcess(new FakeProcess("WARNING: not json\n", "", 0));
+
+    Assert.assertTrue(results.isEmpty());
+  }
+
+  @Test
+  public void testJsonOutputProcessHandler_failure() throws ProcessHandlerException {
+    JsonOutputProcessHandler handler =
+        new JsonOutputProcessHandler(
+            Logging.getLogger(GcloudDeployResultTest.class), "", line -> {}, result -> {});
+
+    try {
+      handler.handleProcess(new FakeProcess("", "ERROR: quota exceeded\n", 1));
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      // the exit listener of the default handler
+    }
+  }
+
+  private static class FakeProcess extends Process {
+    private final InputStream stdOut;
+    private final InputStream stdErr;
+    private final int exitCode;
+
+    FakeProcess(String stdOut, String stdErr, int exitCode) {
+      this.stdOut = new ByteArrayInputStream(stdOut.getBytes(StandardCharsets.UTF_8));
+      this.stdErr = new ByteArrayInputStream(stdErr.getBytes(StandardCharsets.UTF_8));
+      this.exitCode = exitCode;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return new ByteArrayOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return stdOut;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return stdErr;
+    }
+
+    @Override
+    public int waitFor() {
+      return exitCode;
+    }
+
+    @Override
+    public int exitValue() {
+      return exitCode;
+    }
+
+    @Override
+    public void destroy() {}
+  }
+}
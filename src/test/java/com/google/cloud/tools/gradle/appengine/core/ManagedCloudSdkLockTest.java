@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ManagedCloudSdkLockTest {
+
+  private static final Logger LOGGER = Logging.getLogger(ManagedCloudSdkLockTest.class);
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path sdkHome;
+
+  @Before
+  public void setUp() {
+    sdkHome = tmpDir.getRoot().toPath().resolve("LATEST").resolve("google-cloud-sdk");
+  }
+
+  @Test
+  public void testChanges_completed() throws IOException, InterruptedException {
+    try (ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+      Assert.assertFalse(lock.isInterrupted());
+      lock.beginChanges();
+      lock.beginChanges();
+      lock.endChanges();
+    }
+    try (ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+      Assert.assertFalse(lock.isInterrupted());
+    }
+  }
+
+  @Test
+  public void testChanges_interrupted() throws IOException, InterruptedException {
+    // a build that crashes while installing never ends its changes
+    try (ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+      lock.beginChanges();
+      Files.createDirectories(sdkHome.resolve("bin"));
+      Files.createFile(sdkHome.resolve("bin").resolve("gcloud"));
+    }
+
+    try (ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+      Assert.assertTrue(lock.isInterrupted());
+      lock.deleteInterrupted();
+      Assert.assertFalse(Files.exists(sdkHome));
+      Assert.assertFalse(lock.isInterrupted());
+    }
+  }
+
+  @Test
+  public void testAcquire_waitsForRelease() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch acquired = new CountDownLatch(1);
+      Future<?> other;
+      try (ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+        other =
+            executor.submit(
+                () -> {
+                  try (ManagedCloudSdkLock otherLock =
+                      ManagedCloudSdkLock.acquire(sdkHome, LOGGER)) {
+                    acquired.countDown();
+                  }
+                  return null;
+                });
+        Assert.assertFalse(
+            acquired.await(2 * ManagedCloudSdkLock.POLL_MILLIS, TimeUnit.MILLISECONDS));
+      }
+      Assert.assertTrue(acquired.await(10, TimeUnit.SECONDS));
+      other.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ManagedCloudSdkStatusTest {
+
+  private static final long TTL = Duration.ofHours(1).toMillis();
+  private static final Instant NOW = Instant.parse("2024-03-01T10:00:00Z");
+  private static final List<SdkComponent> COMPONENTS =
+      Collections.singletonList(SdkComponent.APP_ENGINE_JAVA);
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path sdkHome;
+
+  @Before
+  public void setUp() throws IOException {
+    sdkHome = tmpDir.newFolder("LATEST", "google-cloud-sdk").toPath();
+    Files.write(sdkHome.resolve("VERSION"), "470.0.0\n".getBytes(StandardCharsets.UTF_8));
+    new ManagedCloudSdkStatus(sdkHome, at(NOW)).setVerified(COMPONENTS);
+  }
+
+  private static Clock at(Instant instant) {
+    return Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  @Test
+  public void testIsVerified() {
+    ManagedCloudSdkStatus status =
+        new ManagedCloudSdkStatus(sdkHome, at(NOW.plus(Duration.ofMinutes(59))));
+
+    Assert.assertTrue(status.isVerified(COMPONENTS, TTL));
+    Assert.assertTrue(status.isVerified(Collections.emptyList(), TTL));
+  }
+
+  @Test
+  public void testIsVerified_expired() {
+    ManagedCloudSdkStatus status =
+        new ManagedCloudSdkStatus(sdkHome, at(NOW.plus(Duration.ofMinutes(60))));
+
+    Assert.assertFalse(status.isVerified(COMPONENTS, TTL));
+  }
+
+  @Test
+  public void testIsVerified_disabled() {
+    Assert.assertFalse(new ManagedCloudSdkStatus(sdkHome, at(NOW)).isVerified(COMPONENTS, 0));
+  }
+
+  @Test
+  public void testIsVerified_missingComponent() {
+    Assert.assertFalse(
+        new ManagedCloudSdkStatus(sdkHome, at(NOW))
+            .isVerified(Arrays.asList(SdkComponent.APP_ENGINE_JAVA, SdkComponent.BETA), TTL));
+  }
+
+  @Test
+  public void testIsVerified_sdkUpdated() throws IOException {
+    Path version = sdkHome.resolve("VERSION");
+    Files.setLastModifiedTime(
+        version, FileTime.fromMillis(Files.getLastModifiedTime(version).toMillis() + 1000));
+
+    Assert.assertFalse(new ManagedCloudSdkStatus(sdkHome, at(NOW)).isVerified(COMPONENTS, TTL));
+  }
+
+  @Test
+  public void testIsVerified_otherSdkHome() throws IOException {
+    Path otherHome = tmpDir.newFolder("other", "google-cloud-sdk").toPath();
+    Files.copy(
+        sdkHome.resolveSibling("google-cloud-sdk.status"),
+        otherHome.resolveSibling("google-cloud-sdk.status"));
+    Files.copy(sdkHome.resolve("VERSION"), otherHome.resolve("VERSION"));
+    Files.setLastModifiedTime(
+        otherHome.resolve("VERSION"), Files.getLastModifiedTime(sdkHome.resolve("VERSION")));
+
+    Assert.assertFalse(new ManagedCloudSdkStatus(otherHome, at(NOW)).isVerified(COMPONENTS, TTL));
+  }
+
+  @Test
+  public void testClear() throws IOException {
+    ManagedCloudSdkStatus status = new ManagedCloudSdkStatus(sdkHome, at(NOW));
+    status.clear();
+
+    Assert.assertFalse(status.isVerified(COMPONENTS, TTL));
+  }
+
+  @Test
+  public void testSetVerified_notInstalled() throws IOException {
+    Path missingHome = tmpDir.getRoot().toPath().resolve("missing").resolve("google-cloud-sdk");
+    Files.createDirectories(missingHome.getParent());
+    ManagedCloudSdkStatus status = new ManagedCloudSdkStatus(missingHome, at(NOW));
+    status.setVerified(COMPONENTS);
+
+    Assert.assertFalse(status.isVerified(COMPONENTS, TTL));
+    Assert.assertFalse(Files.exists(missingHome.resolveSibling("google-cloud-sdk.status")));
+  }
+}
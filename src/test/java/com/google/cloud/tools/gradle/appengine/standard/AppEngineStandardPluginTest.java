@@ -21,6 +21,7 @@ import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
 import com.google.cloud.tools.gradle.appengine.BuildResultFilter;
@@ -30,6 +31,9 @@ import com.google.cloud.tools.gradle.appengine.util.GradleCompatibility;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.List;
 import org.gradle.api.Project;
@@ -88,6 +92,41 @@ public class AppEngineStandardPluginTest {
     }
   }
 
+  @Test
+  public void testHardLinks_requireIncrementalExplode() throws IOException {
+    TestProject testProject = createTestProject();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        "\nappengine.stage.enableHardLinks = true\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    try {
+      testProject.applyGradleRunner("appengineStage", "--dry-run");
+      fail();
+    } catch (UnexpectedBuildFailure ex) {
+      assertThat(ex.getMessage(), containsString("requires explodeWar.incremental"));
+    }
+
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        "\nexplodeWar.incremental = true\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    testProject.applyGradleRunner("appengineStage", "--dry-run");
+  }
+
+  @Test
+  public void testInvalidAppEngineWebXml() throws IOException {
+    TestProject testProject = createTestProject();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("src/main/webapp/WEB-INF/appengine-web.xml"),
+        "<web-app/>".getBytes(StandardCharsets.UTF_8));
+    try {
+      testProject.applyGradleRunner("appengineStage", "--dry-run");
+      fail();
+    } catch (UnexpectedBuildFailure ex) {
+      assertThat(ex.getMessage(), containsString("the root element must be <appengine-web-app>"));
+    }
+  }
+
   @Test
   public void testLogin_taskTree() throws IOException {
     BuildResult buildResult =
@@ -117,6 +156,28 @@ public class AppEngineStandardPluginTest {
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
+  @Test
+  public void testDeploy_taskTreeSkipWarArchive() throws IOException {
+    TestProject testProject = createTestProject();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        "\nexplodeWar.skipWarArchive = true\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    BuildResult buildResult = testProject.applyGradleRunner("appengineDeploy", "--dry-run");
+
+    final List<String> expected =
+        ImmutableList.of(
+            ":compileJava",
+            ":processResources",
+            ":classes",
+            ":explodeWar",
+            ":downloadCloudSdk",
+            ":appengineStage",
+            ":appengineDeploy");
+
+    assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
+  }
+
   @Test
   public void testDeployCron_taskTree() throws IOException {
     BuildResult buildResult =
@@ -19,8 +19,10 @@ package com.google.cloud.tools.gradle.appengine.standard;
 
 import com.google.cloud.tools.gradle.appengine.TestProject;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -63,4 +65,54 @@ public class ExplodeWarTaskTest {
     Assert.assertTrue(Files.isRegularFile(datastoreIndexesAutoXml));
     Assert.assertFalse(Files.isRegularFile(junkXml));
   }
+
+  @Test
+  public void testSyncTask_incremental() throws IOException {
+    TestProject testProject =
+        new TestProject(testProjectDir.getRoot()).addStandardBuildFile().addAppEngineWebXml();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        "\nexplodeWar.incremental = true\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    testProject.applyGradleRunner("explodeWar");
+
+    Path explodedApp =
+        testProjectDir
+            .getRoot()
+            .toPath()
+            .resolve("build")
+            .resolve("exploded-" + testProjectDir.getRoot().getName());
+    Path appengineGenerated = explodedApp.resolve("WEB-INF").resolve("appengine-generated");
+    Path junkXml = appengineGenerated.resolve("junk.xml");
+    Path datastoreIndexesAutoXml = appengineGenerated.resolve("datastore-indexes-auto.xml");
+
+    Assert.assertTrue(Files.isRegularFile(explodedApp.resolve("WEB-INF/appengine-web.xml")));
+
+    Files.createDirectory(appengineGenerated);
+    Files.createFile(junkXml);
+    Files.createFile(datastoreIndexesAutoXml);
+
+    testProject.applyGradleRunner("explodeWar", "--rerun-tasks");
+
+    Assert.assertTrue(Files.isRegularFile(datastoreIndexesAutoXml));
+    Assert.assertFalse(Files.isRegularFile(junkXml));
+    Assert.assertTrue(Files.isRegularFile(explodedApp.resolve("WEB-INF/appengine-web.xml")));
+  }
+
+  @Test
+  public void testSyncTask_skipWarArchive() throws IOException {
+    TestProject testProject =
+        new TestProject(testProjectDir.getRoot()).addStandardBuildFile().addAppEngineWebXml();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        "\nexplodeWar.skipWarArchive = true\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    testProject.applyGradleRunner("explodeWar");
+
+    Path buildDir = testProjectDir.getRoot().toPath().resolve("build");
+    Path explodedApp = buildDir.resolve("exploded-" + testProjectDir.getRoot().getName());
+
+    Assert.assertTrue(Files.isRegularFile(explodedApp.resolve("WEB-INF/appengine-web.xml")));
+    Assert.assertFalse(Files.exists(buildDir.resolve("libs")));
+  }
 }
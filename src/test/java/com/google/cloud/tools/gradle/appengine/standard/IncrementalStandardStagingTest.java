@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalStandardStagingTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path source;
+  private Path staged;
+
+  @Before
+  public void setUp() throws IOException {
+    source = tmpDir.newFolder("exploded").toPath();
+    staged = tmpDir.newFolder("staged").toPath();
+  }
+
+  @Test
+  public void testRequiresFullStaging() {
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, false, false, false);
+
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/appengine-web.xml"));
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/web.xml"));
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/cron.xml"));
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/appengine-generated/app.yaml"));
+    Assert.assertTrue(staging.requiresFullStaging("index.jsp"));
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/tags/my.tag"));
+    Assert.assertFalse(staging.requiresFullStaging("index.html"));
+    Assert.assertFalse(staging.requiresFullStaging("WEB-INF/classes/Hello.class"));
+    Assert.assertFalse(staging.requiresFullStaging("WEB-INF/classes/logging.xml"));
+    Assert.assertFalse(staging.requiresFullStaging("WEB-INF/lib/dep.jar"));
+  }
+
+  @Test
+  public void testRequiresFullStaging_transformedClassesAndLibs() {
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, true, true, false);
+
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/classes/Hello.class"));
+    Assert.assertTrue(staging.requiresFullStaging("WEB-INF/lib/dep.jar"));
+    Assert.assertFalse(staging.requiresFullStaging("index.html"));
+  }
+
+  @Test
+  public void testStage_copiesAndDeletes() throws IOException {
+    write(source, "css/site.css", "new");
+    write(staged, "css/site.css", "old");
+    write(staged, "old.html", "gone");
+
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, false, false, false);
+
+    Assert.assertTrue(staging.stage(ImmutableMap.of("css/site.css", true, "old.html", false)));
+    Assert.assertEquals(1, staging.getCopiedCount());
+    Assert.assertEquals(1, staging.getDeletedCount());
+    Assert.assertEquals(
+        "new",
+        new String(Files.readAllBytes(staged.resolve("css/site.css")), StandardCharsets.UTF_8));
+    Assert.assertFalse(Files.exists(staged.resolve("old.html")));
+  }
+
+  @Test
+  public void testStage_fullStagingRequired() throws IOException {
+    write(source, "index.html", "new");
+    write(source, "WEB-INF/appengine-web.xml", "<appengine-web-app/>");
+
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, false, false, false);
+
+    Assert.assertFalse(
+        staging.stage(ImmutableMap.of("index.html", true, "WEB-INF/appengine-web.xml", true)));
+    Assert.assertFalse(Files.exists(staged.resolve("index.html")));
+  }
+
+  @Test
+  public void testStage_quickstartJars() throws IOException {
+    writeJar(source, "WEB-INF/lib/plain.jar", "com/example/Util.class", "plain");
+    writeJar(source, "WEB-INF/lib/servlets.jar", "com/example/Hello.class", "servlet");
+    writeJar(staged, "WEB-INF/lib/servlets.jar", "com/example/Hello.class", "servlet");
+    write(source, "index.html", "new");
+    write(staged, "index.html", "old");
+
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, true, false, false);
+    staging.setQuickstartScanIndex(new QuickstartScanIndex(tmpDir.newFolder("index").toPath()));
+
+    Assert.assertTrue(
+        staging.stage(ImmutableMap.of("WEB-INF/lib/plain.jar", true, "index.html", true)));
+    Assert.assertTrue(Files.exists(staged.resolve("WEB-INF/lib/plain.jar")));
+    Assert.assertFalse(staging.stage(ImmutableMap.of("WEB-INF/lib/servlets.jar", false)));
+    Assert.assertTrue(Files.exists(staged.resolve("WEB-INF/lib/servlets.jar")));
+  }
+
+  @Test
+  public void testStage_appCfgStaticFiles() throws IOException {
+    // AppCfg copies static files to __static__, which are also resources unless excluded
+    write(source, "index.html", "new");
+    write(source, "css/site.css", "new");
+    write(source, "added.html", "added");
+    write(staged, "index.html", "old");
+    write(staged, "__static__/index.html", "old");
+    write(staged, "__static__/css/site.css", "old");
+    write(
+        staged,
+        "WEB-INF/appengine-generated/app.yaml",
+        "handlers:\n"
+            + "- url: /index.html\n"
+            + "  static_files: __static__/index.html\n"
+            + "  upload: __static__/index.html\n"
+            + "- url: /css/site.css\n"
+            + "  static_files: __static__/css/site.css\n"
+            + "  upload: __static__/css/site.css\n");
+
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, false, false, false);
+
+    Assert.assertTrue(staging.stage(ImmutableMap.of("index.html", true, "css/site.css", true)));
+    Assert.assertEquals(3, staging.getCopiedCount());
+    Assert.assertEquals("new", read(staged, "index.html"));
+    Assert.assertEquals("new", read(staged, "__static__/index.html"));
+    Assert.assertEquals("new", read(staged, "__static__/css/site.css"));
+    Assert.assertFalse(Files.exists(staged.resolve("css/site.css")));
+
+    Assert.assertFalse(staging.stage(ImmutableMap.of("added.html", true)));
+    Assert.assertFalse(Files.exists(staged.resolve("added.html")));
+    Assert.assertFalse(staging.stage(ImmutableMap.of("index.html", false)));
+    Assert.assertTrue(Files.exists(staged.resolve("index.html")));
+  }
+
+  @Test
+  public void testStage_nativeStagingAddsWebContent() throws IOException {
+    write(source, "added.html", "added");
+
+    IncrementalStandardStaging staging =
+        new IncrementalStandardStaging(source, staged, false, false, false);
+    staging.setStaticHandlers(false);
+
+    Assert.assertTrue(staging.stage(ImmutableMap.of("added.html", true)));
+    Assert.assertEquals("added", read(staged, "added.html"));
+  }
+
+  private static void writeJar(Path root, String path, String entry, String content)
+      throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    String classContent =
+        content.equals("servlet") ? "Ljavax/servlet/annotation/WebServlet;" : content;
+    try (OutputStream out = Files.newOutputStream(file);
+        ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.putNextEntry(new ZipEntry(entry));
+      zip.write(classContent.getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+    }
+  }
+
+  private static String read(Path root, String path) throws IOException {
+    return new String(Files.readAllBytes(root.resolve(path)), StandardCharsets.UTF_8);
+  }
+
+  private static void write(Path root, String path, String content) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalWarExploderTest {
+
+  private static final String DATASTORE_INDEXES_AUTO =
+      "WEB-INF/appengine-generated/datastore-indexes-auto.xml";
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path war;
+  private Path exploded;
+  private IncrementalWarExploder exploder;
+
+  @Before
+  public void setUp() throws IOException {
+    war = tmpDir.getRoot().toPath().resolve("app.war");
+    exploded = tmpDir.newFolder("exploded").toPath();
+    exploder =
+        new IncrementalWarExploder(
+            war, exploded, tmpDir.getRoot().toPath().resolve("tmp/manifest.properties"));
+  }
+
+  @Test
+  public void testExplode_initial() throws IOException {
+    writeWar(ImmutableMap.of("index.html", "hello", "WEB-INF/web.xml", "<web-app/>"));
+
+    exploder.explode(path -> false);
+
+    Assert.assertEquals(2, exploder.getWrittenCount());
+    Assert.assertEquals("hello", read("index.html"));
+    Assert.assertEquals("<web-app/>", read("WEB-INF/web.xml"));
+  }
+
+  @Test
+  public void testExplode_onlyChangedEntriesWritten() throws IOException {
+    writeWar(ImmutableMap.of("index.html", "hello", "WEB-INF/web.xml", "<web-app/>"));
+    exploder.explode(path -> false);
+
+    writeWar(ImmutableMap.of("index.html", "goodbye", "WEB-INF/web.xml", "<web-app/>"));
+    exploder.explode(path -> false);
+
+    Assert.assertEquals(1, exploder.getWrittenCount());
+    Assert.assertEquals(0, exploder.getDeletedCount());
+    Assert.assertEquals("goodbye", read("index.html"));
+  }
+
+  @Test
+  public void testExplode_nothingChanged() throws IOException {
+    writeWar(ImmutableMap.of("index.html", "hello"));
+    exploder.explode(path -> false);
+
+    exploder.explode(path -> false);
+
+    Assert.assertEquals(0, exploder.getWrittenCount());
+    Assert.assertEquals(0, exploder.getDeletedCount());
+  }
+
+  @Test
+  public void testExplode_locallyModifiedFileRestored() throws IOException {
+    writeWar(ImmutableMap.of("index.html", "hello"));
+    exploder.explode(path -> false);
+
+    Files.write(exploded.resolve("index.html"), "tampered!".getBytes(StandardCharsets.UTF_8));
+    exploder.explode(path -> false);
+
+    Assert.assertEquals(1, exploder.getWrittenCount());
+    Assert.assertEquals("hello", read("index.html"));
+  }
+
+  @Test
+  public void testExplode_removedEntriesDeletedAndPreservedKept() throws IOException {
+    writeWar(ImmutableMap.of("index.html", "hello", "WEB-INF/lib/old.jar", "old"));
+    exploder.explode(path -> false);
+    Path generated = exploded.resolve(DATASTORE_INDEXES_AUTO);
+    Path junk = exploded.resolve("WEB-INF/appengine-generated/junk.xml");
+    Files.createDirectories(generated.getParent());
+    Files.createFile(generated);
+    Files.createFile(junk);
+
+    writeWar(ImmutableMap.of("index.html", "hello"));
+    exploder.explode(DATASTORE_INDEXES_AUTO::equals);
+
+    Assert.assertEquals(2, exploder.getDeletedCount());
+    Assert.assertTrue(Files.isRegularFile(generated));
+    Assert.assertFalse(Files.exists(junk));
+    Assert.assertFalse(Files.exists(exploded.resolve("WEB-INF/lib")));
+  }
+
+  @Test
+  public void testExplode_entryOutsideTargetRejected() throws IOException {
+    writeWar(ImmutableMap.of("../evil.txt", "boom"));
+
+    try {
+      exploder.explode(path -> false);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertEquals(
+          "War entry is outside of the target directory: ../evil.txt", ex.getMessage());
+    }
+    Assert.assertFalse(Files.exists(tmpDir.getRoot().toPath().resolve("evil.txt")));
+  }
+
+  private String read(String path) throws IOException {
+    return new String(Files.readAllBytes(exploded.resolve(path)), StandardCharsets.UTF_8);
+  }
+
+  private void writeWar(Map<String, String> entries) throws IOException {
+    try (OutputStream out = Files.newOutputStream(war);
+        ZipOutputStream zip = new ZipOutputStream(out)) {
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarSplitterTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path output;
+  private Path jar;
+
+  @Before
+  public void setUp() throws IOException {
+    output = tmpDir.newFolder("lib").toPath();
+    jar = tmpDir.getRoot().toPath().resolve("big.jar");
+    writeJar(jar, 10, 10 * 1024);
+  }
+
+  @Test
+  public void testSplit() throws IOException {
+    List<Path> pieces = new JarSplitter(30 * 1024, null, null, false).split(jar, output);
+
+    Assert.assertTrue(pieces.size() > 1);
+    Assert.assertEquals(output.resolve("big-0000.jar"), pieces.get(0));
+    List<String> entries = new ArrayList<>();
+    for (Path piece : pieces) {
+      Assert.assertTrue(Files.size(piece) <= 30 * 1024);
+      try (JarFile pieceJar = new JarFile(piece.toFile())) {
+        Assert.assertNotNull(pieceJar.getManifest());
+        entries.addAll(
+            pieceJar.stream()
+                .map(ZipEntry::getName)
+                .filter(name -> !name.equals(JarFile.MANIFEST_NAME))
+                .collect(Collectors.toList()));
+      }
+    }
+    Collections.sort(entries);
+    Assert.assertEquals(20, entries.size());
+    Assert.assertEquals("com/example/Class0.class", entries.get(0));
+  }
+
+  @Test
+  public void testSplit_piecesWithinMaxSize() throws IOException {
+    // entries compressed harder than pieces re-deflate them, with multi-byte names
+    Path compressed = tmpDir.getRoot().toPath().resolve("compressed.jar");
+    String directory = String.join("", Collections.nCopies(20, "\u4e2d\u6587"));
+    Random random = new Random(0);
+    try (OutputStream out = Files.newOutputStream(compressed);
+        JarOutputStream jarOut = new JarOutputStream(out, new Manifest())) {
+      jarOut.setLevel(Deflater.BEST_COMPRESSION);
+      for (int i = 0; i < 200; i++) {
+        jarOut.putNextEntry(new JarEntry(directory + "/Resource" + i));
+        StringBuilder content = new StringBuilder();
+        for (int j = 0; j < 100; j++) {
+          content.append(random.nextInt(10));
+        }
+        jarOut.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        jarOut.closeEntry();
+      }
+    }
+    long maxJarSize = 8 * 1024;
+
+    List<Path> pieces = new JarSplitter(maxJarSize, null, null, false).split(compressed, output);
+
+    Assert.assertTrue(pieces.size() > 1);
+    int entries = 0;
+    for (Path piece : pieces) {
+      Assert.assertTrue(piece + " is too large", Files.size(piece) <= maxJarSize);
+      try (JarFile pieceJar = new JarFile(piece.toFile())) {
+        entries += (int) pieceJar.stream().filter(entry -> !entry.isDirectory()).count() - 1;
+      }
+    }
+    Assert.assertEquals(200, entries);
+  }
+
+  @Test
+  public void testSplit_excludes() throws IOException {
+    Path small = tmpDir.getRoot().toPath().resolve("small.jar");
+    writeJar(small, 2, 10);
+    JarSplitter splitter =
+        new JarSplitter(JarSplitter.DEFAULT_MAX_JAR_SIZE, " .class, ", null, false);
+
+    Assert.assertTrue(splitter.needsSplitting(small));
+    List<Path> pieces = splitter.split(small, output);
+
+    Assert.assertEquals(ImmutableList.of(output.resolve("small-0000.jar")), pieces);
+    try (JarFile pieceJar = new JarFile(pieces.get(0).toFile())) {
+      Assert.assertNull(pieceJar.getEntry("com/example/Class0.class"));
+      Assert.assertNotNull(pieceJar.getEntry("com/example/resource0.txt"));
+    }
+  }
+
+  @Test
+  public void testNeedsSplitting() throws IOException {
+    Assert.assertTrue(new JarSplitter(30 * 1024, null, null, false).needsSplitting(jar));
+    Assert.assertFalse(
+        new JarSplitter(JarSplitter.DEFAULT_MAX_JAR_SIZE, null, null, false).needsSplitting(jar));
+    Assert.assertNull(JarSplitter.compileExcludes(" , "));
+  }
+
+  @Test
+  public void testSplit_cached() throws IOException {
+    Path cache = tmpDir.newFolder("cache").toPath();
+    JarSplitter splitter = new JarSplitter(30 * 1024, null, cache, false);
+
+    splitter.split(ImmutableList.of(jar), output);
+    List<Path> firstRun = list(output);
+    try (Stream<Path> entries = Files.list(cache)) {
+      Assert.assertEquals(1, entries.count());
+    }
+
+    Path output2 = tmpDir.newFolder("lib2").toPath();
+    // a cache hit does not read the jar's entries, a corrupt cache entry shows it was used
+    Path cachedPiece;
+    try (Stream<Path> entries = Files.list(cache)) {
+      cachedPiece = entries.findFirst().get().resolve("big-0000.jar");
+    }
+    Files.write(cachedPiece, new byte[] {42});
+    splitter.split(ImmutableList.of(jar), output2);
+
+    Assert.assertEquals(firstRun.size(), list(output2).size());
+    Assert.assertArrayEquals(new byte[] {42}, Files.readAllBytes(output2.resolve("big-0000.jar")));
+  }
+
+  @Test
+  public void testSplit_cachedWithoutHardLinks() throws IOException {
+    Path cache = tmpDir.newFolder("cache").toPath();
+    new JarSplitter(30 * 1024, null, cache, false).split(ImmutableList.of(jar), output);
+
+    // changing a staged piece must not change the cached one
+    Path cachedPiece;
+    try (Stream<Path> entries = Files.list(cache)) {
+      cachedPiece = entries.findFirst().get().resolve("big-0000.jar");
+    }
+    byte[] cachedContent = Files.readAllBytes(cachedPiece);
+    Files.write(output.resolve("big-0000.jar"), new byte[] {42});
+
+    Assert.assertArrayEquals(cachedContent, Files.readAllBytes(cachedPiece));
+  }
+
+  private static List<Path> list(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static void writeJar(Path jar, int classes, int classSize) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+    Random random = new Random(0);
+    try (OutputStream out = Files.newOutputStream(jar);
+        JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+      for (int i = 0; i < classes; i++) {
+        // random content does not compress, so the jar size is predictable
+        byte[] content = new byte[classSize];
+        random.nextBytes(content);
+        jarOut.putNextEntry(new JarEntry("com/example/Class" + i + ".class"));
+        jarOut.write(content);
+        jarOut.closeEntry();
+        jarOut.putNextEntry(new JarEntry("com/example/resource" + i + ".txt"));
+        jarOut.write(("resource " + i).getBytes("UTF-8"));
+        jarOut.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JspSourcesTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    root = tmpDir.newFolder("exploded").toPath();
+  }
+
+  @Test
+  public void testFindServlets() throws IOException {
+    write("index.jsp", "");
+    write("admin/users.jspx", "");
+    write("WEB-INF/header.jspf", "");
+    write("WEB-INF/tags/layout.tag", "");
+    write("WEB-INF/tags/legacy.jsp", "");
+
+    Assert.assertEquals(
+        ImmutableList.of("admin/users.jspx", "index.jsp"),
+        new JspSources(root, null).findServlets());
+  }
+
+  @Test
+  public void testGetDependencies() throws IOException {
+    write(
+        "admin/users.jsp",
+        "<%@ include file=\"../WEB-INF/header.jspf\" %>\n"
+            + "<%@ taglib prefix=\"t\" tagdir=\"/WEB-INF/tags\" %>\n"
+            + "<jsp:include page=\"runtime.jsp\"/>");
+    write("WEB-INF/header.jspf", "<jsp:directive.include file='/WEB-INF/nav.jspf'/>");
+    write("WEB-INF/nav.jspf", "<%@include file=\"header.jspf\"%>");
+    write("WEB-INF/tags/layout.tag", "");
+    write("admin/runtime.jsp", "");
+
+    Assert.assertEquals(
+        ImmutableSet.of("WEB-INF/header.jspf", "WEB-INF/nav.jspf", "WEB-INF/tags/layout.tag"),
+        new JspSources(root, null).getDependencies("admin/users.jsp"));
+  }
+
+  @Test
+  public void testResolve() {
+    Assert.assertEquals("a/b.jspf", JspSources.resolve("a/index.jsp", "b.jspf"));
+    Assert.assertEquals("b.jspf", JspSources.resolve("a/index.jsp", "../b.jspf"));
+    Assert.assertEquals("c/b.jspf", JspSources.resolve("a/index.jsp", "/c/./b.jspf"));
+  }
+
+  @Test
+  public void testGetServletClassName() {
+    Assert.assertEquals("org.apache.jsp.index_jsp", JspSources.getServletClassName("index.jsp"));
+    Assert.assertEquals(
+        "org.apache.jsp.admin.list_002dusers_jsp",
+        JspSources.getServletClassName("admin/list-users.jsp"));
+    Assert.assertEquals(
+        "org.apache.jsp._1st.my_005fpage_jspx",
+        JspSources.getServletClassName("1st/my_page.jspx"));
+    Assert.assertEquals(
+        "org.apache.jsp.static_.a_jsp", JspSources.getServletClassName("static/a.jsp"));
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
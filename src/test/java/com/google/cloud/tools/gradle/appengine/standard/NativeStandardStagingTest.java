@@ -0,0 +1,237 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.util.AppEngineWebXml;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NativeStandardStagingTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path source;
+
+  @Before
+  public void setUp() throws IOException {
+    source = tmpDir.newFolder("exploded").toPath();
+  }
+
+  @Test
+  public void testGetUnsupportedReason_supported() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime><app-engine-apis>true</app-engine-apis>");
+    write("WEB-INF/web.xml", "<web-app/>");
+    write("index.html", "hello");
+
+    Assert.assertNull(NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_runtime() throws IOException {
+    writeAppEngineWebXml("<runtime>java8</runtime>");
+
+    Assert.assertEquals("runtime java8", NativeStandardStaging.getUnsupportedReason(source, null));
+    Assert.assertNull(NativeStandardStaging.getUnsupportedReason(source, "java21"));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_element() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime><static-files/>");
+
+    Assert.assertEquals(
+        "appengine-web.xml element <static-files>",
+        NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_scaling() throws IOException {
+    writeAppEngineWebXml(
+        "<runtime>java17</runtime>"
+            + "<automatic-scaling><cpu-utilization><target-utilization>0.5</target-utilization>"
+            + "</cpu-utilization></automatic-scaling>");
+
+    Assert.assertEquals(
+        "appengine-web.xml element <cpu-utilization>",
+        NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_systemProperties() throws IOException {
+    writeAppEngineWebXml(
+        "<runtime>java17</runtime><system-properties>"
+            + "<property name=\"a\" value=\"b\"/></system-properties>");
+
+    Assert.assertEquals(
+        "appengine-web.xml element <system-properties>",
+        NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_securityConstraint() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write(
+        "WEB-INF/web.xml",
+        "<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\"><security-constraint>"
+            + "<web-resource-collection><url-pattern>/admin/*</url-pattern>"
+            + "</web-resource-collection><auth-constraint><role-name>admin</role-name>"
+            + "</auth-constraint></security-constraint></web-app>");
+
+    Assert.assertEquals(
+        "web.xml element <security-constraint>",
+        NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_welcomeFiles() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write(
+        "WEB-INF/web.xml",
+        "<web-app><welcome-file-list><welcome-file>index.html</welcome-file>"
+            + "</welcome-file-list></web-app>");
+
+    Assert.assertEquals(
+        "web.xml element <welcome-file-list>",
+        NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_configXml() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write("WEB-INF/cron.xml", "<cronentries/>");
+
+    Assert.assertEquals(
+        "WEB-INF/cron.xml", NativeStandardStaging.getUnsupportedReason(source, null));
+  }
+
+  @Test
+  public void testGetUnsupportedReason_jsp() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write("index.jsp", "<html/>");
+
+    Assert.assertEquals(
+        "JSP compilation", NativeStandardStaging.getUnsupportedReason(source, null));
+    Assert.assertNull(NativeStandardStaging.getUnsupportedReason(source, null, true));
+  }
+
+  @Test
+  public void testToAppYaml() throws IOException {
+    writeAppEngineWebXml(
+        "<runtime>java17</runtime>"
+            + "<service>backend</service>"
+            + "<instance-class>F2</instance-class>"
+            + "<app-engine-apis>true</app-engine-apis>"
+            + "<automatic-scaling><max-instances>3</max-instances></automatic-scaling>"
+            + "<inbound-services><service>mail</service><service>warmup</service>"
+            + "</inbound-services>"
+            + "<env-variables><env-var name='GREETING' value='it&apos;s me'/></env-variables>");
+
+    String appYaml =
+        NativeStandardStaging.toAppYaml(
+            AppEngineWebXml.parse(source.resolve("WEB-INF/appengine-web.xml").toFile()), null);
+
+    Assert.assertEquals(
+        "runtime: java17\n"
+            + "service: backend\n"
+            + "instance_class: F2\n"
+            + "app_engine_apis: true\n"
+            + "automatic_scaling:\n"
+            + "  max_instances: 3\n"
+            + "inbound_services:\n"
+            + "- mail\n"
+            + "- warmup\n"
+            + "env_variables:\n"
+            + "  GREETING: 'it''s me'\n",
+        appYaml);
+  }
+
+  @Test
+  public void testStage_enableJarClasses() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write("index.html", "hello");
+    write("WEB-INF/classes/com/example/Hello.class", "class");
+    Path staged = tmpDir.getRoot().toPath().resolve("staged");
+
+    new NativeStandardStaging(source, staged, "java21", true, false, null).stage();
+
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("index.html")));
+    Assert.assertTrue(Files.isRegularFile(staged.resolve("WEB-INF/appengine-web.xml")));
+    Assert.assertFalse(Files.exists(staged.resolve("WEB-INF/classes")));
+    try (JarFile jar =
+        new JarFile(staged.resolve("WEB-INF/lib/_ah_webinf_classes.jar").toFile())) {
+      Assert.assertNotNull(jar.getEntry("com/example/Hello.class"));
+    }
+    Assert.assertEquals(
+        "runtime: java21\n",
+        new String(Files.readAllBytes(staged.resolve("app.yaml")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testStage_compiledJsps() throws IOException {
+    writeAppEngineWebXml("<runtime>java17</runtime>");
+    write("WEB-INF/web.xml", "<web-app>\n</web-app>\n");
+    write("index.jsp", "<html/>");
+    write("admin/list-users.jsp", "<html/>");
+    Path compiled = tmpDir.newFolder("compiled").toPath();
+    Path indexClass = compiled.resolve("org/apache/jsp/index_jsp.class");
+    Files.createDirectories(indexClass.getParent());
+    Files.write(indexClass, new byte[] {1});
+    Path staged = tmpDir.getRoot().toPath().resolve("staged");
+
+    NativeStandardStaging staging =
+        new NativeStandardStaging(source, staged, null, false, false, null);
+    staging.setCompiledJsps(compiled, true, false);
+    staging.stage();
+
+    Assert.assertFalse(Files.exists(staged.resolve("index.jsp")));
+    Assert.assertFalse(Files.exists(staged.resolve("admin/list-users.jsp")));
+    try (JarFile jar =
+        new JarFile(staged.resolve("WEB-INF/lib/_ah_compiled_jsps-0000.jar").toFile())) {
+      Assert.assertNotNull(jar.getEntry("org/apache/jsp/index_jsp.class"));
+    }
+    String webXml =
+        new String(Files.readAllBytes(staged.resolve("WEB-INF/web.xml")), StandardCharsets.UTF_8);
+    Assert.assertTrue(
+        webXml.contains(
+            "<servlet-class>org.apache.jsp.admin.list_002dusers_jsp</servlet-class>"));
+    Assert.assertTrue(webXml.contains("<url-pattern>/admin/list-users.jsp</url-pattern>"));
+    Assert.assertTrue(webXml.contains("<url-pattern>/index.jsp</url-pattern>"));
+    Assert.assertTrue(webXml.trim().endsWith("</web-app>"));
+  }
+
+  private void writeAppEngineWebXml(String content) throws IOException {
+    write(
+        "WEB-INF/appengine-web.xml",
+        "<appengine-web-app xmlns='http://appengine.google.com/ns/1.0'>"
+            + content
+            + "</appengine-web-app>");
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = source.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
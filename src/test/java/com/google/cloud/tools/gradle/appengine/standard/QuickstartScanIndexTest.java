@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QuickstartScanIndexTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path indexDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    indexDirectory = tmpDir.newFolder("index").toPath();
+  }
+
+  @Test
+  public void testScan() throws IOException {
+    Assert.assertEquals(
+        ImmutableSet.of(),
+        QuickstartScanIndex.scan(jar("plain.jar", ImmutableMap.of("a/Util.class", "util"))));
+    Assert.assertEquals(
+        ImmutableSet.of(QuickstartScanIndex.ANNOTATIONS),
+        QuickstartScanIndex.scan(
+            jar(
+                "servlet.jar",
+                ImmutableMap.of("a/Hello.class", "Ljakarta/servlet/annotation/WebServlet;"))));
+    Assert.assertEquals(
+        ImmutableSet.of(
+            QuickstartScanIndex.CONTAINER_INITIALIZER,
+            QuickstartScanIndex.WEB_FRAGMENT,
+            QuickstartScanIndex.RESOURCES,
+            QuickstartScanIndex.TLD),
+        QuickstartScanIndex.scan(
+            jar(
+                "framework.jar",
+                ImmutableMap.of(
+                    "META-INF/services/javax.servlet.ServletContainerInitializer", "a.Init",
+                    "META-INF/web-fragment.xml", "<web-fragment/>",
+                    "META-INF/resources/index.html", "hello",
+                    "META-INF/c.tld", "<taglib/>"))));
+  }
+
+  @Test
+  public void testGetFeatures_persisted() throws IOException {
+    Path jar = jar("framework.jar", ImmutableMap.of("META-INF/web-fragment.xml", "<x/>"));
+    QuickstartScanIndex index = new QuickstartScanIndex(indexDirectory);
+
+    Assert.assertTrue(index.affectsQuickstart(jar));
+    Assert.assertFalse(index.hasContainerInitializer(jar));
+
+    // a second index over the same directory reads the entry instead of scanning the jar
+    Path entry;
+    try (Stream<Path> files = Files.walk(indexDirectory)) {
+      entry = files.filter(Files::isRegularFile).findFirst().get();
+    }
+    Assert.assertEquals(
+        QuickstartScanIndex.WEB_FRAGMENT,
+        new String(Files.readAllBytes(entry), StandardCharsets.UTF_8).trim());
+    Files.write(entry, QuickstartScanIndex.CONTAINER_INITIALIZER.getBytes(StandardCharsets.UTF_8));
+    Assert.assertTrue(new QuickstartScanIndex(indexDirectory).hasContainerInitializer(jar));
+  }
+
+  private Path jar(String name, Map<String, String> entries) throws IOException {
+    Path jar = tmpDir.getRoot().toPath().resolve(name);
+    try (OutputStream out = Files.newOutputStream(jar);
+        ZipOutputStream zip = new ZipOutputStream(out)) {
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
@@ -17,9 +17,15 @@
 
 package com.google.cloud.tools.gradle.appengine.util;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.gradle.api.GradleException;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -44,6 +50,102 @@ public class AppEngineWebXmlTest {
     Assert.assertFalse(AppEngineWebXml.parse(createAppEngineWebXml("")).isVm());
   }
 
+  @Test
+  public void testGetValues() throws IOException {
+    AppEngineWebXml appEngineWebXml =
+        AppEngineWebXml.parse(
+            createAppEngineWebXml(
+                "<runtime> java17 </runtime>"
+                    + "<basic-scaling><max-instances>2</max-instances></basic-scaling>"
+                    + "<inbound-services><service>mail</service><service>warmup</service>"
+                    + "</inbound-services>"
+                    + "<env-variables><env-var name='KEY' value='value'/></env-variables>"));
+
+    Assert.assertEquals(
+        ImmutableSet.of("runtime", "basic-scaling", "inbound-services", "env-variables"),
+        appEngineWebXml.getElementNames());
+    Assert.assertEquals("java17", appEngineWebXml.getValue("runtime"));
+    Assert.assertNull(appEngineWebXml.getValue("service"));
+    Assert.assertEquals(
+        ImmutableMap.of("max-instances", "2"), appEngineWebXml.getChildValues("basic-scaling"));
+    Assert.assertNull(appEngineWebXml.getChildValues("manual-scaling"));
+    Assert.assertEquals(
+        ImmutableList.of("mail", "warmup"),
+        appEngineWebXml.getChildValueList("inbound-services"));
+    Assert.assertEquals(ImmutableMap.of("KEY", "value"), appEngineWebXml.getEnvVariables());
+  }
+
+  @Test
+  public void testGetModel() throws IOException {
+    AppEngineWebXml appEngineWebXml =
+        AppEngineWebXml.parse(
+            createAppEngineWebXml(
+                "<runtime>java21</runtime>"
+                    + "<module>legacy</module>"
+                    + "<threadsafe>true</threadsafe>"
+                    + "<instance-class>F4</instance-class>"
+                    + "<static-files><include path='/**.png'/><exclude path='/private/**'/>"
+                    + "<include path='/**.html'/></static-files>"
+                    + "<manual-scaling><instances>3</instances></manual-scaling>"));
+
+    Assert.assertTrue(appEngineWebXml.isAppEngineWebApp());
+    Assert.assertEquals("java21", appEngineWebXml.getRuntime());
+    Assert.assertEquals("legacy", appEngineWebXml.getService());
+    Assert.assertEquals(Boolean.TRUE, appEngineWebXml.getThreadsafe());
+    Assert.assertEquals("F4", appEngineWebXml.getInstanceClass());
+    Assert.assertEquals(
+        ImmutableList.of("/**.png", "/**.html"), appEngineWebXml.getStaticFileIncludes());
+    Assert.assertEquals(ImmutableList.of("/private/**"), appEngineWebXml.getStaticFileExcludes());
+    Assert.assertEquals("manual-scaling", appEngineWebXml.getScalingType());
+    Assert.assertEquals(ImmutableMap.of("instances", "3"), appEngineWebXml.getScaling());
+  }
+
+  @Test
+  public void testParse_namespaceAndCdata() throws IOException {
+    File file = testProjectDir.newFile();
+    Files.write(
+        file.toPath(),
+        ("<?xml version='1.0' encoding='utf-8'?>"
+                + "<appengine-web-app xmlns='http://appengine.google.com/ns/1.0'>"
+                + "<!-- comment --><runtime><![CDATA[java17]]></runtime>"
+                + "</appengine-web-app>")
+            .getBytes(StandardCharsets.UTF_8));
+
+    AppEngineWebXml appEngineWebXml = AppEngineWebXml.parse(file);
+    Assert.assertTrue(appEngineWebXml.isAppEngineWebApp());
+    Assert.assertEquals("java17", appEngineWebXml.getRuntime());
+    Assert.assertNull(appEngineWebXml.getThreadsafe());
+    Assert.assertNull(appEngineWebXml.getScalingType());
+  }
+
+  @Test
+  public void testParse_cachedByContent() throws IOException {
+    AppEngineWebXml.ParseCache cache = new AppEngineWebXml.ParseCache();
+    AppEngineWebXml first = cache.parse(createAppEngineWebXml("<runtime>a</runtime>"));
+    AppEngineWebXml same = cache.parse(createAppEngineWebXml("<runtime>a</runtime>"));
+    AppEngineWebXml other = cache.parse(createAppEngineWebXml("<runtime>b</runtime>"));
+
+    Assert.assertSame(first, same);
+    Assert.assertNotSame(first, other);
+    // nothing is shared beyond a cache
+    File again = createAppEngineWebXml("<runtime>a</runtime>");
+    Assert.assertNotSame(first, new AppEngineWebXml.ParseCache().parse(again));
+    Assert.assertNotSame(first, AppEngineWebXml.parse(again));
+  }
+
+  @Test
+  public void testParse_malformed() throws IOException {
+    File file = testProjectDir.newFile();
+    Files.write(file.toPath(), "<appengine-web-app>".getBytes(StandardCharsets.UTF_8));
+
+    try {
+      AppEngineWebXml.parse(file);
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertEquals("Failed to parse appengine-web.xml", ex.getMessage());
+    }
+  }
+
   private File createAppEngineWebXml(String content) throws IOException {
     File appengienWebXml = testProjectDir.newFile();
     try (FileWriter writer = new FileWriter(appengienWebXml)) {
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util;
+
+import com.google.cloud.tools.appengine.operations.cloudsdk.process.ProcessOutputLineListener;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PhaseTimingsTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private JsonObject writeReport(PhaseTimings timings, boolean success) throws IOException {
+    File reportFile = new File(tmpDir.getRoot(), "reports/appengine/appengineDeploy.json");
+    timings.writeReport(reportFile, ":appengineDeploy", success);
+    return new JsonParser()
+        .parse(new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8))
+        .getAsJsonObject();
+  }
+
+  private static List<String> getPhaseNames(JsonObject report) {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < report.getAsJsonArray("phases").size(); i++) {
+      names.add(report.getAsJsonArray("phases").get(i).getAsJsonObject().get("name").getAsString());
+    }
+    return names;
+  }
+
+  @Test
+  public void testWriteReport() throws IOException {
+    PhaseTimings timings = new PhaseTimings();
+    timings.setAttribute("stagingMode", "native");
+    try (PhaseTimings.Phase ignored = timings.start("staging")) {
+      timings.forScope(":frontend").mark("deploy");
+    }
+
+    JsonObject report = writeReport(timings, false);
+
+    Assert.assertEquals(":appengineDeploy", report.get("task").getAsString());
+    Assert.assertFalse(report.get("success").getAsBoolean());
+    Assert.assertTrue(report.get("durationMillis").getAsLong() >= 0);
+    Assert.assertEquals(
+        "native", report.getAsJsonObject("attributes").get("stagingMode").getAsString());
+    JsonArray phases = report.getAsJsonArray("phases");
+    Assert.assertEquals(2, phases.size());
+    JsonObject deploy = phases.get(0).getAsJsonObject();
+    Assert.assertEquals("deploy", deploy.get("name").getAsString());
+    Assert.assertEquals(":frontend", deploy.get("scope").getAsString());
+    JsonObject staging = phases.get(1).getAsJsonObject();
+    Assert.assertEquals("staging", staging.get("name").getAsString());
+    Assert.assertFalse(staging.has("scope"));
+  }
+
+  @Test
+  public void testNewGcloudDeployListener() throws IOException {
+    PhaseTimings timings = new PhaseTimings();
+    ProcessOutputLineListener listener = timings.newGcloudDeployListener();
+    listener.onOutputLine("Beginning deployment of service [default]...");
+    listener.onOutputLine("Uploading 12 files to Google Cloud Storage");
+    listener.onOutputLine("File upload done.");
+    listener.onOutputLine("Updating service [default]...");
+    listener.onOutputLine("Setting traffic split for service [default]...");
+    listener.onOutputLine("Updating config [cron]...done.");
+    listener.onOutputLine("Deployed service [default] to [https://example.appspot.com]");
+
+    Assert.assertEquals(
+        Arrays.asList("prepare", "hashing", "upload", "build", "promote", "config"),
+        getPhaseNames(writeReport(timings, true)));
+  }
+
+  @Test
+  public void testNewGcloudDeployListener_nothingUploaded() throws IOException {
+    PhaseTimings timings = new PhaseTimings();
+    ProcessOutputLineListener listener = timings.newGcloudDeployListener();
+    listener.onOutputLine("Beginning deployment of service [default]...");
+    listener.onOutputLine("Updating service [default]...");
+
+    Assert.assertEquals(
+        Arrays.asList("prepare", "build"), getPhaseNames(writeReport(timings, true)));
+  }
+}
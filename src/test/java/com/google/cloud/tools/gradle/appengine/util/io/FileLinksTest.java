@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileLinksTest {
+
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private Path source;
+  private Path staged;
+
+  @Before
+  public void setUp() throws IOException {
+    source = tmpDir.newFolder("exploded").toPath();
+    staged = tmpDir.newFolder("staged").toPath();
+  }
+
+  @Test
+  public void testLinkOrCopy() throws IOException {
+    write(source.resolve("index.html"), "hello");
+    write(staged.resolve("index.html"), "old");
+
+    FileLinks.linkOrCopy(source.resolve("index.html"), staged.resolve("index.html"));
+
+    Assert.assertEquals("hello", read(staged.resolve("index.html")));
+  }
+
+  @Test
+  public void testLinkIfIdentical() throws IOException {
+    write(source.resolve("same.txt"), "same");
+    write(staged.resolve("same.txt"), "same");
+    write(source.resolve("different.txt"), "source");
+    write(staged.resolve("different.txt"), "staged");
+
+    Assert.assertTrue(
+        FileLinks.linkIfIdentical(source.resolve("same.txt"), staged.resolve("same.txt")));
+    Assert.assertTrue(Files.isSameFile(source.resolve("same.txt"), staged.resolve("same.txt")));
+    Assert.assertFalse(
+        FileLinks.linkIfIdentical(
+            source.resolve("different.txt"), staged.resolve("different.txt")));
+    Assert.assertEquals("staged", read(staged.resolve("different.txt")));
+    Assert.assertFalse(
+        FileLinks.linkIfIdentical(source.resolve("missing.txt"), staged.resolve("same.txt")));
+  }
+
+  @Test
+  public void testLinkIdenticalFiles() throws IOException {
+    write(source.resolve("WEB-INF/lib/dep.jar"), "jar");
+    write(staged.resolve("WEB-INF/lib/dep.jar"), "jar");
+    write(source.resolve("WEB-INF/appengine-web.xml"), "<appengine-web-app/>");
+    write(staged.resolve("WEB-INF/appengine-web.xml"), "<appengine-web-app></appengine-web-app>");
+    write(staged.resolve("app.yaml"), "runtime: java21");
+
+    Assert.assertEquals(1, FileLinks.linkIdenticalFiles(source, staged));
+
+    Assert.assertTrue(
+        Files.isSameFile(
+            source.resolve("WEB-INF/lib/dep.jar"), staged.resolve("WEB-INF/lib/dep.jar")));
+    Assert.assertEquals(
+        "<appengine-web-app></appengine-web-app>",
+        read(staged.resolve("WEB-INF/appengine-web.xml")));
+    Assert.assertEquals("runtime: java21", read(staged.resolve("app.yaml")));
+    Assert.assertFalse(Files.exists(staged.resolve("WEB-INF/lib/dep.jar.link")));
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}